@@ -0,0 +1,13 @@
+package com.collabform.cluster;
+
+import lombok.Value;
+
+/**
+ * A node of the cluster, as configured in {@code collabform.cluster.nodes}.
+ */
+@Value
+public class ClusterNode {
+    String id;
+    // Base URL clients use to reach the node, without a trailing slash
+    String url;
+}
@@ -0,0 +1,57 @@
+package com.collabform.cluster;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+/**
+ * Sends requests about a form to the node that serves it. A request with a {@code formId} path
+ * variable that reaches another node is answered with 307, which clients repeat with the same
+ * method and body at the owner's URL, so every write of a form is applied by a single node.
+ */
+@Component
+@RequiredArgsConstructor
+public class FormOwnerRedirectInterceptor implements HandlerInterceptor {
+
+    public static final String OWNER_HEADER = "X-Form-Owner";
+
+    private final FormOwnership formOwnership;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!formOwnership.isEnabled()) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String formId = variables != null ? variables.get("formId") : null;
+        if (formId == null) {
+            return true;
+        }
+
+        Long id;
+        try {
+            id = Long.valueOf(formId);
+        } catch (NumberFormatException ex) {
+            return true; // Rejected by the handler's argument conversion
+        }
+        if (formOwnership.isLocal(id)) {
+            return true;
+        }
+
+        ClusterNode owner = formOwnership.ownerOf(id);
+        String query = request.getQueryString();
+        response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+        response.setHeader(HttpHeaders.LOCATION, owner.getUrl() + request.getRequestURI() + (query != null ? "?" + query : ""));
+        response.setHeader(OWNER_HEADER, owner.getId());
+        return false;
+    }
+}
@@ -0,0 +1,230 @@
+package com.collabform.cluster;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Assigns every form to one node, so all collaborators of a form are served by the same node and
+ * its values, locks and presence live in that node's memory rather than being shared.
+ * Forms are placed on a consistent-hash ring of the live nodes, each node holding a number of
+ * virtual points, so when a node joins or leaves only the forms next to its points move.
+ * <p>
+ * The nodes are configured in {@code collabform.cluster.nodes}; without them this node owns every
+ * form. Peers are probed on {@code /public/check} and dropped from the ring after several
+ * consecutive failures. Every change of the ring is published as a
+ * {@link FormOwnershipChangedEvent}, on which the in-memory stores hand off or take over forms.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FormOwnership {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${collabform.cluster.node-id:local}")
+    private String nodeId;
+
+    // id=url pairs separated by commas; empty for a single node
+    @Value("${collabform.cluster.nodes:}")
+    private String nodes;
+
+    @Value("${collabform.cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${collabform.cluster.probe-timeout-ms:1000}")
+    private long probeTimeoutMs;
+
+    @Value("${collabform.cluster.probe-failures:3}")
+    private int probeFailures;
+
+    // nodeId -> node, in configuration order
+    private final Map<String, ClusterNode> members = new LinkedHashMap<>();
+    // nodeId -> consecutive failed probes
+    private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+    private HttpClient httpClient;
+    private volatile Ring ring;
+
+    @PostConstruct
+    public void init() {
+        for (String entry : nodes.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2 || parts[0].isBlank() || parts[1].isBlank()) {
+                throw new IllegalStateException("Invalid cluster node, expected id=url: " + entry.trim());
+            }
+            String url = parts[1].trim().replaceAll("/+$", "");
+            members.put(parts[0].trim(), new ClusterNode(parts[0].trim(), url));
+        }
+        if (members.isEmpty()) {
+            members.put(nodeId, new ClusterNode(nodeId, ""));
+        } else if (!members.containsKey(nodeId)) {
+            throw new IllegalStateException("collabform.cluster.nodes does not include this node: " + nodeId);
+        }
+
+        // Start with every configured node, so nodes that start together agree at once
+        ring = new Ring(members.values(), virtualNodes);
+        if (isEnabled()) {
+            httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(probeTimeoutMs)).build();
+            log.info("Form ownership sharded across {} nodes, this node is {}", members.size(), nodeId);
+        }
+    }
+
+    /**
+     * @return true if forms are spread over several nodes
+     */
+    public boolean isEnabled() {
+        return members.size() > 1;
+    }
+
+    /**
+     * Find the node that serves a form.
+     *
+     * @param formId The ID of the form
+     * @return The owner node
+     */
+    public ClusterNode ownerOf(Long formId) {
+        return ring.ownerOf(formId);
+    }
+
+    /**
+     * @param formId The ID of the form
+     * @return true if this node serves the form
+     */
+    public boolean isLocal(Long formId) {
+        return !isEnabled() || ring.ownerOf(formId).getId().equals(nodeId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public Collection<ClusterNode> getLiveNodes() {
+        return ring.nodes;
+    }
+
+    /**
+     * Probe the other nodes and rebuild the ring when a node has joined or left.
+     */
+    @Scheduled(fixedDelayString = "${collabform.cluster.probe-ms:2000}")
+    public void probeMembers() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        Map<ClusterNode, CompletableFuture<HttpResponse<Void>>> probes = new LinkedHashMap<>();
+        for (ClusterNode node : members.values()) {
+            if (!node.getId().equals(nodeId)) {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(node.getUrl() + "/public/check"))
+                        .timeout(Duration.ofMillis(probeTimeoutMs))
+                        .GET()
+                        .build();
+                probes.put(node, httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+            }
+        }
+
+        Set<String> live = new TreeSet<>();
+        live.add(nodeId);
+        probes.forEach((node, probe) -> {
+            boolean up;
+            try {
+                up = probe.get(probeTimeoutMs * 2, TimeUnit.MILLISECONDS).statusCode() < 500;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                up = false;
+            }
+            int failed = up ? 0 : failures.getOrDefault(node.getId(), 0) + 1;
+            failures.put(node.getId(), failed);
+            if (failed < probeFailures) {
+                live.add(node.getId());
+            }
+        });
+
+        Ring previous = ring;
+        if (live.equals(previous.nodeIds())) {
+            return;
+        }
+        Ring current = new Ring(members.values().stream()
+                .filter(node -> live.contains(node.getId()))
+                .collect(Collectors.toList()), virtualNodes);
+        ring = current;
+        log.info("Cluster membership changed: nodes={}, previously={}", live, previous.nodeIds());
+        eventPublisher.publishEvent(new FormOwnershipChangedEvent(nodeId, previous, current));
+    }
+
+    private static long hash(byte[] bytes) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("MD5").digest(bytes)).getLong();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("MD5 is not available", ex);
+        }
+    }
+
+    /**
+     * Spreads the bits of a form ID over the whole ring; the MurmurHash3 finalizer.
+     */
+    private static long hash(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * Immutable consistent-hash ring of a set of nodes.
+     */
+    static final class Ring {
+        private final NavigableMap<Long, ClusterNode> points = new TreeMap<>();
+        private final List<ClusterNode> nodes;
+
+        Ring(Collection<ClusterNode> nodes, int virtualNodes) {
+            this.nodes = List.copyOf(nodes);
+            for (ClusterNode node : nodes) {
+                for (int i = 0; i < virtualNodes; i++) {
+                    points.put(hash((node.getId() + "#" + i).getBytes(StandardCharsets.UTF_8)), node);
+                }
+            }
+        }
+
+        ClusterNode ownerOf(Long formId) {
+            Map.Entry<Long, ClusterNode> entry = points.ceilingEntry(hash(formId));
+            return entry != null ? entry.getValue() : points.firstEntry().getValue();
+        }
+
+        Set<String> nodeIds() {
+            return nodes.stream().map(ClusterNode::getId).collect(Collectors.toCollection(TreeSet::new));
+        }
+    }
+}
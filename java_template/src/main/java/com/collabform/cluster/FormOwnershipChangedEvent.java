@@ -0,0 +1,46 @@
+package com.collabform.cluster;
+
+/**
+ * Published when nodes join or leave and forms move between nodes. Listeners that keep forms
+ * in memory hand off the forms this node lost and take over the ones it gained.
+ */
+public class FormOwnershipChangedEvent {
+
+    private final String nodeId;
+    private final FormOwnership.Ring previous;
+    private final FormOwnership.Ring current;
+
+    FormOwnershipChangedEvent(String nodeId, FormOwnership.Ring previous, FormOwnership.Ring current) {
+        this.nodeId = nodeId;
+        this.previous = previous;
+        this.current = current;
+    }
+
+    /**
+     * @param formId The ID of the form
+     * @return true if this node served the form and another node serves it now
+     */
+    public boolean isLost(Long formId) {
+        return isOwner(previous, formId) && !isOwner(current, formId);
+    }
+
+    /**
+     * @param formId The ID of the form
+     * @return true if this node serves the form and another node served it before
+     */
+    public boolean isGained(Long formId) {
+        return !isOwner(previous, formId) && isOwner(current, formId);
+    }
+
+    /**
+     * @param formId The ID of the form
+     * @return The node that serves the form now
+     */
+    public ClusterNode ownerOf(Long formId) {
+        return current.ownerOf(formId);
+    }
+
+    private boolean isOwner(FormOwnership.Ring ring, Long formId) {
+        return ring.ownerOf(formId).getId().equals(nodeId);
+    }
+}
@@ -0,0 +1,63 @@
+package com.collabform.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the ID sequences past the IDs already in use in H2 databases created while the
+ * entities still used identity columns.
+ * Hibernate's schema update creates the missing sequences starting at 1, which would collide
+ * with existing rows; this runs once the schema is up to date (it depends on the
+ * EntityManagerFactory) and before anything inserts rows.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdSequenceMigration {
+
+    // table -> sequence, as declared on the entities
+    private static final Map<String, String> SEQUENCES = new LinkedHashMap<>();
+
+    static {
+        SEQUENCES.put("forms", "forms_seq");
+        SEQUENCES.put("form_fields", "form_fields_seq");
+        SEQUENCES.put("form_responses", "form_responses_seq");
+        SEQUENCES.put("form_access", "form_access_seq");
+        SEQUENCES.put("field_values", "field_values_seq");
+        SEQUENCES.put("edit_locks", "edit_locks_seq");
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    // Not used directly; waiting for it guarantees the schema update has run
+    private final EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void migrate() {
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if (!"H2".equals(product)) {
+            return;
+        }
+
+        for (Map.Entry<String, String> entry : SEQUENCES.entrySet()) {
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + entry.getKey(), Long.class);
+            List<Long> next = jdbcTemplate.queryForList(
+                    "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?",
+                    Long.class, entry.getValue().toUpperCase());
+            if (maxId == null || next.isEmpty() || next.get(0) > maxId) {
+                continue;
+            }
+            jdbcTemplate.execute("ALTER SEQUENCE " + entry.getValue() + " RESTART WITH " + (maxId + 1));
+            log.info("Restarted sequence {} at {} to follow existing {} rows", entry.getValue(), maxId + 1, entry.getKey());
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.collabform.config;
+
+import com.collabform.cluster.FormOwnerRedirectInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Configuration for the REST API.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final FormOwnerRedirectInterceptor formOwnerRedirectInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Requests about a form are served by the node that owns it
+        registry.addInterceptor(formOwnerRedirectInterceptor).addPathPatterns("/api/forms/**");
+    }
+}
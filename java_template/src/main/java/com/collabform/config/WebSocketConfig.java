@@ -1,24 +1,83 @@
 package com.collabform.config;
 
+import com.collabform.websocket.FormOwnerInterceptor;
+import com.collabform.websocket.PresenceInterceptor;
+import com.collabform.websocket.StompAuthenticationInterceptor;
+import com.collabform.websocket.SubscriptionResumeInterceptor;
+import com.collabform.websocket.TopicBroadcaster;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
 
 /**
  * Configuration for WebSocket to enable real-time collaboration.
  * This configures STOMP as the messaging protocol over WebSockets.
+ * <p>
+ * With {@code collabform.broker.mode=relay} topic messages go through an external STOMP broker
+ * instead of the in-process one, so clients connected to different nodes see each other's updates.
  */
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final TopicBroadcaster topicBroadcaster;
+    private final StompAuthenticationInterceptor stompAuthenticationInterceptor;
+    private final FormOwnerInterceptor formOwnerInterceptor;
+    private final SubscriptionResumeInterceptor subscriptionResumeInterceptor;
+    private final PresenceInterceptor presenceInterceptor;
+
+    // Boot runs servlet requests and scheduled tasks on virtual threads; the STOMP channels are switched here
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // "simple" (in-process broker) or "relay" (external STOMP broker)
+    @Value("${collabform.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${collabform.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${collabform.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${collabform.broker.relay.client-login:guest}")
+    private String relayClientLogin;
+
+    @Value("${collabform.broker.relay.client-passcode:guest}")
+    private String relayClientPasscode;
+
+    @Value("${collabform.broker.relay.system-login:guest}")
+    private String relaySystemLogin;
+
+    @Value("${collabform.broker.relay.system-passcode:guest}")
+    private String relaySystemPasscode;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        // Enable a simple in-memory message broker to send messages to clients
         // Messages whose destination starts with "/topic" should be routed to the message broker
-        registry.enableSimpleBroker("/topic");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            // Broadcasts then go through the broker to the subscribers on every node. The relay's
+            // Reactor Netty client serves every broker connection from a few event-loop threads
+            registry.enableStompBrokerRelay("/topic")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayClientLogin)
+                    .setClientPasscode(relayClientPasscode)
+                    .setSystemLogin(relaySystemLogin)
+                    .setSystemPasscode(relaySystemPasscode);
+        } else {
+            // Enable a simple in-memory message broker to send messages to clients
+            registry.enableSimpleBroker("/topic");
+        }
         
         // Messages whose destination starts with "/app" should be routed to message-handling methods
         registry.setApplicationDestinationPrefixes("/app");
@@ -32,4 +91,30 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
     }
-}
\ No newline at end of file
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Authenticate sessions at CONNECT, send subscribers of forms served by another node there,
+        // then replay missed events to clients that subscribe with a resume-from header
+        registration.interceptors(stompAuthenticationInterceptor, formOwnerInterceptor, subscriptionResumeInterceptor,
+                presenceInterceptor);
+        if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor("inbound-virtual-"));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Resumed subscriptions in relay mode wait for the broker's receipt, which arrives here
+        registration.interceptors(subscriptionResumeInterceptor);
+        if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor("outbound-virtual-"));
+        }
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Track sessions so form topic broadcasts can be encoded once and written to every subscriber
+        registration.addDecoratorFactory(topicBroadcaster::decorate);
+    }
+}
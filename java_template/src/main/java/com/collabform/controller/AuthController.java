@@ -10,6 +10,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Controller for handling authentication-related endpoints.
  */
@@ -25,26 +27,39 @@ public class AuthController {
      * Register a new user.
      *
      * @param request Registration details
-     * @return Authentication response with JWT token
+     * @return Authentication response with JWT token, once the password has been hashed
      */
     @PostMapping("/register")
-    public ResponseEntity<AuthResponse> register(@Valid @RequestBody RegisterRequest request) {
+    public CompletableFuture<ResponseEntity<AuthResponse>> register(@Valid @RequestBody RegisterRequest request) {
         log.info("Registering user: {}", request.getUsername());
-        AuthResponse response = userService.registerUser(request);
-        return ResponseEntity.ok(response);
+        return userService.registerUser(request).thenApply(ResponseEntity::ok);
     }
 
     /**
      * Authenticate a user and get a JWT token.
      *
      * @param request Login credentials
-     * @return Authentication response with JWT token
+     * @return Authentication response with JWT token, once the password has been checked
      */
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest request) {
+    public CompletableFuture<ResponseEntity<AuthResponse>> login(@Valid @RequestBody LoginRequest request) {
         log.info("User login attempt: {}", request.getUsername());
-        AuthResponse response = userService.authenticateUser(request);
-        return ResponseEntity.ok(response);
+        return userService.authenticateUser(request).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Log out, revoking the bearer token of the request.
+     *
+     * @param authorization The Authorization header
+     * @return No content
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestHeader(value = "Authorization", required = false) String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            throw new IllegalArgumentException("Bearer token is required");
+        }
+        userService.logout(authorization.substring(7));
+        return ResponseEntity.noContent().build();
     }
 
     /**
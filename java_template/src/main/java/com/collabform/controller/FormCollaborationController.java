@@ -7,6 +7,8 @@ import com.collabform.model.User;
 import com.collabform.service.CollaborationService;
 import com.collabform.service.FormResponseService;
 import com.collabform.service.UserService;
+import com.collabform.service.lock.FieldLock;
+import com.collabform.service.typing.TypingUpdateCoalescer;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,10 +16,13 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Controller for handling form collaboration and real-time updates.
@@ -31,6 +36,7 @@ public class FormCollaborationController {
     private final FormResponseService formResponseService;
     private final CollaborationService collaborationService;
     private final UserService userService;
+    private final TypingUpdateCoalescer typingUpdateCoalescer;
 
     /**
      * Get all field values for a form response.
@@ -75,11 +81,12 @@ public class FormCollaborationController {
             @PathVariable Long fieldId,
             @RequestParam(required = false, defaultValue = "false") boolean force) {
         log.info("Locking field ID: {} for form ID: {}, force: {}", fieldId, formId, force);
-        boolean success = formResponseService.lockField(formId, fieldId, force);
-        return ResponseEntity.ok(Map.of(
-                "success", success,
-                "message", success ? "Lock acquired" : "Could not acquire lock"
-        ));
+        Optional<FieldLock> lock = formResponseService.lockField(formId, fieldId, force);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("success", lock.isPresent());
+        body.put("message", lock.isPresent() ? "Lock acquired" : "Could not acquire lock");
+        lock.ifPresent(l -> body.put("fencingToken", l.getFencingToken()));
+        return ResponseEntity.ok(body);
     }
 
     /**
@@ -170,27 +177,23 @@ public class FormCollaborationController {
     /**
      * WebSocket handler for field updates during typing.
      * This broadcasts temporary field updates to all clients without saving to database.
+     * Updates are throttled per field and user, and rate limited per session.
      * Handles messages sent to /app/form/{formId}/typing
      *
      * @param formId The form ID
      * @param message The field update message
+     * @param headerAccessor Headers of the incoming frame
      */
     @MessageMapping("/form/{formId}/typing")
     public void processTypingUpdate(
             @DestinationVariable Long formId,
-            @Payload FieldUpdateMessage message) {
+            @Payload FieldUpdateMessage message,
+            SimpMessageHeaderAccessor headerAccessor) {
         log.debug("Received typing update via WebSocket: formId={}, fieldId={}, userId={}",
                 formId, message.getFieldId(), message.getUserId());
         
         User user = userService.getCurrentUser();
-        collaborationService.sendTemporaryFieldUpdate(
-                formId,
-                message.getFieldId(),
-                message.getFieldName(),
-                message.getFieldType(),
-                message.getValue(),
-                user
-        );
+        typingUpdateCoalescer.submit(headerAccessor.getSessionId(), formId, message, user);
     }
 
     /**
@@ -207,7 +210,7 @@ public class FormCollaborationController {
         log.debug("User joined form via WebSocket: formId={}, userId={}",
                 formId, message.getUserId());
         
-        // The join is automatically handled by the WebSocketEventListener
+        // The join is automatically handled by the PresenceInterceptor
         // when the user subscribes to the form topic
     }
 
@@ -3,14 +3,22 @@ package com.collabform.controller;
 import com.collabform.dto.form.*;
 import com.collabform.dto.collaboration.JoinFormRequest;
 import com.collabform.service.FormService;
+import com.collabform.service.schema.FormSchema;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 /**
@@ -22,7 +30,11 @@ import java.util.List;
 @Slf4j
 public class FormController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
     private final FormService formService;
+    private final ObjectMapper objectMapper;
 
     /**
      * Create a new form.
@@ -38,16 +50,22 @@ public class FormController {
     }
 
     /**
-     * Get a form by ID.
+     * Get a form by ID. The response carries an ETag of the form's schema version; a request whose
+     * If-None-Match has the current one is answered with 304 and no body.
      *
      * @param formId The form ID
      * @return The form response
      */
     @GetMapping("/{formId}")
-    public ResponseEntity<FormResponse> getForm(@PathVariable Long formId) {
+    public ResponseEntity<byte[]> getForm(@PathVariable Long formId) {
         log.info("Fetching form with ID: {}", formId);
-        FormResponse response = formService.getFormById(formId, true, true, true);
-        return ResponseEntity.ok(response);
+        FormSchema schema = formService.getFormSchema(formId);
+        // Stored by clients, but revalidated before every use
+        return ResponseEntity.ok()
+                .eTag(schema.getEtag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(schema.getBody());
     }
 
     /**
@@ -80,29 +98,90 @@ public class FormController {
     }
 
     /**
-     * Get all forms created by the current user.
+     * Get the forms created by the current user. With a limit or a cursor, one page is returned,
+     * most recently updated first, and the cursor of the next page is sent in the
+     * {@value #NEXT_CURSOR_HEADER} header; otherwise all of them are.
      *
      * @param activeOnly Whether to include only active forms
+     * @param limit The number of forms per page
+     * @param cursor The cursor of the page to get
      * @return List of form responses
      */
     @GetMapping("/my-forms")
     public ResponseEntity<List<FormResponse>> getMyForms(
+            @RequestParam(required = false, defaultValue = "false") boolean activeOnly,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        log.info("Fetching current user's forms, activeOnly={}, limit={}", activeOnly, limit);
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(formService.getMyForms(activeOnly));
+        }
+        return toResponse(formService.getMyForms(activeOnly, cursor, limit));
+    }
+
+    /**
+     * Stream all forms created by the current user as newline-delimited JSON, most recently
+     * updated first. Each form is written as it is read, so the list is never held in memory.
+     *
+     * @param activeOnly Whether to include only active forms
+     * @return One form response per line
+     */
+    @GetMapping(value = "/my-forms", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMyForms(
             @RequestParam(required = false, defaultValue = "false") boolean activeOnly) {
-        log.info("Fetching current user's forms, activeOnly={}", activeOnly);
-        List<FormResponse> forms = formService.getMyForms(activeOnly);
-        return ResponseEntity.ok(forms);
+        log.info("Streaming current user's forms, activeOnly={}", activeOnly);
+        return toStream(out -> formService.streamMyForms(activeOnly, form -> writeLine(out, form)));
     }
 
     /**
-     * Get forms shared with the current user.
+     * Get the active forms shared with the current user. With a limit or a cursor, one page is
+     * returned, most recently updated first, and the cursor of the next page is sent in the
+     * {@value #NEXT_CURSOR_HEADER} header; otherwise all of them are.
      *
+     * @param limit The number of forms per page
+     * @param cursor The cursor of the page to get
      * @return List of form responses
      */
     @GetMapping("/shared-with-me")
-    public ResponseEntity<List<FormResponse>> getSharedForms() {
-        log.info("Fetching forms shared with current user");
-        List<FormResponse> forms = formService.getSharedForms();
-        return ResponseEntity.ok(forms);
+    public ResponseEntity<List<FormResponse>> getSharedForms(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        log.info("Fetching forms shared with current user, limit={}", limit);
+        if (limit == null && cursor == null) {
+            return ResponseEntity.ok(formService.getSharedForms());
+        }
+        return toResponse(formService.getSharedForms(cursor, limit));
+    }
+
+    /**
+     * Stream all active forms shared with the current user as newline-delimited JSON, most
+     * recently updated first.
+     *
+     * @return One form response per line
+     */
+    @GetMapping(value = "/shared-with-me", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamSharedForms() {
+        log.info("Streaming forms shared with current user");
+        return toStream(out -> formService.streamSharedForms(form -> writeLine(out, form)));
+    }
+
+    /**
+     * Search the forms the current user owns or that are shared with them by the words of their
+     * title, description and field names, best match first. The cursor of the next page is sent in
+     * the {@value #NEXT_CURSOR_HEADER} header.
+     *
+     * @param query Words to look for; each matches words it starts
+     * @param limit The number of forms per page
+     * @param cursor The cursor of the page to get
+     * @return List of form responses
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<FormResponse>> searchForms(
+            @RequestParam(value = "q", required = false) String query,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        log.info("Searching forms, limit={}", limit);
+        return toResponse(formService.searchForms(query, cursor, limit));
     }
 
     /**
@@ -134,4 +213,27 @@ public class FormController {
         // FormResponse response = formService.joinForm(request);
         return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).build();
     }
-}
\ No newline at end of file
+
+    private ResponseEntity<List<FormResponse>> toResponse(FormPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getForms());
+    }
+
+    private ResponseEntity<StreamingResponseBody> toStream(StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .body(body);
+    }
+
+    private void writeLine(OutputStream out, FormResponse form) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(form));
+            out.write('\n');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
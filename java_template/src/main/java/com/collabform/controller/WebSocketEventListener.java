@@ -1,40 +1,28 @@
 package com.collabform.controller;
 
-import com.collabform.model.Form;
-import com.collabform.model.User;
-import com.collabform.repository.FormRepository;
-import com.collabform.service.CollaborationService;
+import com.collabform.service.presence.PresenceRegistry;
+import com.collabform.service.typing.TypingUpdateCoalescer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
-import org.springframework.web.socket.messaging.SessionSubscribeEvent;
-
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 
 /**
- * Listener for WebSocket events to handle user connections, disconnections, and subscriptions.
+ * Listener for WebSocket events to handle user connections, disconnections, and unsubscriptions.
+ * Form subscriptions are added to the presence registry by the
+ * {@link com.collabform.websocket.PresenceInterceptor}, once the broker has registered them.
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class WebSocketEventListener {
 
-    private final CollaborationService collaborationService;
-    private final FormRepository formRepository;
-
-    // Store active users by session ID and the forms they're collaborating on
-    private final Map<String, UserSession> activeUserSessions = new ConcurrentHashMap<>();
-
-    // Pattern to extract form ID from subscription destination
-    private final Pattern formTopicPattern = Pattern.compile("/topic/form/(\\d+)");
+    private final PresenceRegistry presenceRegistry;
+    private final TypingUpdateCoalescer typingUpdateCoalescer;
 
     /**
      * Handle WebSocket connection established events.
@@ -47,44 +35,12 @@ public class WebSocketEventListener {
     }
 
     /**
-     * Handle WebSocket subscription events.
+     * Handle WebSocket unsubscription events.
      */
     @EventListener
-    public void handleWebSocketSubscribeListener(SessionSubscribeEvent event) {
+    public void handleWebSocketUnsubscribeListener(SessionUnsubscribeEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
-        String sessionId = headerAccessor.getSessionId();
-        String destination = headerAccessor.getDestination();
-
-        if (destination == null) {
-            return;
-        }
-
-        Matcher matcher = formTopicPattern.matcher(destination);
-        if (matcher.matches()) {
-            Long formId = Long.parseLong(matcher.group(1));
-
-            UsernamePasswordAuthenticationToken authentication =
-                    (UsernamePasswordAuthenticationToken) headerAccessor.getUser();
-
-            if (authentication != null && authentication.getPrincipal() instanceof User) {
-                User user = (User) authentication.getPrincipal();
-
-                // Store the user session
-                UserSession userSession = activeUserSessions.computeIfAbsent(
-                        sessionId,
-                        k -> new UserSession(user)
-                );
-                userSession.addForm(formId);
-
-                // Fetch the form and notify collaborators
-                Form form = formRepository.findById(formId)
-                        .orElseThrow(() -> new IllegalArgumentException("Form not found with ID: " + formId));
-                collaborationService.notifyUserJoined(form, user);
-
-                log.debug("User joined form collaboration: sessionId={}, userId={}, formId={}",
-                        sessionId, user.getId(), formId);
-            }
-        }
+        presenceRegistry.leave(headerAccessor.getSessionId(), headerAccessor.getSubscriptionId());
     }
 
     /**
@@ -94,43 +50,7 @@ public class WebSocketEventListener {
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
         String sessionId = headerAccessor.getSessionId();
-
-        UserSession userSession = activeUserSessions.remove(sessionId);
-        if (userSession != null) {
-            User user = userSession.getUser();
-
-            for (Long formId : userSession.getFormIds()) {
-                Form form = formRepository.findById(formId)
-                        .orElseThrow(() -> new IllegalArgumentException("Form not found with ID: " + formId));
-                collaborationService.notifyUserLeft(form, user);
-
-                log.debug("User left form collaboration: sessionId={}, userId={}, formId={}",
-                        sessionId, user.getId(), formId);
-            }
-        }
-    }
-
-    /**
-     * Helper class to track a user's WebSocket session and the forms they're collaborating on.
-     */
-    private static class UserSession {
-        private final User user;
-        private final Map<Long, Boolean> formIds = new ConcurrentHashMap<>();
-
-        public UserSession(User user) {
-            this.user = user;
-        }
-
-        public User getUser() {
-            return user;
-        }
-
-        public void addForm(Long formId) {
-            formIds.put(formId, true);
-        }
-
-        public Iterable<Long> getFormIds() {
-            return formIds.keySet();
-        }
+        typingUpdateCoalescer.sessionClosed(sessionId);
+        presenceRegistry.sessionClosed(sessionId);
     }
 }
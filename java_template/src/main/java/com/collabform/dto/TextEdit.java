@@ -0,0 +1,21 @@
+package com.collabform.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A single splice of a text value: delete {@code deleteCount} characters at {@code position},
+ * then insert {@code insert} there. Positions are UTF-16 offsets into the text as left by the
+ * previous edit of the same patch.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TextEdit {
+    private int position;
+    private int deleteCount;
+    private String insert;
+}
@@ -0,0 +1,52 @@
+package com.collabform.dto.form;
+
+import com.collabform.model.Form;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a form listing ordered by last update and ID, both descending. The next page holds
+ * the forms that sort after the last form of the previous one, so pages neither repeat nor skip
+ * forms that are not updated while paging. Clients treat the encoded form as opaque.
+ */
+@Value
+public class FormCursor {
+
+    // Sorts before every form
+    public static final FormCursor START = new FormCursor(LocalDateTime.of(9999, 12, 31, 0, 0), Long.MAX_VALUE);
+
+    LocalDateTime updatedAt;
+    Long id;
+
+    public static FormCursor after(Form form) {
+        return new FormCursor(form.getUpdatedAt(), form.getId());
+    }
+
+    /**
+     * @param cursor An encoded cursor, or null for the first page
+     * @return The decoded cursor
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static FormCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return START;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.lastIndexOf('_');
+            return new FormCursor(LocalDateTime.parse(decoded.substring(0, separator)),
+                    Long.valueOf(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException ex) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((updatedAt + "_" + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
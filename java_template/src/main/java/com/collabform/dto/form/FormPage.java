@@ -0,0 +1,22 @@
+package com.collabform.dto.form;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for one page of a form listing.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FormPage {
+    @Builder.Default
+    private List<FormResponse> forms = new ArrayList<>();
+    private String nextCursor; // Null on the last page
+}
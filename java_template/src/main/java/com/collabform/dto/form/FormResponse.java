@@ -27,6 +27,7 @@ public class FormResponse {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private boolean active;
+    private long schemaVersion; // Changes whenever anything else in the detail does
     private List<FormFieldResponse> fields = new ArrayList<>();
     private Long responseId; // ID of the associated form response entity
     private String responseStatus; // DRAFT, SUBMITTED, or ARCHIVED
@@ -54,7 +55,8 @@ public class FormResponse {
                 .admin(UserDto.fromUser(form.getAdmin()))
                 .createdAt(form.getCreatedAt())
                 .updatedAt(form.getUpdatedAt())
-                .active(form.isActive());
+                .active(form.isActive())
+                .schemaVersion(form.getSchemaVersion());
         
         if (includeFields) {
             List<FormFieldResponse> fieldResponses = new ArrayList<>();
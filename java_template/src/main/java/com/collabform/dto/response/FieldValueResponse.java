@@ -21,6 +21,7 @@ public class FieldValueResponse {
     private String fieldName;
     private String fieldType;
     private String value;
+    private Long revision;
     private LocalDateTime lastUpdated;
     private UserDto lastUpdatedBy;
     private boolean isLocked;
@@ -39,6 +40,7 @@ public class FieldValueResponse {
                 .fieldName(fieldValue.getField().getFieldName())
                 .fieldType(fieldValue.getField().getFieldType().toString())
                 .value(fieldValue.getValue())
+                .revision(fieldValue.getRevision())
                 .lastUpdated(fieldValue.getLastUpdated())
                 .lastUpdatedBy(fieldValue.getLastUpdatedBy() != null ? 
                         UserDto.fromUser(fieldValue.getLastUpdatedBy()) : null)
@@ -1,11 +1,16 @@
 package com.collabform.dto.response;
 
+import com.collabform.dto.TextEdit;
+import com.collabform.model.FieldValue;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * DTO for updating the value of a specific field in a form response.
  */
@@ -18,7 +23,16 @@ public class FieldValueUpdateRequest {
     @NotNull(message = "Field ID is required")
     private Long fieldId;
     
+    @Size(max = FieldValue.MAX_VALUE_LENGTH, message = "Value must be at most " + FieldValue.MAX_VALUE_LENGTH + " characters")
     private String value;
     
+    // Alternative to value for TEXT and TEXTAREA fields: a patch against the value at baseRevision
+    private List<TextEdit> edits;
+    
+    private Long baseRevision;
+    
+    // Token of the lock the write is made under, from LOCK_ACQUIRED; optional for patches to merged text fields
+    private Long fencingToken;
+    
     private Boolean releaseLock; // If true, release the lock on this field after updating
 }
\ No newline at end of file
@@ -1,11 +1,15 @@
 package com.collabform.dto.websocket;
 
+import com.collabform.dto.TextEdit;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.experimental.SuperBuilder;
 
+import java.util.List;
+
 /**
  * WebSocket message for field value updates.
  * Sent when a user updates the value of a field.
@@ -21,6 +25,18 @@ public class FieldUpdateMessage extends WebSocketMessage {
     private String value;
     private String fieldType;
     
+    // Revision of the saved value after this update, and the one the edits apply to.
+    // When edits are present value is null; a client whose copy is not at baseRevision
+    // fetches the full value instead. Typing updates are patches against the saved value.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long revision;
+    
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long baseRevision;
+    
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<TextEdit> edits;
+    
     // This is used when a user is typing but hasn't committed the change
     private boolean isTemporary;
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.collabform.dto.websocket;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.experimental.SuperBuilder;
@@ -12,4 +13,8 @@ import lombok.experimental.SuperBuilder;
 @EqualsAndHashCode(callSuper = true)
 public class GenericMessage extends WebSocketMessage {
     // You can optionally add more fields here if needed
+
+    // Schema version of the form after a FORM_UPDATED
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long schemaVersion;
 }
@@ -19,8 +19,10 @@ public class LockAcquiredMessage extends WebSocketMessage {
     private Long fieldId;
     private String fieldName;
     private Long expiresAt; // Timestamp when the lock expires
+    private Long fencingToken; // Must accompany every write made under this lock
     
-    public static LockAcquiredMessage create(Long formId, Long userId, String username, Long fieldId, String fieldName, Long expiresAt) {
+    public static LockAcquiredMessage create(Long formId, Long userId, String username, Long fieldId, String fieldName,
+                                             Long expiresAt, Long fencingToken) {
         return LockAcquiredMessage.builder()
                 .type("LOCK_ACQUIRED")
                 .formId(formId)
@@ -29,6 +31,7 @@ public class LockAcquiredMessage extends WebSocketMessage {
                 .fieldId(fieldId)
                 .fieldName(fieldName)
                 .expiresAt(expiresAt)
+                .fencingToken(fencingToken)
                 .timestamp(System.currentTimeMillis())
                 .build();
     }
@@ -0,0 +1,37 @@
+package com.collabform.dto.websocket;
+
+import com.collabform.dto.UserDto;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+import java.util.List;
+
+/**
+ * WebSocket message with the users who joined and left a form since the previous one.
+ * Changes are batched, so a burst of reconnects is announced once. Clients apply it to the
+ * roster they hold, unless its version is not newer than that roster's.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceMessage extends WebSocketMessage {
+    private long version;
+    private List<UserDto> joined;
+    private List<Long> left;
+
+    public static PresenceMessage create(Long formId, long version, List<UserDto> joined, List<Long> left) {
+        return PresenceMessage.builder()
+                .type("PRESENCE")
+                .formId(formId)
+                .version(version)
+                .joined(joined)
+                .left(left)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+}
@@ -0,0 +1,31 @@
+package com.collabform.dto.websocket;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * WebSocket message telling a subscriber that another node serves the form. The client
+ * unsubscribes, connects to {@code url} and subscribes there, resuming from its last sequence.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RedirectMessage extends WebSocketMessage {
+    private String nodeId;
+    private String url;
+
+    public static RedirectMessage create(Long formId, String nodeId, String url) {
+        return RedirectMessage.builder()
+                .type("REDIRECT")
+                .formId(formId)
+                .nodeId(nodeId)
+                .url(url)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+}
@@ -0,0 +1,34 @@
+package com.collabform.dto.websocket;
+
+import com.collabform.dto.UserDto;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+import java.util.List;
+
+/**
+ * WebSocket message with the users currently collaborating on a form, sent to a single subscriber
+ * when it subscribes. {@link PresenceMessage}s with a version up to this one's are already included.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RosterMessage extends WebSocketMessage {
+    private long version;
+    private List<UserDto> members;
+
+    public static RosterMessage create(Long formId, long version, List<UserDto> members) {
+        return RosterMessage.builder()
+                .type("ROSTER")
+                .formId(formId)
+                .version(version)
+                .members(members)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+}
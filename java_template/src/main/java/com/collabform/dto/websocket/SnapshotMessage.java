@@ -0,0 +1,34 @@
+package com.collabform.dto.websocket;
+
+import com.collabform.dto.response.FieldValueResponse;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+import java.util.List;
+
+/**
+ * WebSocket message with the current values of a form, sent to a single subscriber that asked to
+ * resume from an event the server no longer has. Its sequence is the last event the values include;
+ * events that follow may repeat changes already in the snapshot, which clients recognise by revision.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@SuperBuilder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SnapshotMessage extends WebSocketMessage {
+    private List<FieldValueResponse> values;
+
+    public static SnapshotMessage create(Long formId, long sequence, List<FieldValueResponse> values) {
+        return SnapshotMessage.builder()
+                .type("SNAPSHOT")
+                .formId(formId)
+                .sequence(sequence)
+                .values(values)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.collabform.dto.websocket;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import lombok.AllArgsConstructor;
@@ -26,7 +27,11 @@ import lombok.experimental.SuperBuilder;
         @JsonSubTypes.Type(value = LockRequestMessage.class, name = "LOCK_REQUEST"),
         @JsonSubTypes.Type(value = LockAcquiredMessage.class, name = "LOCK_ACQUIRED"),
         @JsonSubTypes.Type(value = LockReleasedMessage.class, name = "LOCK_RELEASED"),
-        @JsonSubTypes.Type(value = GenericMessage.class, name = "GENERIC_MESSAGE") // ✅ Add this
+        @JsonSubTypes.Type(value = GenericMessage.class, name = "GENERIC_MESSAGE"), // ✅ Add this
+        @JsonSubTypes.Type(value = SnapshotMessage.class, name = "SNAPSHOT"),
+        @JsonSubTypes.Type(value = RedirectMessage.class, name = "REDIRECT"),
+        @JsonSubTypes.Type(value = PresenceMessage.class, name = "PRESENCE"),
+        @JsonSubTypes.Type(value = RosterMessage.class, name = "ROSTER")
 })
 public abstract class WebSocketMessage {
     private String type;
@@ -34,4 +39,8 @@ public abstract class WebSocketMessage {
     private Long userId;
     private String username;
     private Long timestamp;
+    
+    // Position in the form's event log; typing previews are not logged and carry none
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long sequence;
 }
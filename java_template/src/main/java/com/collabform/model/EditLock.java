@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 
@@ -13,7 +14,7 @@ import java.time.LocalDateTime;
  * This prevents multiple users from editing the same field simultaneously.
  */
 @Entity
-@Table(name = "edit_locks")
+@Table(name = "edit_locks", uniqueConstraints = @UniqueConstraint(columnNames = {"field_id", "response_id"}))
 @Data
 @Builder
 @NoArgsConstructor
@@ -21,7 +22,8 @@ import java.time.LocalDateTime;
 public class EditLock {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "edit_lock_seq")
+    @SequenceGenerator(name = "edit_lock_seq", sequenceName = "edit_locks_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -42,6 +44,17 @@ public class EditLock {
     @Column(nullable = false)
     private LocalDateTime expiresAt;
 
+    /**
+     * Fencing token issued with this lock; writes carrying an older token are rejected.
+     */
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private long fencingToken;
+
+    @Column(nullable = false)
+    @ColumnDefault("false")
+    private boolean released;
+
     /**
      * Checks if this lock has expired.
      * @return true if the lock has expired, false otherwise
@@ -50,6 +63,14 @@ public class EditLock {
         return LocalDateTime.now().isAfter(expiresAt);
     }
 
+    /**
+     * Checks if this lock is still held.
+     * @return true if the lock has been neither released nor expired
+     */
+    public boolean isActive() {
+        return !released && !isExpired();
+    }
+
     /**
      * Refreshes the lock expiry time.
      * Typically called when a user continues editing a field.
@@ -60,9 +81,10 @@ public class EditLock {
 
     /**
      * Explicitly releases the lock.
-     * This sets the expiry time to now, effectively releasing the lock.
+     * This sets the expiry time to now and marks the lock as released.
      */
     public void release() {
         this.expiresAt = LocalDateTime.now();
+        this.released = true;
     }
 }
\ No newline at end of file
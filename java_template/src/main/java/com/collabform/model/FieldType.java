@@ -12,5 +12,12 @@ public enum FieldType {
     CHECKBOX,
     DATE,
     TIME,
-    DATETIME
+    DATETIME;
+
+    /**
+     * Whether values of this type are free text, which clients may edit with text patches.
+     */
+    public boolean isText() {
+        return this == TEXT || this == TEXTAREA;
+    }
 }
\ No newline at end of file
@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 
@@ -19,10 +22,18 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class FieldValue {
 
+    /**
+     * Longest value the value column holds.
+     */
+    public static final int MAX_VALUE_LENGTH = 4000;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "field_value_seq")
+    @SequenceGenerator(name = "field_value_seq", sequenceName = "field_values_seq", allocationSize = 50)
     private Long id;
 
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     @ManyToOne
     @JoinColumn(name = "response_id", nullable = false)
     private FormResponse response;
@@ -31,7 +42,7 @@ public class FieldValue {
     @JoinColumn(name = "field_id", nullable = false)
     private FormField field;
 
-    @Column(name = "`value`", length = 4000) // Using backticks for H2
+    @Column(name = "`value`", length = MAX_VALUE_LENGTH) // Using backticks for H2
     private String value;
 
     private LocalDateTime lastUpdated;
@@ -41,7 +52,18 @@ public class FieldValue {
     private User lastUpdatedBy;
 
     /**
-     * Sets the value and updates the last updated information.
+     * Fencing token of the lock under which the value was last written.
+     */
+    private Long fencingToken;
+
+    /**
+     * Number of writes to the value; clients send it as the base of text patches.
+     */
+    @ColumnDefault("0")
+    private long revision;
+
+    /**
+     * Sets the value and updates the last updated information and revision.
      * @param value The new value
      * @param user The user making the update
      */
@@ -49,5 +71,24 @@ public class FieldValue {
         this.value = value;
         this.lastUpdated = LocalDateTime.now();
         this.lastUpdatedBy = user;
+        this.revision++;
+    }
+
+    /**
+     * Checks whether a write carrying the given fencing token may overwrite this value.
+     * @param token The fencing token of the writer's lock
+     * @return true unless the value was already written under a newer lock
+     */
+    public boolean acceptsFencingToken(long token) {
+        return fencingToken == null || token >= fencingToken;
+    }
+
+    /**
+     * Checks whether a value fits the value column.
+     * @param value The value
+     * @return true if the value is null or at most {@link #MAX_VALUE_LENGTH} characters long
+     */
+    public static boolean fitsColumn(String value) {
+        return value == null || value.length() <= MAX_VALUE_LENGTH;
     }
-}
\ No newline at end of file
+}
@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -16,17 +17,42 @@ import java.util.UUID;
 
 /**
  * Entity representing a form in the system.
+ * The named entity graphs are the fetch plans of the form DTO shapes, so that loading any number
+ * of forms takes a fixed number of queries. The two collections are bags and cannot be fetched in
+ * the same query, so no graph contains both.
  */
 @Entity
-@Table(name = "forms")
+@Table(name = "forms", indexes = @Index(name = "idx_forms_admin_updated", columnList = "admin_id, updatedAt, id"))
+@NamedEntityGraph(name = Form.SUMMARY_GRAPH, attributeNodes = {
+        @NamedAttributeNode("admin"),
+        @NamedAttributeNode("response")
+})
+@NamedEntityGraph(name = Form.DETAIL_GRAPH, attributeNodes = {
+        @NamedAttributeNode("admin"),
+        @NamedAttributeNode("response"),
+        @NamedAttributeNode("fields")
+})
+@NamedEntityGraph(name = Form.COLLABORATORS_GRAPH, attributeNodes = {
+        @NamedAttributeNode("admin"),
+        @NamedAttributeNode("response"),
+        @NamedAttributeNode(value = "accessEntries", subgraph = "access")
+}, subgraphs = @NamedSubgraph(name = "access", attributeNodes = @NamedAttributeNode("user")))
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
 public class Form {
 
+    // Admin and response, for form lists
+    public static final String SUMMARY_GRAPH = "Form.summary";
+    // Admin, response and fields
+    public static final String DETAIL_GRAPH = "Form.detail";
+    // Admin, response and the users the form is shared with
+    public static final String COLLABORATORS_GRAPH = "Form.collaborators";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "form_seq")
+    @SequenceGenerator(name = "form_seq", sequenceName = "forms_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -48,6 +74,11 @@ public class Form {
     @Column(nullable = false)
     private boolean active = true;
 
+    // Incremented by every change to the form's detail: its settings, fields, shares and response status
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private long schemaVersion;
+
     @OneToMany(mappedBy = "form", cascade = CascadeType.ALL, orphanRemoval = true)
     @OrderBy("displayOrder")
     private List<FormField> fields = new ArrayList<>();
@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 /**
  * Entity representing a field in a form.
@@ -18,9 +20,12 @@ import lombok.NoArgsConstructor;
 public class FormField {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "form_field_seq")
+    @SequenceGenerator(name = "form_field_seq", sequenceName = "form_fields_seq", allocationSize = 50)
     private Long id;
 
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     @ManyToOne
     @JoinColumn(name = "form_id", nullable = false)
     private Form form;
@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -25,9 +27,13 @@ import java.util.List;
 public class FormResponse {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "form_response_seq")
+    @SequenceGenerator(name = "form_response_seq", sequenceName = "form_responses_seq", allocationSize = 50)
     private Long id;
 
+    // Back-reference to the owning entity; excluded so equals, hashCode and toString do not recurse
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     @OneToOne
     @JoinColumn(name = "form_id", unique = true, nullable = false)
     private Form form;
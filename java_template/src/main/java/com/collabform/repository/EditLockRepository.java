@@ -1,7 +1,11 @@
 package com.collabform.repository;
 
 import com.collabform.model.EditLock;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -22,6 +26,65 @@ public interface EditLockRepository extends JpaRepository<EditLock, Long> {
      */
     Optional<EditLock> findByFieldIdAndResponseId(Long fieldId, Long responseId);
     
+    /**
+     * Delete the lock rows for a specific field in a specific response in a single statement.
+     * 
+     * @param fieldId The ID of the field
+     * @param responseId The ID of the response
+     */
+    @Modifying
+    @Query("DELETE FROM EditLock l WHERE l.field.id = :fieldId AND l.response.id = :responseId")
+    void deleteByFieldIdAndResponseId(Long fieldId, Long responseId);
+    
+    /**
+     * Find the lock for a specific field in a specific response, locking the row for the transaction.
+     * 
+     * @param fieldId The ID of the field
+     * @param responseId The ID of the response
+     * @return An Optional containing the lock if found, empty otherwise
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM EditLock l WHERE l.field.id = :fieldId AND l.response.id = :responseId")
+    Optional<EditLock> findForUpdate(Long fieldId, Long responseId);
+    
+    /**
+     * Mark a lock as released if it is still the acquisition identified by the fencing token.
+     * 
+     * @param fieldId The ID of the field
+     * @param responseId The ID of the response
+     * @param fencingToken The fencing token of the acquisition to release
+     * @param now The current time
+     * @return The number of rows updated (0 or 1)
+     */
+    @Modifying
+    @Query("UPDATE EditLock l SET l.released = true, l.expiresAt = :now " +
+            "WHERE l.field.id = :fieldId AND l.response.id = :responseId " +
+            "AND l.fencingToken = :fencingToken AND l.released = false")
+    int releaseLock(Long fieldId, Long responseId, long fencingToken, LocalDateTime now);
+    
+    /**
+     * Mark a lock as released if it is still the acquisition identified by the fencing token and has expired.
+     * 
+     * @param fieldId The ID of the field
+     * @param responseId The ID of the response
+     * @param fencingToken The fencing token of the acquisition to release
+     * @param now The current time
+     * @return The number of rows updated (0 or 1)
+     */
+    @Modifying
+    @Query("UPDATE EditLock l SET l.released = true " +
+            "WHERE l.field.id = :fieldId AND l.response.id = :responseId " +
+            "AND l.fencingToken = :fencingToken AND l.released = false AND l.expiresAt < :now")
+    int releaseLockIfExpired(Long fieldId, Long responseId, long fencingToken, LocalDateTime now);
+    
+    /**
+     * Find the highest fencing token recorded for any lock.
+     * 
+     * @return The highest token, or null if there are no locks
+     */
+    @Query("SELECT MAX(l.fencingToken) FROM EditLock l")
+    Long findHighestFencingToken();
+    
     /**
      * Find all locks for a specific response.
      * 
@@ -30,6 +93,17 @@ public interface EditLockRepository extends JpaRepository<EditLock, Long> {
      */
     List<EditLock> findByResponseId(Long responseId);
     
+    /**
+     * Find the unreleased, unexpired locks of a response with their fields, holders and response, in one query.
+     * 
+     * @param responseId The ID of the response
+     * @param now The current time
+     * @return A list of active locks for the response
+     */
+    @Query("SELECT l FROM EditLock l JOIN FETCH l.field JOIN FETCH l.user JOIN FETCH l.response r " +
+            "WHERE r.id = :responseId AND l.released = false AND l.expiresAt > :now")
+    List<EditLock> findActiveByResponseId(Long responseId, LocalDateTime now);
+    
     /**
      * Delete all locks held by a specific user for a specific response.
      * 
@@ -46,6 +120,15 @@ public interface EditLockRepository extends JpaRepository<EditLock, Long> {
      */
     List<EditLock> findByUserId(Long userId);
     
+    /**
+     * Find all locks held by a specific user for a specific response.
+     * 
+     * @param userId The ID of the user
+     * @param responseId The ID of the response
+     * @return A list of locks held by the user on the response
+     */
+    List<EditLock> findByUserIdAndResponseId(Long userId, Long responseId);
+    
     /**
      * Find all locks that have expired.
      * 
@@ -53,4 +136,30 @@ public interface EditLockRepository extends JpaRepository<EditLock, Long> {
      * @return A list of expired locks
      */
     List<EditLock> findByExpiresAtBefore(LocalDateTime now);
+    
+    /**
+     * Find all locks that have expired without being released.
+     * 
+     * @param now The current time
+     * @return A list of expired, unreleased locks
+     */
+    List<EditLock> findByReleasedFalseAndExpiresAtBefore(LocalDateTime now);
+    
+    /**
+     * Find all locks that have not yet expired.
+     * 
+     * @param now The current time
+     * @return A list of active locks
+     */
+    List<EditLock> findByExpiresAtAfter(LocalDateTime now);
+    
+    /**
+     * Delete all locks that have expired in a single statement.
+     * 
+     * @param now The current time
+     * @return The number of rows removed
+     */
+    @Modifying
+    @Query("DELETE FROM EditLock l WHERE l.expiresAt < :now")
+    int deleteExpired(LocalDateTime now);
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package com.collabform.repository;
 
 import com.collabform.model.FieldValue;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -21,6 +24,25 @@ public interface FieldValueRepository extends JpaRepository<FieldValue, Long> {
      */
     Optional<FieldValue> findByResponseIdAndFieldId(Long responseId, Long fieldId);
     
+    /**
+     * Find a specific field value, locking the row so the fencing check and the write are atomic.
+     * 
+     * @param responseId The ID of the response
+     * @param fieldId The ID of the field
+     * @return An Optional containing the field value if found, empty otherwise
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM FieldValue v WHERE v.response.id = :responseId AND v.field.id = :fieldId")
+    Optional<FieldValue> findForUpdate(Long responseId, Long fieldId);
+    
+    /**
+     * Find the highest fencing token any value was written with.
+     * 
+     * @return The highest token, or null if no value carries one
+     */
+    @Query("SELECT MAX(v.fencingToken) FROM FieldValue v")
+    Long findHighestFencingToken();
+    
     /**
      * Find all field values for a specific response.
      * 
@@ -28,4 +50,14 @@ public interface FieldValueRepository extends JpaRepository<FieldValue, Long> {
      * @return A list of field values for the response
      */
     List<FieldValue> findByResponseId(Long responseId);
+    
+    /**
+     * Find all field values for a specific response with their fields and last editors, in one query.
+     * 
+     * @param responseId The ID of the response
+     * @return A list of field values for the response
+     */
+    @Query("SELECT v FROM FieldValue v JOIN FETCH v.field LEFT JOIN FETCH v.lastUpdatedBy " +
+            "WHERE v.response.id = :responseId")
+    List<FieldValue> findWithFieldsByResponseId(Long responseId);
 }
\ No newline at end of file
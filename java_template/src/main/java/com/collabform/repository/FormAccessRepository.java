@@ -2,6 +2,7 @@ package com.collabform.repository;
 
 import com.collabform.model.FormAccess;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -45,4 +46,24 @@ public interface FormAccessRepository extends JpaRepository<FormAccess, Long> {
      * @return true if the user has access, false otherwise
      */
     boolean existsByFormIdAndUserId(Long formId, Long userId);
+    
+    /**
+     * Read who the forms in a range of IDs are shared with.
+     * 
+     * @param firstId The lowest form ID, inclusive
+     * @param lastId The highest form ID, inclusive
+     * @return One entry per user a form is shared with
+     */
+    @Query("SELECT fa.form.id AS formId, fa.user.id AS userId FROM FormAccess fa " +
+           "WHERE fa.form.id BETWEEN :firstId AND :lastId")
+    List<Grant> findGrantsByFormIdBetween(Long firstId, Long lastId);
+    
+    /**
+     * Projection of a user's access to a form.
+     */
+    interface Grant {
+        Long getFormId();
+        
+        Long getUserId();
+    }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.collabform.repository;
 
 import com.collabform.model.FormField;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -33,4 +34,24 @@ public interface FormFieldRepository extends JpaRepository<FormField, Long> {
      * @return An ordered list of fields belonging to the form
      */
     List<FormField> findByFormIdOrderByDisplayOrder(Long formId);
+    
+    /**
+     * Read the field names of the forms in a range of IDs.
+     * 
+     * @param firstId The lowest form ID, inclusive
+     * @param lastId The highest form ID, inclusive
+     * @return The name of every field of the forms, with the ID of its form
+     */
+    @Query("SELECT f.form.id AS formId, f.fieldName AS fieldName FROM FormField f " +
+           "WHERE f.form.id BETWEEN :firstId AND :lastId")
+    List<FieldName> findNamesByFormIdBetween(Long firstId, Long lastId);
+    
+    /**
+     * Projection of a field's name and form.
+     */
+    interface FieldName {
+        Long getFormId();
+        
+        String getFieldName();
+    }
 }
\ No newline at end of file
@@ -2,14 +2,25 @@ package com.collabform.repository;
 
 import com.collabform.model.Form;
 import com.collabform.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for accessing Form entities in the database.
+ * Methods that return forms for display load them with the entity graph of the DTO they fill.
  */
 @Repository
 public interface FormRepository extends JpaRepository<Form, Long> {
@@ -19,6 +30,7 @@ public interface FormRepository extends JpaRepository<Form, Long> {
      * @param admin The user who is the admin of the forms
      * @return A list of forms created by the admin
      */
+    @EntityGraph(Form.SUMMARY_GRAPH)
     List<Form> findByAdmin(User admin);
     
     /**
@@ -28,22 +40,160 @@ public interface FormRepository extends JpaRepository<Form, Long> {
      * @param active The active status to filter by
      * @return A list of active forms created by the admin
      */
+    @EntityGraph(Form.SUMMARY_GRAPH)
     List<Form> findByAdminAndActive(User admin, boolean active);
     
     /**
-     * Search for forms by title containing the specified text.
+     * Find active forms that are accessible to a specific user through FormAccess.
      * 
-     * @param title The title text to search for
-     * @return A list of forms with matching titles
+     * @param userId The ID of the user
+     * @return A list of active forms accessible to the user
+     */
+    @EntityGraph(Form.SUMMARY_GRAPH)
+    @Query("SELECT f FROM Form f WHERE f.active = true AND EXISTS " +
+           "(SELECT 1 FROM FormAccess fa WHERE fa.form.id = f.id AND fa.user.id = :userId)")
+    List<Form> findActiveFormsAccessibleToUser(Long userId);
+    
+    /**
+     * Find a page of the forms created by a specific admin, most recently updated first.
+     * 
+     * @param adminId The ID of the admin
+     * @param activeOnly Whether to include only active forms
+     * @param updatedAt Last update of the form the page follows
+     * @param id ID of the form the page follows
+     * @param page The page size
+     * @return The forms that sort after the given one
+     */
+    @EntityGraph(Form.SUMMARY_GRAPH)
+    @Query("SELECT f FROM Form f WHERE f.admin.id = :adminId AND (f.active = true OR :activeOnly = false) " +
+           "AND (f.updatedAt < :updatedAt OR (f.updatedAt = :updatedAt AND f.id < :id)) " +
+           "ORDER BY f.updatedAt DESC, f.id DESC")
+    List<Form> findPageByAdmin(Long adminId, boolean activeOnly, LocalDateTime updatedAt, Long id, Pageable page);
+    
+    /**
+     * Find a page of the active forms accessible to a specific user, most recently updated first.
+     * 
+     * @param userId The ID of the user
+     * @param updatedAt Last update of the form the page follows
+     * @param id ID of the form the page follows
+     * @param page The page size
+     * @return The forms that sort after the given one
+     */
+    @EntityGraph(Form.SUMMARY_GRAPH)
+    @Query("SELECT f FROM Form f WHERE f.active = true AND EXISTS " +
+           "(SELECT 1 FROM FormAccess fa WHERE fa.form.id = f.id AND fa.user.id = :userId) " +
+           "AND (f.updatedAt < :updatedAt OR (f.updatedAt = :updatedAt AND f.id < :id)) " +
+           "ORDER BY f.updatedAt DESC, f.id DESC")
+    List<Form> findActivePageAccessibleToUser(Long userId, LocalDateTime updatedAt, Long id, Pageable page);
+    
+    /**
+     * Stream the forms created by a specific admin, most recently updated first.
+     * Must be consumed and closed within a transaction.
+     * 
+     * @param adminId The ID of the admin
+     * @param activeOnly Whether to include only active forms
+     * @return The forms, read from the database as the stream advances
      */
-    List<Form> findByTitleContainingIgnoreCase(String title);
+    @EntityGraph(Form.SUMMARY_GRAPH)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "200"))
+    @Query("SELECT f FROM Form f WHERE f.admin.id = :adminId AND (f.active = true OR :activeOnly = false) " +
+           "ORDER BY f.updatedAt DESC, f.id DESC")
+    Stream<Form> streamByAdmin(Long adminId, boolean activeOnly);
     
     /**
-     * Find forms that are accessible to a specific user through FormAccess.
+     * Stream the active forms accessible to a specific user, most recently updated first.
+     * Must be consumed and closed within a transaction.
      * 
      * @param userId The ID of the user
-     * @return A list of forms accessible to the user
+     * @return The forms, read from the database as the stream advances
+     */
+    @EntityGraph(Form.SUMMARY_GRAPH)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "200"))
+    @Query("SELECT f FROM Form f WHERE f.active = true AND EXISTS " +
+           "(SELECT 1 FROM FormAccess fa WHERE fa.form.id = f.id AND fa.user.id = :userId) " +
+           "ORDER BY f.updatedAt DESC, f.id DESC")
+    Stream<Form> streamActiveAccessibleToUser(Long userId);
+    
+    /**
+     * Find a form with its admin and response.
+     * 
+     * @param id The ID of the form
+     * @return An Optional containing the form if found, empty otherwise
+     */
+    @EntityGraph(Form.SUMMARY_GRAPH)
+    Optional<Form> findSummaryById(Long id);
+    
+    /**
+     * Find a form with its admin, response and fields.
+     * 
+     * @param id The ID of the form
+     * @return An Optional containing the form if found, empty otherwise
+     */
+    @EntityGraph(Form.DETAIL_GRAPH)
+    Optional<Form> findDetailById(Long id);
+    
+    /**
+     * Find a form with its admin, response and the users it is shared with.
+     * 
+     * @param id The ID of the form
+     * @return An Optional containing the form if found, empty otherwise
+     */
+    @EntityGraph(Form.COLLABORATORS_GRAPH)
+    Optional<Form> findWithCollaboratorsById(Long id);
+    
+    /**
+     * Find forms with their admin and response.
+     * 
+     * @param ids The IDs of the forms
+     * @return The forms that exist, in no particular order
+     */
+    @EntityGraph(Form.SUMMARY_GRAPH)
+    List<Form> findSummariesByIdIn(Collection<Long> ids);
+    
+    /**
+     * Read the indexed columns of the forms that follow an ID, in ID order.
+     * 
+     * @param afterId The ID the batch follows
+     * @param page The batch size
+     * @return The columns of the forms in the batch
+     */
+    @Query("SELECT new com.collabform.repository.FormSearchSource(f.id, f.title, f.description, f.admin.id, " +
+           "f.active, f.updatedAt) FROM Form f WHERE f.id > :afterId ORDER BY f.id")
+    List<FormSearchSource> findSearchSourcesAfter(Long afterId, Pageable page);
+    
+    /**
+     * Read the indexed columns of a form.
+     * 
+     * @param id The ID of the form
+     * @return An Optional containing the columns if the form exists, empty otherwise
+     */
+    @Query("SELECT new com.collabform.repository.FormSearchSource(f.id, f.title, f.description, f.admin.id, " +
+           "f.active, f.updatedAt) FROM Form f WHERE f.id = :id")
+    Optional<FormSearchSource> findSearchSourceById(Long id);
+    
+    /**
+     * Resolve a form's owner and response, and whether a user has access to it, in a single query.
+     * 
+     * @param formId The ID of the form
+     * @param userId The ID of the user
+     * @return An Optional containing the projection if the form exists, empty otherwise
+     */
+    @Query("SELECT f.id AS formId, f.admin.id AS adminId, r.id AS responseId, " +
+           "CASE WHEN f.admin.id = :userId OR EXISTS " +
+           "(SELECT 1 FROM FormAccess fa WHERE fa.form.id = f.id AND fa.user.id = :userId) " +
+           "THEN true ELSE false END AS accessible " +
+           "FROM Form f LEFT JOIN f.response r WHERE f.id = :formId")
+    Optional<ResponseAccess> findResponseAccess(Long formId, Long userId);
+    
+    /**
+     * Increment the schema version of a form in a single statement, which holds the form's row
+     * until the transaction ends, so concurrent changes are given versions one after the other.
+     * The update time of the form is left as it is.
+     * 
+     * @param formId The ID of the form
+     * @return The number of forms changed
      */
-    @Query("SELECT DISTINCT fa.form FROM FormAccess fa WHERE fa.user.id = :userId")
-    List<Form> findFormsAccessibleToUser(Long userId);
+    @Modifying
+    @Query("UPDATE Form f SET f.schemaVersion = f.schemaVersion + 1 WHERE f.id = :formId")
+    int incrementSchemaVersion(Long formId);
 }
\ No newline at end of file
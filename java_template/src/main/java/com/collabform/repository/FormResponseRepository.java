@@ -1,9 +1,13 @@
 package com.collabform.repository;
 
 import com.collabform.model.FormResponse;
+import com.collabform.model.ResponseStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 /**
@@ -19,4 +23,26 @@ public interface FormResponseRepository extends JpaRepository<FormResponse, Long
      * @return An Optional containing the response if found, empty otherwise
      */
     Optional<FormResponse> findByFormId(Long formId);
+    
+    /**
+     * Find the ID of the response for a specific form without loading it.
+     * 
+     * @param formId The ID of the form
+     * @return An Optional containing the response ID if found, empty otherwise
+     */
+    @Query("SELECT r.id FROM FormResponse r WHERE r.form.id = :formId")
+    Optional<Long> findIdByFormId(Long formId);
+    
+    /**
+     * Change the status of a response in a single statement, unless it already has that status.
+     * 
+     * @param id The ID of the response
+     * @param status The new status
+     * @param updatedAt The time of the change
+     * @return The number of responses changed
+     */
+    @Modifying
+    @Query("UPDATE FormResponse r SET r.status = :status, r.updatedAt = :updatedAt " +
+           "WHERE r.id = :id AND r.status <> :status")
+    int updateStatus(Long id, ResponseStatus status, LocalDateTime updatedAt);
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.collabform.repository;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * The form columns the search index is built from, read without loading the entity.
+ * A class rather than a projection interface, since the whole table is read at startup.
+ */
+@Value
+public class FormSearchSource {
+    Long id;
+    String title;
+    String description;
+    Long adminId;
+    boolean active;
+    LocalDateTime updatedAt;
+}
@@ -0,0 +1,21 @@
+package com.collabform.repository;
+
+/**
+ * Projection of a form's owner and response and whether a user may work on it, read in one query.
+ */
+public interface ResponseAccess {
+
+    Long getFormId();
+
+    Long getAdminId();
+
+    /**
+     * @return The ID of the form's response, or null if it has none
+     */
+    Long getResponseId();
+
+    /**
+     * @return true if the user is the form's admin or has been given access to it
+     */
+    boolean isAccessible();
+}
@@ -1,8 +1,10 @@
 package com.collabform.security;
 
 import com.collabform.model.User;
+import com.collabform.model.UserRole;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SecurityException;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +16,7 @@ import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Utility class for JWT token generation and validation.
@@ -105,25 +108,62 @@ public class JwtTokenProvider {
     }
 
     /**
-     * Validate a JWT token.
+     * Verify a JWT token and read its claims, parsing it only once.
      *
-     * @param token The JWT token to validate
-     * @return true if the token is valid, false otherwise
+     * @param token The JWT token
+     * @return The claims, or empty if the token is invalid or expired
      */
-    public boolean validateToken(String token) {
+    public Optional<Claims> parseToken(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
-            return true;
+            return Optional.of(Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody());
         } catch (MalformedJwtException e) {
             log.error("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
             log.error("JWT token is expired: {}", e.getMessage());
         } catch (UnsupportedJwtException e) {
             log.error("JWT token is unsupported: {}", e.getMessage());
+        } catch (SecurityException e) {
+            log.error("Invalid JWT signature: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             log.error("JWT claims string is empty: {}", e.getMessage());
         }
-        return false;
+        return Optional.empty();
+    }
+
+    /**
+     * Build the user a token was issued to from the claims embedded by {@link #generateTokenFromUser},
+     * without loading it from the database.
+     *
+     * @param claims The verified claims of the token
+     * @return The user, or empty if the token does not carry the user's details
+     */
+    public Optional<User> getUserFromClaims(Claims claims) {
+        Object id = claims.get("id");
+        String email = claims.get("email", String.class);
+        String role = claims.get("role", String.class);
+        if (!(id instanceof Number) || claims.getSubject() == null || email == null || role == null) {
+            return Optional.empty();
+        }
+        return Optional.of(User.builder()
+                .id(((Number) id).longValue())
+                .username(claims.getSubject())
+                .email(email)
+                .role(UserRole.valueOf(role))
+                .accountNonExpired(true)
+                .accountNonLocked(true)
+                .credentialsNonExpired(true)
+                .enabled(true)
+                .build());
+    }
+
+    /**
+     * Validate a JWT token.
+     *
+     * @param token The JWT token to validate
+     * @return true if the token is valid, false otherwise
+     */
+    public boolean validateToken(String token) {
+        return parseToken(token).isPresent();
     }
     
     /**
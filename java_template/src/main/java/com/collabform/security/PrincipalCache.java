@@ -0,0 +1,142 @@
+package com.collabform.security;
+
+import com.collabform.model.User;
+import io.jsonwebtoken.Claims;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves bearer tokens to the users they were issued to. A token is verified once and the user
+ * is built from its signed claims; the result is cached under a hash of the token for a short
+ * while, so repeated requests with the same token need neither a signature check nor a database
+ * lookup. Tokens without the user claims fall back to loading the user.
+ * <p>
+ * Revoked tokens are remembered until they expire. Revocations are held in memory, so they only
+ * apply to the node that received them.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PrincipalCache {
+
+    private final JwtTokenProvider tokenProvider;
+    private final CustomUserDetailsService userDetailsService;
+
+    @Value("${collabform.auth.principal-cache.ttl-ms:60000}")
+    private long ttlMs;
+
+    @Value("${collabform.auth.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    // token hash -> principal
+    private final Map<String, CachedPrincipal> principals = new ConcurrentHashMap<>();
+
+    // token hash -> expiry of the revoked token
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    /**
+     * Get the user a token was issued to.
+     *
+     * @param token The JWT token
+     * @return The user, or empty if the token is invalid, expired or revoked
+     */
+    public Optional<User> resolve(String token) {
+        String hash = hash(token);
+        long now = System.currentTimeMillis();
+        CachedPrincipal cached = principals.get(hash);
+        if (cached != null && cached.expiresAt > now) {
+            return Optional.of(cached.user);
+        }
+        if (revoked.containsKey(hash)) {
+            return Optional.empty();
+        }
+
+        Optional<Claims> claims = tokenProvider.parseToken(token);
+        if (claims.isEmpty()) {
+            return Optional.empty();
+        }
+        User user = tokenProvider.getUserFromClaims(claims.get())
+                .orElseGet(() -> (User) userDetailsService.loadUserByUsername(claims.get().getSubject()));
+
+        if (principals.size() >= maxSize) {
+            removeExpired(now);
+        }
+        if (principals.size() < maxSize) {
+            CachedPrincipal entry = new CachedPrincipal(user, Math.min(now + ttlMs, claims.get().getExpiration().getTime()));
+            principals.put(hash, entry);
+            // A revocation that ran meanwhile may have missed the new entry
+            if (revoked.containsKey(hash)) {
+                principals.remove(hash, entry);
+                return Optional.empty();
+            }
+        }
+        return Optional.of(user);
+    }
+
+    /**
+     * Revoke a token, so it no longer authenticates any request.
+     *
+     * @param token The JWT token
+     * @return false if the token was not valid to begin with
+     */
+    public boolean revoke(String token) {
+        Optional<Claims> claims = tokenProvider.parseToken(token);
+        if (claims.isEmpty()) {
+            return false;
+        }
+        String hash = hash(token);
+        revoked.put(hash, claims.get().getExpiration().getTime());
+        principals.remove(hash);
+        log.debug("Revoked token of user: {}", claims.get().getSubject());
+        return true;
+    }
+
+    /**
+     * Drop expired principals, and revocations of tokens that have expired anyway.
+     */
+    @Scheduled(fixedDelayString = "${collabform.auth.principal-cache.sweep-ms:60000}")
+    public void sweepExpired() {
+        long now = System.currentTimeMillis();
+        removeExpired(now);
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+
+    private void removeExpired(long now) {
+        for (Iterator<CachedPrincipal> it = principals.values().iterator(); it.hasNext(); ) {
+            if (it.next().expiresAt <= now) {
+                it.remove();
+            }
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static class CachedPrincipal {
+        private final User user;
+        private final long expiresAt;
+
+        CachedPrincipal(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
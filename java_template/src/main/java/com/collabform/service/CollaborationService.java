@@ -1,17 +1,23 @@
 package com.collabform.service;
 
+import com.collabform.dto.TextEdit;
 import com.collabform.dto.UserDto;
+import com.collabform.dto.response.FieldValueResponse;
 import com.collabform.dto.websocket.*;
 import com.collabform.model.Form;
 import com.collabform.model.FormField;
 import com.collabform.model.User;
+import com.collabform.service.lock.FieldLock;
+import com.collabform.service.value.FieldValueChange;
+import com.collabform.utils.TextPatches;
+import com.collabform.websocket.FormEventLog;
+import com.collabform.websocket.TopicBroadcaster;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.util.List;
 
 /**
  * Service for handling real-time collaboration functionality and WebSocket messaging.
@@ -22,11 +28,14 @@ import java.time.ZoneOffset;
 public class CollaborationService {
 
     private final SimpMessagingTemplate messagingTemplate;
+    private final TopicBroadcaster topicBroadcaster;
+    private final FormEventLog eventLog;
 
     private static final String FORM_TOPIC_PREFIX = "/topic/form/";
 
-    public void notifyFieldUpdate(Form form, FormField field, User user, String value) {
-        FieldUpdateMessage message = FieldUpdateMessage.builder()
+    public void notifyFieldUpdate(Form form, FormField field, User user, FieldValueChange change) {
+        FieldValueResponse saved = change.getValue();
+        FieldUpdateMessage.FieldUpdateMessageBuilder<?, ?> builder = FieldUpdateMessage.builder()
                 .type("FIELD_UPDATE")
                 .formId(form.getId())
                 .userId(user.getId())
@@ -34,10 +43,17 @@ public class CollaborationService {
                 .fieldId(field.getId())
                 .fieldName(field.getFieldName())
                 .fieldType(field.getFieldType().toString())
-                .value(value)
+                .revision(saved.getRevision())
                 .isTemporary(false)
-                .timestamp(System.currentTimeMillis())
-                .build();
+                .timestamp(System.currentTimeMillis());
+
+        // Long text values go out as a patch against the previous revision
+        if (field.getFieldType().isText() && TextPatches.isSmallerThan(change.getEdits(), saved.getValue())) {
+            builder.baseRevision(change.getBaseRevision()).edits(change.getEdits());
+        } else {
+            builder.value(saved.getValue());
+        }
+        FieldUpdateMessage message = builder.build();
 
         sendToFormTopic(form.getId(), message);
 
@@ -45,62 +61,46 @@ public class CollaborationService {
                 form.getId(), field.getId(), user.getId());
     }
 
-    public void notifyFieldLocked(Form form, FormField field, User user, LocalDateTime expiresAt) {
+    public void notifyFieldLocked(FieldLock lock) {
         LockAcquiredMessage message = LockAcquiredMessage.create(
-                form.getId(),
-                user.getId(),
-                user.getUsername(),
-                field.getId(),
-                field.getFieldName(),
-                expiresAt.toInstant(ZoneOffset.UTC).toEpochMilli()
+                lock.getFormId(),
+                lock.getOwner().getId(),
+                lock.getOwner().getUsername(),
+                lock.getFieldId(),
+                lock.getFieldName(),
+                lock.getExpiresAt(),
+                lock.getFencingToken()
         );
 
-        sendToFormTopic(form.getId(), message);
+        sendToFormTopic(lock.getFormId(), message);
 
         log.debug("Notified collaborators of field lock: formId={}, fieldId={}, userId={}",
-                form.getId(), field.getId(), user.getId());
+                lock.getFormId(), lock.getFieldId(), lock.getOwner().getId());
     }
 
-    public void notifyFieldLockReleased(Form form, FormField field, User user) {
+    public void notifyFieldLockReleased(FieldLock lock) {
         LockReleasedMessage message = LockReleasedMessage.create(
-                form.getId(),
-                user.getId(),
-                user.getUsername(),
-                field.getId(),
-                field.getFieldName()
+                lock.getFormId(),
+                lock.getOwner().getId(),
+                lock.getOwner().getUsername(),
+                lock.getFieldId(),
+                lock.getFieldName()
         );
 
-        sendToFormTopic(form.getId(), message);
+        sendToFormTopic(lock.getFormId(), message);
 
         log.debug("Notified collaborators of field lock release: formId={}, fieldId={}, userId={}",
-                form.getId(), field.getId(), user.getId());
+                lock.getFormId(), lock.getFieldId(), lock.getOwner().getId());
     }
 
-    public void notifyUserJoined(Form form, User user) {
-        UserJoinMessage message = UserJoinMessage.create(
-                form.getId(),
-                user.getId(),
-                user.getUsername(),
-                user.getRole().toString()
-        );
+    public void notifyPresenceChanged(Long formId, long version, List<UserDto> joined, List<Long> left) {
+        PresenceMessage message = PresenceMessage.create(formId, version, joined, left);
 
-        sendToFormTopic(form.getId(), message);
+        // Subscribers are sent the whole roster when they subscribe, so presence is not logged for replay
+        broadcast(formId, message);
 
-        log.debug("Notified collaborators of user join: formId={}, userId={}",
-                form.getId(), user.getId());
-    }
-
-    public void notifyUserLeft(Form form, User user) {
-        UserLeaveMessage message = UserLeaveMessage.create(
-                form.getId(),
-                user.getId(),
-                user.getUsername()
-        );
-
-        sendToFormTopic(form.getId(), message);
-
-        log.debug("Notified collaborators of user leave: formId={}, userId={}",
-                form.getId(), user.getId());
+        log.debug("Notified collaborators of presence change: formId={}, joined={}, left={}",
+                formId, joined.size(), left.size());
     }
 
     public void notifyUserAdded(Form form, User newUser) {
@@ -125,6 +125,7 @@ public class CollaborationService {
                 .userId(form.getAdmin().getId())
                 .username(form.getAdmin().getUsername())
                 .timestamp(System.currentTimeMillis())
+                .schemaVersion(form.getSchemaVersion())
                 .build();
 
         sendToFormTopic(form.getId(), message);
@@ -176,8 +177,8 @@ public class CollaborationService {
         log.debug("Notified collaborators of form deletion: formId={}", form.getId());
     }
 
-    public void sendTemporaryFieldUpdate(Long formId, Long fieldId, String fieldName,
-                                         String fieldType, String value, User user) {
+    public void sendTemporaryFieldUpdate(Long formId, Long fieldId, String fieldName, String fieldType,
+                                         String value, Long baseRevision, List<TextEdit> edits, User user) {
         FieldUpdateMessage message = FieldUpdateMessage.builder()
                 .type("FIELD_UPDATE")
                 .formId(formId)
@@ -187,14 +188,24 @@ public class CollaborationService {
                 .fieldName(fieldName)
                 .fieldType(fieldType)
                 .value(value)
+                .baseRevision(baseRevision)
+                .edits(edits)
                 .isTemporary(true)
                 .timestamp(System.currentTimeMillis())
                 .build();
 
-        sendToFormTopic(formId, message);
+        // Previews are superseded within milliseconds, so they are not logged for replay
+        broadcast(formId, message);
+    }
+
+    private void sendToFormTopic(Long formId, WebSocketMessage message) {
+        eventLog.publish(formId, message, () -> broadcast(formId, message));
     }
 
-    private void sendToFormTopic(Long formId, Object message) {
-        messagingTemplate.convertAndSend(FORM_TOPIC_PREFIX + formId, message);
+    private void broadcast(Long formId, WebSocketMessage message) {
+        String destination = FORM_TOPIC_PREFIX + formId;
+        if (!topicBroadcaster.broadcast(destination, message)) {
+            messagingTemplate.convertAndSend(destination, message);
+        }
     }
 }
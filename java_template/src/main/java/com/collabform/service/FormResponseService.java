@@ -4,14 +4,28 @@ import com.collabform.dto.response.FieldValueResponse;
 import com.collabform.dto.response.FieldValueUpdateRequest;
 import com.collabform.model.*;
 import com.collabform.repository.*;
+import com.collabform.service.access.AccessDecision;
+import com.collabform.service.access.AccessDecisionCache;
+import com.collabform.service.lock.FieldLock;
+import com.collabform.service.lock.FieldLockStore;
+import com.collabform.service.lock.LockAcquisition;
+import com.collabform.service.schema.FormSchemaChangedEvent;
+import com.collabform.service.typing.TypingUpdateCoalescer;
+import com.collabform.service.value.FieldValueChange;
+import com.collabform.service.value.FieldValueStore;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 import com.collabform.dto.UserDto;
 
 /**
@@ -24,11 +38,20 @@ public class FormResponseService {
     private final FormRepository formRepository;
     private final FormResponseRepository responseRepository;
     private final FormFieldRepository fieldRepository;
-    private final FieldValueRepository fieldValueRepository;
-    private final EditLockRepository lockRepository;
+    private final FieldValueStore valueStore;
+    private final FieldLockStore lockStore;
     private final UserService userService;
     private final CollaborationService collaborationService;
-    private final FormAccessRepository formAccessRepository;
+    private final TypingUpdateCoalescer typingUpdateCoalescer;
+    private final AccessDecisionCache accessDecisionCache;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // How far ahead of the clock-based floor a fencing token may run before it is considered forged
+    private static final long FENCING_TOKEN_SLACK = 60_000_000L;
+
+    // Text field types whose patches are merged, so they can be edited without a lock
+    @Value("${collabform.text.merge-types:TEXT,TEXTAREA}")
+    private Set<FieldType> mergeTypes;
 
     /**
      * Get all field values for a form response.
@@ -40,29 +63,56 @@ public class FormResponseService {
     @Transactional(readOnly = true)
     public List<FieldValueResponse> getFormResponseValues(Long formId) {
         User currentUser = userService.getCurrentUser();
-        FormResponse response = getResponseAndVerifyAccess(formId, currentUser);
-        
-        // Get all field values
-        List<FieldValue> fieldValues = fieldValueRepository.findByResponseId(response.getId());
-        List<FieldValueResponse> valueResponses = fieldValues.stream()
-                .map(FieldValueResponse::fromEntity)
-                .collect(Collectors.toList());
-        
-        // Add lock information
-        List<EditLock> locks = lockRepository.findByResponseId(response.getId());
-        for (EditLock lock : locks) {
-            if (!lock.isExpired()) {
-                valueResponses.stream()
-                        .filter(vr -> vr.getFieldId().equals(lock.getField().getId()))
-                        .findFirst()
-                        .ifPresent(vr -> {
-                            vr.setLocked(true);
-                            vr.setLockedBy(UserDto.fromUser(lock.getUser()));
-                        });
+        AccessDecision access = getResponseAndVerifyAccess(formId, currentUser);
+        return getValuesWithLocks(access.getResponseId());
+    }
+
+    /**
+     * Get all field values of a form for a subscriber that resumes its session and has missed
+     * more events than are kept. The caller checks the subscriber's access to the form.
+     *
+     * @param formId The ID of the form
+     * @return List of field value responses
+     * @throws IllegalArgumentException if the response does not exist
+     */
+    @Transactional(readOnly = true)
+    public List<FieldValueResponse> getFormSnapshot(Long formId) {
+        Long responseId = responseRepository.findIdByFormId(formId)
+                .orElseThrow(() -> new IllegalArgumentException("Response not found for form ID: " + formId));
+        return getValuesWithLocks(responseId);
+    }
+
+    private List<FieldValueResponse> getValuesWithLocks(Long responseId) {
+        // Index all field values by field, including updates that have not been flushed yet
+        Map<Long, FieldValueResponse> valuesByField = new LinkedHashMap<>();
+        for (FieldValueResponse value : valueStore.getValues(responseId)) {
+            valuesByField.put(value.getFieldId(), value);
+        }
+        
+        // Add lock information; a field can be locked before anything was written to it
+        List<Long> unwrittenFieldIds = new ArrayList<>();
+        for (FieldLock lock : lockStore.getActiveLocks(responseId)) {
+            FieldValueResponse value = valuesByField.get(lock.getFieldId());
+            if (value == null) {
+                value = FieldValueResponse.builder()
+                        .fieldId(lock.getFieldId())
+                        .fieldName(lock.getFieldName())
+                        .build();
+                valuesByField.put(lock.getFieldId(), value);
+                unwrittenFieldIds.add(lock.getFieldId());
+            }
+            value.setLocked(true);
+            value.setLockedBy(lock.getOwner());
+        }
+        
+        // Locks do not carry the field type, so only fields locked without a value are read
+        if (!unwrittenFieldIds.isEmpty()) {
+            for (FormField field : fieldRepository.findAllById(unwrittenFieldIds)) {
+                valuesByField.get(field.getId()).setFieldType(field.getFieldType().toString());
             }
         }
         
-        return valueResponses;
+        return new ArrayList<>(valuesByField.values());
     }
 
     /**
@@ -71,13 +121,14 @@ public class FormResponseService {
      * @param formId The ID of the form
      * @param request The field value update request
      * @return The updated field value response
-     * @throws IllegalArgumentException if the form, field, or response does not exist
-     * @throws IllegalStateException if the field is locked by another user
+     * @throws IllegalArgumentException if the form, field, or response does not exist, or the edits do not fit
+     * @throws IllegalStateException if the value was already written under a newer lock, or the edits
+     *                               were made against an older revision
      */
     @Transactional
     public FieldValueResponse updateFieldValue(Long formId, FieldValueUpdateRequest request) {
         User currentUser = userService.getCurrentUser();
-        FormResponse response = getResponseAndVerifyAccess(formId, currentUser);
+        AccessDecision access = getResponseAndVerifyAccess(formId, currentUser);
         
         // Get the field
         FormField field = fieldRepository.findById(request.getFieldId())
@@ -88,33 +139,48 @@ public class FormResponseService {
             throw new IllegalArgumentException("Field does not belong to the form");
         }
         
-        // Check if the field is locked by another user
-        Optional<EditLock> existingLock = lockRepository.findByFieldIdAndResponseId(field.getId(), response.getId());
-        if (existingLock.isPresent() && !existingLock.get().isExpired() && !existingLock.get().getUser().getId().equals(currentUser.getId())) {
-            throw new IllegalStateException("Field is currently being edited by another user: " + existingLock.get().getUser().getUsername());
+        // Patches to merged text fields may be sent without a lock; every other write needs one.
+        // The token is checked against the one the value was last written with by the store, without
+        // reading the lock; tokens are issued from the clock floor upwards, so one from the future
+        // cannot be genuine and would otherwise fence out every later lock
+        Long fencingToken = request.getFencingToken();
+        if (fencingToken == null) {
+            if (request.getEdits() == null || !isMerged(field)) {
+                throw new IllegalArgumentException("Fencing token is required");
+            }
+        } else if (fencingToken > FieldLock.tokenFloor() + FENCING_TOKEN_SLACK) {
+            throw new IllegalArgumentException("Invalid fencing token");
+        }
+        
+        // Update the value; the store rejects writes made under an older lock and merges concurrent patches
+        FormResponse response = responseRepository.getReferenceById(access.getResponseId());
+        FieldValueChange change;
+        if (request.getEdits() != null) {
+            if (!field.getFieldType().isText()) {
+                throw new IllegalArgumentException("Only text fields can be updated with edits");
+            }
+            if (request.getBaseRevision() == null) {
+                throw new IllegalArgumentException("Base revision is required with edits");
+            }
+            change = valueStore.patch(response, field, currentUser, request.getBaseRevision(),
+                    request.getEdits(), fencingToken);
+        } else {
+            change = valueStore.write(response, field, currentUser, request.getValue(), fencingToken);
         }
         
-        // Get or create a field value
-        FieldValue fieldValue = fieldValueRepository.findByResponseIdAndFieldId(response.getId(), field.getId())
-                .orElseGet(() -> FieldValue.builder()
-                        .response(response)
-                        .field(field)
-                        .build());
-        
-        // Update the value
-        fieldValue.setValue(request.getValue(), currentUser);
-        FieldValue savedValue = fieldValueRepository.save(fieldValue);
-        
-        // Release the lock if requested
-        if (request.getReleaseLock() != null && request.getReleaseLock()) {
-            existingLock.ifPresent(lock -> lockRepository.delete(lock));
-            collaborationService.notifyFieldLockReleased(response.getForm(), field, currentUser);
+        // Release the lock if requested and it is still the one the write was made under
+        if (request.getReleaseLock() != null && request.getReleaseLock() && fencingToken != null) {
+            lockStore.getActiveLock(access.getResponseId(), field.getId())
+                    .filter(lock -> lock.getFencingToken() == fencingToken && lock.isOwnedBy(currentUser.getId()))
+                    .filter(lockStore::release)
+                    .ifPresent(collaborationService::notifyFieldLockReleased);
         }
         
-        // Notify collaborators of the update
-        collaborationService.notifyFieldUpdate(response.getForm(), field, currentUser, request.getValue());
+        // Notify collaborators of the update; a typing preview still pending would be older
+        typingUpdateCoalescer.discard(formId, field.getId(), currentUser.getId());
+        collaborationService.notifyFieldUpdate(field.getForm(), field, currentUser, change);
         
-        return FieldValueResponse.fromEntity(savedValue);
+        return change.getValue();
     }
 
     /**
@@ -123,13 +189,13 @@ public class FormResponseService {
      * @param formId The ID of the form
      * @param fieldId The ID of the field to lock
      * @param force Whether to force the lock acquisition even if already locked
-     * @return true if the lock was acquired, false otherwise
+     * @return The lock held by the current user, or empty if it could not be acquired
      * @throws IllegalArgumentException if the form, field, or response does not exist
      */
     @Transactional
-    public boolean lockField(Long formId, Long fieldId, boolean force) {
+    public Optional<FieldLock> lockField(Long formId, Long fieldId, boolean force) {
         User currentUser = userService.getCurrentUser();
-        FormResponse response = getResponseAndVerifyAccess(formId, currentUser);
+        AccessDecision access = getResponseAndVerifyAccess(formId, currentUser);
         
         // Get the field
         FormField field = fieldRepository.findById(fieldId)
@@ -140,41 +206,26 @@ public class FormResponseService {
             throw new IllegalArgumentException("Field does not belong to the form");
         }
         
-        // Check if the field is already locked
-        Optional<EditLock> existingLock = lockRepository.findByFieldIdAndResponseId(fieldId, response.getId());
-        if (existingLock.isPresent() && !existingLock.get().isExpired()) {
-            // If the current user already has the lock, refresh it
-            if (existingLock.get().getUser().getId().equals(currentUser.getId())) {
-                existingLock.get().refresh();
-                lockRepository.save(existingLock.get());
-                return true;
-            }
-            
-            // If forcing the lock, release the existing lock
-            if (force) {
-                lockRepository.delete(existingLock.get());
-                collaborationService.notifyFieldLockReleased(response.getForm(), field, existingLock.get().getUser());
-            } else {
-                return false; // Cannot acquire lock
-            }
+        LockAcquisition acquisition = lockStore.acquire(
+                formId, access.getResponseId(), fieldId, field.getFieldName(), UserDto.fromUser(currentUser), force);
+        
+        switch (acquisition.getOutcome()) {
+            case DENIED:
+                return Optional.empty(); // Cannot acquire lock
+            case STOLEN:
+                // Tell collaborators the previous owner lost the lock before announcing the new one
+                collaborationService.notifyFieldLockReleased(acquisition.getPrevious());
+                collaborationService.notifyFieldLocked(acquisition.getLock());
+                break;
+            case ACQUIRED:
+                collaborationService.notifyFieldLocked(acquisition.getLock());
+                break;
+            default:
+                // Refreshing an existing lock is not broadcast
+                break;
         }
         
-        // Create a new lock
-        LocalDateTime now = LocalDateTime.now();
-        EditLock lock = EditLock.builder()
-                .field(field)
-                .response(response)
-                .user(currentUser)
-                .lockTime(now)
-                .expiresAt(now.plusSeconds(30)) // Lock expires after 30 seconds
-                .build();
-        
-        lockRepository.save(lock);
-        
-        // Notify collaborators of the lock
-        collaborationService.notifyFieldLocked(response.getForm(), field, currentUser, lock.getExpiresAt());
-        
-        return true;
+        return Optional.of(acquisition.getLock());
     }
 
     /**
@@ -187,7 +238,7 @@ public class FormResponseService {
     @Transactional
     public void releaseFieldLock(Long formId, Long fieldId) {
         User currentUser = userService.getCurrentUser();
-        FormResponse response = getResponseAndVerifyAccess(formId, currentUser);
+        AccessDecision access = getResponseAndVerifyAccess(formId, currentUser);
         
         // Get the field
         FormField field = fieldRepository.findById(fieldId)
@@ -199,12 +250,13 @@ public class FormResponseService {
         }
         
         // Find and release the lock
-        Optional<EditLock> lock = lockRepository.findByFieldIdAndResponseId(fieldId, response.getId());
+        Optional<FieldLock> lock = lockStore.getActiveLock(access.getResponseId(), fieldId);
         lock.ifPresent(l -> {
             // Only the lock owner or an admin can release it
-            if (l.getUser().getId().equals(currentUser.getId()) || currentUser.isAdmin()) {
-                lockRepository.delete(l);
-                collaborationService.notifyFieldLockReleased(response.getForm(), field, l.getUser());
+            if (l.isOwnedBy(currentUser.getId()) || currentUser.isAdmin()) {
+                if (lockStore.release(l)) {
+                    collaborationService.notifyFieldLockReleased(l);
+                }
             } else {
                 throw new IllegalStateException("Cannot release a lock owned by another user");
             }
@@ -220,13 +272,13 @@ public class FormResponseService {
     @Transactional
     public void releaseAllUserLocks(Long formId) {
         User currentUser = userService.getCurrentUser();
-        FormResponse response = getResponseAndVerifyAccess(formId, currentUser);
+        AccessDecision access = getResponseAndVerifyAccess(formId, currentUser);
         
         // Release all locks held by the current user
-        lockRepository.deleteByUserIdAndResponseId(currentUser.getId(), response.getId());
-        
-        // Notify collaborators
-        collaborationService.notifyUserLeft(response.getForm(), currentUser);
+        lockStore.releaseAll(access.getResponseId(), currentUser.getId())
+                .forEach(collaborationService::notifyFieldLockReleased);
+
+        // Collaborators see the user leave once their subscription to the form ends
     }
 
     /**
@@ -239,19 +291,22 @@ public class FormResponseService {
     @Transactional
     public boolean submitFormResponse(Long formId) {
         User currentUser = userService.getCurrentUser();
-        FormResponse response = getResponseAndVerifyAccess(formId, currentUser);
+        AccessDecision access = getResponseAndVerifyAccess(formId, currentUser);
+        
+        // Make sure every acknowledged update is stored before the response is final
+        valueStore.flush(access.getResponseId());
         
-        // If already submitted, return false
-        if (response.getStatus() == ResponseStatus.SUBMITTED) {
+        // Change status to SUBMITTED; false if it already was
+        if (responseRepository.updateStatus(access.getResponseId(), ResponseStatus.SUBMITTED, LocalDateTime.now()) == 0) {
             return false;
         }
         
-        // Change status to SUBMITTED
-        response.setStatus(ResponseStatus.SUBMITTED);
-        responseRepository.save(response);
+        // The status is part of the form's detail
+        formRepository.incrementSchemaVersion(formId);
+        eventPublisher.publishEvent(new FormSchemaChangedEvent(formId));
         
         // Notify collaborators of the submission
-        collaborationService.notifyFormSubmitted(response.getForm(), currentUser);
+        collaborationService.notifyFormSubmitted(formRepository.getReferenceById(formId), currentUser);
         
         return true;
     }
@@ -266,79 +321,63 @@ public class FormResponseService {
     @Transactional
     public boolean archiveFormResponse(Long formId) {
         User currentUser = userService.getCurrentUser();
-        Form form = formRepository.findById(formId)
+        AccessDecision access = accessDecisionCache.get(formId, currentUser.getId())
                 .orElseThrow(() -> new IllegalArgumentException("Form not found with ID: " + formId));
         
         // Verify ownership (only form owner can archive)
-        if (!form.getAdmin().getId().equals(currentUser.getId())) {
+        if (!access.getAdminId().equals(currentUser.getId())) {
             throw new IllegalArgumentException("Only the form owner can archive responses");
         }
         
-        FormResponse response = responseRepository.findByFormId(formId)
-                .orElseThrow(() -> new IllegalArgumentException("Response not found for form ID: " + formId));
+        if (access.getResponseId() == null) {
+            throw new IllegalArgumentException("Response not found for form ID: " + formId);
+        }
         
-        // If already archived, return false
-        if (response.getStatus() == ResponseStatus.ARCHIVED) {
+        // Change status to ARCHIVED; false if it already was
+        if (responseRepository.updateStatus(access.getResponseId(), ResponseStatus.ARCHIVED, LocalDateTime.now()) == 0) {
             return false;
         }
         
-        // Change status to ARCHIVED
-        response.setStatus(ResponseStatus.ARCHIVED);
-        responseRepository.save(response);
+        // The status is part of the form's detail
+        formRepository.incrementSchemaVersion(formId);
+        eventPublisher.publishEvent(new FormSchemaChangedEvent(formId));
         
         // Notify collaborators of the archiving
-        collaborationService.notifyFormArchived(form, currentUser);
+        collaborationService.notifyFormArchived(formRepository.getReferenceById(formId), currentUser);
         
         return true;
     }
 
     /**
-     * Clean up expired locks.
-     * This method should be called periodically by a scheduled task.
+     * Check whether concurrent patches to a field are merged, so it can be edited without a lock.
      *
-     * @return The number of locks removed
+     * @param field The field
+     * @return true for text fields of a merged type
      */
-    @Transactional
-    public int cleanupExpiredLocks() {
-        List<EditLock> expiredLocks = lockRepository.findByExpiresAtBefore(LocalDateTime.now());
-        int count = expiredLocks.size();
-        
-        if (!expiredLocks.isEmpty()) {
-            // Notify collaborators of each released lock
-            for (EditLock lock : expiredLocks) {
-                collaborationService.notifyFieldLockReleased(
-                        lock.getResponse().getForm(),
-                        lock.getField(),
-                        lock.getUser()
-                );
-            }
-            
-            // Delete the expired locks
-            lockRepository.deleteAll(expiredLocks);
-        }
-        
-        return count;
+    private boolean isMerged(FormField field) {
+        return field.getFieldType().isText() && mergeTypes.contains(field.getFieldType());
     }
 
     /**
-     * Get a form response and verify that the user has access to it.
+     * Resolve a form's response and verify that the user has access to it.
      *
      * @param formId Form ID
      * @param user User requesting access
-     * @return The form response
+     * @return The form's owner and response
      * @throws IllegalArgumentException if the form or response does not exist or the user does not have access
      */
-    private FormResponse getResponseAndVerifyAccess(Long formId, User user) {
-        Form form = formRepository.findById(formId)
+    private AccessDecision getResponseAndVerifyAccess(Long formId, User user) {
+        AccessDecision access = accessDecisionCache.get(formId, user.getId())
                 .orElseThrow(() -> new IllegalArgumentException("Form not found with ID: " + formId));
         
         // Verify access
-        if (!form.getAdmin().getId().equals(user.getId()) && 
-                !formAccessRepository.existsByFormIdAndUserId(formId, user.getId())) {
+        if (!access.isAccessible()) {
             throw new IllegalArgumentException("You do not have access to this form");
         }
         
-        return responseRepository.findByFormId(formId)
-                .orElseThrow(() -> new IllegalArgumentException("Response not found for form ID: " + formId));
+        if (access.getResponseId() == null) {
+            throw new IllegalArgumentException("Response not found for form ID: " + formId);
+        }
+        return access;
     }
 }
\ No newline at end of file
@@ -9,14 +9,28 @@ import com.collabform.model.User;
 import com.collabform.repository.FormAccessRepository;
 import com.collabform.repository.FormFieldRepository;
 import com.collabform.repository.FormRepository;
-import com.collabform.repository.FormResponseRepository;
+import com.collabform.service.access.AccessDecision;
+import com.collabform.service.access.AccessDecisionCache;
+import com.collabform.service.access.FormAccessChangedEvent;
+import com.collabform.service.schema.FormSchema;
+import com.collabform.service.schema.FormSchemaCache;
+import com.collabform.service.schema.FormSchemaChangedEvent;
+import com.collabform.service.search.FormChangedEvent;
+import com.collabform.service.search.FormSearchIndex;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -24,10 +38,21 @@ public class FormService {
 
     private final FormRepository formRepository;
     private final FormFieldRepository formFieldRepository;
-    private final FormResponseRepository formResponseRepository;
     private final FormAccessRepository formAccessRepository;
     private final UserService userService;
     private final CollaborationService collaborationService;
+    private final AccessDecisionCache accessDecisionCache;
+    private final FormSearchIndex formSearchIndex;
+    private final FormSchemaCache formSchemaCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityManager entityManager;
+
+    @Value("${collabform.forms.page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${collabform.forms.max-page-size:500}")
+    private int maxPageSize;
 
     @Transactional
     public FormResponse createForm(FormCreateRequest request) {
@@ -42,48 +67,61 @@ public class FormService {
                 .accessEntries(new ArrayList<>())
                 .build();
 
-        Form savedForm = formRepository.save(form);
-
         if (request.getFields() != null && !request.getFields().isEmpty()) {
             for (int i = 0; i < request.getFields().size(); i++) {
-                FormFieldRequest fieldRequest = request.getFields().get(i);
-                FormField field = FormField.builder()
-                        .form(savedForm)
-                        .fieldName(fieldRequest.getFieldName())
-                        .fieldType(fieldRequest.getFieldType())
-                        .fieldOptions(fieldRequest.getFieldOptions())
-                        .required(fieldRequest.isRequired())
-                        .displayOrder(fieldRequest.getDisplayOrder() != null ? fieldRequest.getDisplayOrder() : i)
-                        .build();
-
-                formFieldRepository.save(field);
+                form.addField(buildField(request.getFields().get(i), i));
             }
         }
 
         // ✅ Fully qualified to avoid ambiguity
         com.collabform.model.FormResponse response = com.collabform.model.FormResponse.builder()
-                .form(savedForm)
+                .form(form)
                 .status(ResponseStatus.DRAFT)
                 .build();
+        form.setResponse(response);
 
-        formResponseRepository.save(response);
+        // Fields and response cascade from the form; flushing sends their inserts as JDBC batches
+        // and fills in the generated timestamps for the response body
+        Form savedForm = formRepository.saveAndFlush(form);
+        eventPublisher.publishEvent(new FormChangedEvent(savedForm.getId()));
 
-        Form reloadedForm = formRepository.findById(savedForm.getId()).orElseThrow();
-
-        return FormResponse.fromEntity(reloadedForm, true, true, true);
+        return FormResponse.fromEntity(savedForm, true, true, true);
     }
 
     @Transactional(readOnly = true)
     public FormResponse getFormById(Long formId, boolean includeFields, boolean includeResponse, boolean includeCollaborators) {
         User currentUser = userService.getCurrentUser();
-        Form form = getFormAndVerifyAccess(formId, currentUser);
+        Form form = getFormAndVerifyAccess(formId, currentUser, includeFields, includeCollaborators);
 
         return FormResponse.fromEntity(form, includeFields, includeResponse, includeCollaborators);
     }
 
+    /**
+     * Get the detail of a form, with its fields, response status and collaborators, serialized at
+     * its current schema version. Unless the form has changed since it was last served, it is
+     * taken from the cache and the database is not read.
+     *
+     * @param formId The ID of the form
+     * @return The serialized form and its version
+     * @throws IllegalArgumentException if the form does not exist or the current user has no access to it
+     */
+    public FormSchema getFormSchema(Long formId) {
+        User currentUser = userService.getCurrentUser();
+        FormSchema schema = formSchemaCache.get(formId,
+                () -> transactionTemplate.execute(status -> getFormById(formId, true, true, true)));
+
+        // A cached form exists, so only the access of this user is left to check
+        if (!hasAccessToForm(formId, currentUser)) {
+            throw new IllegalArgumentException("You do not have access to this form");
+        }
+        return schema;
+    }
+
     @Transactional
     public FormResponse updateForm(Long formId, FormUpdateRequest request) {
         User currentUser = userService.getCurrentUser();
+        // Before the form is read, so it carries the new version
+        formRepository.incrementSchemaVersion(formId);
         Form form = getFormAndVerifyOwnership(formId, currentUser);
 
         if (request.getTitle() != null) {
@@ -103,20 +141,13 @@ public class FormService {
                 formFieldRepository.deleteByFormId(formId);
                 form.getFields().clear();
 
+                List<FormField> newFields = new ArrayList<>(request.getFields().size());
                 for (int i = 0; i < request.getFields().size(); i++) {
-                    FormFieldRequest fieldRequest = request.getFields().get(i);
-                    FormField field = FormField.builder()
-                            .form(form)
-                            .fieldName(fieldRequest.getFieldName())
-                            .fieldType(fieldRequest.getFieldType())
-                            .fieldOptions(fieldRequest.getFieldOptions())
-                            .required(fieldRequest.isRequired())
-                            .displayOrder(fieldRequest.getDisplayOrder() != null ? fieldRequest.getDisplayOrder() : i)
-                            .build();
-
-                    formFieldRepository.save(field);
+                    FormField field = buildField(request.getFields().get(i), i);
                     form.addField(field);
+                    newFields.add(field);
                 }
+                formFieldRepository.saveAll(newFields);
             } else {
                 Map<Long, FormField> existingFieldsMap = form.getFields().stream()
                         .collect(Collectors.toMap(FormField::getId, field -> field));
@@ -133,15 +164,7 @@ public class FormService {
                         existingField.setDisplayOrder(fieldRequest.getDisplayOrder() != null ? fieldRequest.getDisplayOrder() : i);
                         formFieldRepository.save(existingField);
                     } else {
-                        FormField field = FormField.builder()
-                                .form(form)
-                                .fieldName(fieldRequest.getFieldName())
-                                .fieldType(fieldRequest.getFieldType())
-                                .fieldOptions(fieldRequest.getFieldOptions())
-                                .required(fieldRequest.isRequired())
-                                .displayOrder(fieldRequest.getDisplayOrder() != null ? fieldRequest.getDisplayOrder() : i)
-                                .build();
-
+                        FormField field = buildField(fieldRequest, i);
                         formFieldRepository.save(field);
                         form.addField(field);
                     }
@@ -150,6 +173,8 @@ public class FormService {
         }
 
         form = formRepository.save(form);
+        eventPublisher.publishEvent(new FormChangedEvent(formId));
+        eventPublisher.publishEvent(new FormSchemaChangedEvent(formId));
         collaborationService.notifyFormUpdate(form);
 
         return FormResponse.fromEntity(form, true, true, true);
@@ -162,6 +187,8 @@ public class FormService {
 
         collaborationService.notifyFormDeletion(form);
         formRepository.delete(form);
+        eventPublisher.publishEvent(FormAccessChangedEvent.forForm(formId));
+        eventPublisher.publishEvent(new FormSchemaChangedEvent(formId));
     }
 
     @Transactional(readOnly = true)
@@ -176,20 +203,118 @@ public class FormService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Get a page of the forms created by the current user, most recently updated first.
+     *
+     * @param activeOnly Whether to include only active forms
+     * @param cursor The cursor returned with the previous page, or null for the first page
+     * @param limit The number of forms per page, or null for the default
+     * @return The page and the cursor of the next one
+     * @throws IllegalArgumentException if the cursor is malformed or the limit is not positive
+     */
+    @Transactional(readOnly = true)
+    public FormPage getMyForms(boolean activeOnly, String cursor, Integer limit) {
+        User currentUser = userService.getCurrentUser();
+        FormCursor after = FormCursor.decode(cursor);
+        int size = pageSize(limit);
+        return toPage(formRepository.findPageByAdmin(currentUser.getId(), activeOnly,
+                after.getUpdatedAt(), after.getId(), PageRequest.ofSize(size + 1)), size);
+    }
+
+    /**
+     * Write every form created by the current user to a consumer as it is read from the database,
+     * most recently updated first.
+     *
+     * @param activeOnly Whether to include only active forms
+     * @param consumer Receives the forms
+     */
+    @Transactional(readOnly = true)
+    public void streamMyForms(boolean activeOnly, Consumer<FormResponse> consumer) {
+        User currentUser = userService.getCurrentUser();
+        try (Stream<Form> forms = formRepository.streamByAdmin(currentUser.getId(), activeOnly)) {
+            forms.forEach(form -> emit(form, consumer));
+        }
+    }
+
     @Transactional(readOnly = true)
     public List<FormResponse> getSharedForms() {
         User currentUser = userService.getCurrentUser();
-        List<Form> forms = formRepository.findFormsAccessibleToUser(currentUser.getId());
+        List<Form> forms = formRepository.findActiveFormsAccessibleToUser(currentUser.getId());
 
         return forms.stream()
-                .filter(Form::isActive)
                 .map(form -> FormResponse.fromEntity(form, false, false, false))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Get a page of the active forms shared with the current user, most recently updated first.
+     *
+     * @param cursor The cursor returned with the previous page, or null for the first page
+     * @param limit The number of forms per page, or null for the default
+     * @return The page and the cursor of the next one
+     * @throws IllegalArgumentException if the cursor is malformed or the limit is not positive
+     */
+    @Transactional(readOnly = true)
+    public FormPage getSharedForms(String cursor, Integer limit) {
+        User currentUser = userService.getCurrentUser();
+        FormCursor after = FormCursor.decode(cursor);
+        int size = pageSize(limit);
+        return toPage(formRepository.findActivePageAccessibleToUser(currentUser.getId(),
+                after.getUpdatedAt(), after.getId(), PageRequest.ofSize(size + 1)), size);
+    }
+
+    /**
+     * Write every active form shared with the current user to a consumer as it is read from the
+     * database, most recently updated first.
+     *
+     * @param consumer Receives the forms
+     */
+    @Transactional(readOnly = true)
+    public void streamSharedForms(Consumer<FormResponse> consumer) {
+        User currentUser = userService.getCurrentUser();
+        try (Stream<Form> forms = formRepository.streamActiveAccessibleToUser(currentUser.getId())) {
+            forms.forEach(form -> emit(form, consumer));
+        }
+    }
+
+    /**
+     * Search the forms the current user owns or that are shared with them, best match first.
+     *
+     * @param query Words that must each start a word of a form's title, description or field names
+     * @param cursor The cursor returned with the previous page, or null for the first page
+     * @param limit The number of forms per page, or null for the default
+     * @return The page and the cursor of the next one
+     * @throws IllegalArgumentException if the query is blank, the cursor is malformed or the limit is not positive
+     */
+    @Transactional(readOnly = true)
+    public FormPage searchForms(String query, String cursor, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query must not be empty");
+        }
+        User currentUser = userService.getCurrentUser();
+        int offset = searchOffset(cursor);
+        int size = pageSize(limit);
+        List<Long> formIds = formSearchIndex.search(query, currentUser, offset, size + 1);
+
+        List<Long> pageIds = formIds.subList(0, Math.min(size, formIds.size()));
+        Map<Long, Form> forms = formRepository.findSummariesByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(Form::getId, form -> form));
+        List<FormResponse> page = pageIds.stream()
+                .map(forms::get)
+                .filter(Objects::nonNull) // Deleted since it was found
+                .map(form -> FormResponse.fromEntity(form, false, false, false))
+                .collect(Collectors.toList());
+        return FormPage.builder()
+                .forms(page)
+                .nextCursor(formIds.size() > size ? String.valueOf(offset + size) : null)
+                .build();
+    }
+
     @Transactional
     public FormShareResponse shareForm(Long formId, FormShareRequest request) {
         User currentUser = userService.getCurrentUser();
+        // The collaborators are part of the form's detail
+        formRepository.incrementSchemaVersion(formId);
         Form form = getFormAndVerifyOwnership(formId, currentUser);
 
         User targetUser = userService.findByUsernameOrEmail(request.getUsernameOrEmail())
@@ -209,6 +334,8 @@ public class FormService {
                 .build();
 
         formAccessRepository.save(formAccess);
+        eventPublisher.publishEvent(FormAccessChangedEvent.forUser(formId, targetUser.getId()));
+        eventPublisher.publishEvent(new FormSchemaChangedEvent(formId));
         collaborationService.notifyUserAdded(form, targetUser);
 
         return FormShareResponse.builder()
@@ -227,16 +354,17 @@ public class FormService {
             return true;
         }
 
-        Optional<Form> formOpt = formRepository.findById(formId);
-        if (formOpt.isPresent() && formOpt.get().getAdmin().getId().equals(user.getId())) {
-            return true;
-        }
-
-        return formAccessRepository.existsByFormIdAndUserId(formId, user.getId());
+        return accessDecisionCache.get(formId, user.getId())
+                .map(AccessDecision::isAccessible)
+                .orElse(false);
     }
 
-    private Form getFormAndVerifyAccess(Long formId, User user) {
-        Form form = formRepository.findById(formId)
+    private Form getFormAndVerifyAccess(Long formId, User user, boolean includeFields, boolean includeCollaborators) {
+        // Bags cannot be fetched together, so with collaborators the fields are loaded in a second query
+        Optional<Form> found = includeCollaborators ? formRepository.findWithCollaboratorsById(formId) :
+                includeFields ? formRepository.findDetailById(formId) :
+                formRepository.findSummaryById(formId);
+        Form form = found
                 .orElseThrow(() -> new IllegalArgumentException("Form not found with ID: " + formId));
 
         if (!hasAccessToForm(formId, user)) {
@@ -256,4 +384,59 @@ public class FormService {
 
         return form;
     }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    // Search results are ranked rather than ordered by a column, so their cursor is the rank to continue at
+    private int searchOffset(String cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            int offset = Integer.parseInt(cursor);
+            if (offset >= 0) {
+                return offset;
+            }
+        } catch (NumberFormatException ex) {
+            // Fall through
+        }
+        throw new IllegalArgumentException("Invalid cursor");
+    }
+
+    // One form more than the page size is read to find out whether another page follows
+    private FormPage toPage(List<Form> forms, int size) {
+        List<FormResponse> page = forms.stream()
+                .limit(size)
+                .map(form -> FormResponse.fromEntity(form, false, false, false))
+                .collect(Collectors.toList());
+        String nextCursor = forms.size() > size ? FormCursor.after(forms.get(size - 1)).encode() : null;
+        return FormPage.builder()
+                .forms(page)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private void emit(Form form, Consumer<FormResponse> consumer) {
+        consumer.accept(FormResponse.fromEntity(form, false, false, false));
+        // Forms already written are not needed again; keep the persistence context from growing
+        entityManager.detach(form);
+    }
+
+    private FormField buildField(FormFieldRequest fieldRequest, int index) {
+        return FormField.builder()
+                .fieldName(fieldRequest.getFieldName())
+                .fieldType(fieldRequest.getFieldType())
+                .fieldOptions(fieldRequest.getFieldOptions())
+                .required(fieldRequest.isRequired())
+                .displayOrder(fieldRequest.getDisplayOrder() != null ? fieldRequest.getDisplayOrder() : index)
+                .build();
+    }
 }
@@ -8,6 +8,8 @@ import com.collabform.model.User;
 import com.collabform.model.UserRole;
 import com.collabform.repository.UserRepository;
 import com.collabform.security.JwtTokenProvider;
+import com.collabform.security.PasswordHashingExecutor;
+import com.collabform.security.PrincipalCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -18,6 +20,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Service for user-related operations including authentication.
@@ -30,15 +34,18 @@ public class UserService {
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider tokenProvider;
     private final AuthenticationManager authenticationManager;
+    private final PrincipalCache principalCache;
+    private final PasswordHashingExecutor passwordHashingExecutor;
 
     /**
-     * Register a new user.
+     * Register a new user. The password is hashed on the password hashing executor.
      *
      * @param request Registration details
-     * @return Authentication response with JWT token
+     * @return Completes with the authentication response with JWT token
+     * @throws IllegalArgumentException if the username or email is taken
+     * @throws RejectedExecutionException if the password hashing queue is full
      */
-    @Transactional
-    public AuthResponse registerUser(RegisterRequest request) {
+    public CompletableFuture<AuthResponse> registerUser(RegisterRequest request) {
         if (userRepository.existsByUsername(request.getUsername())) {
             throw new IllegalArgumentException("Username is already taken");
         }
@@ -51,50 +58,67 @@ public class UserService {
         if (request.getRole() != null && request.getRole().equalsIgnoreCase("ADMIN")) {
             role = UserRole.ADMIN;
         }
+        UserRole userRole = role;
 
-        User user = User.builder()
-                .username(request.getUsername())
-                .email(request.getEmail())
-                .passwordHash(passwordEncoder.encode(request.getPassword()))
-                .role(role)
-                .accountNonExpired(true)
-                .accountNonLocked(true)
-                .credentialsNonExpired(true)
-                .enabled(true)
-                .build();
-
-        User savedUser = userRepository.save(user);
-
-        String jwt = tokenProvider.generateTokenFromUser(savedUser);
-
-        return AuthResponse.builder()
-                .token(jwt)
-                .user(UserDto.fromUser(savedUser))
-                .expiresIn(tokenProvider.getJwtExpirationMs())
-                .build();
+        return passwordHashingExecutor.submit(() -> passwordEncoder.encode(request.getPassword()))
+                .thenApply(passwordHash -> {
+                    User user = User.builder()
+                            .username(request.getUsername())
+                            .email(request.getEmail())
+                            .passwordHash(passwordHash)
+                            .role(userRole)
+                            .accountNonExpired(true)
+                            .accountNonLocked(true)
+                            .credentialsNonExpired(true)
+                            .enabled(true)
+                            .build();
+
+                    User savedUser = userRepository.save(user);
+
+                    String jwt = tokenProvider.generateTokenFromUser(savedUser);
+
+                    return AuthResponse.builder()
+                            .token(jwt)
+                            .user(UserDto.fromUser(savedUser))
+                            .expiresIn(tokenProvider.getJwtExpirationMs())
+                            .build();
+                });
     }
 
     /**
-     * Authenticate a user and generate a JWT token.
+     * Authenticate a user and generate a JWT token. The password is checked on the password
+     * hashing executor.
      *
      * @param request Login credentials
-     * @return Authentication response with JWT token
+     * @return Completes with the authentication response with JWT token
+     * @throws RejectedExecutionException if the password hashing queue is full
      */
-    public AuthResponse authenticateUser(LoginRequest request) {
-        Authentication authentication = authenticationManager.authenticate(
+    public CompletableFuture<AuthResponse> authenticateUser(LoginRequest request) {
+        return passwordHashingExecutor.submit(() -> authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword())
-        );
-        
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = tokenProvider.generateToken(authentication);
-        
-        User user = (User) authentication.getPrincipal();
-        
-        return AuthResponse.builder()
-                .token(jwt)
-                .user(UserDto.fromUser(user))
-                .expiresIn(tokenProvider.getJwtExpirationMs())
-                .build();
+        )).thenApply(authentication -> {
+            String jwt = tokenProvider.generateToken(authentication);
+
+            User user = (User) authentication.getPrincipal();
+
+            return AuthResponse.builder()
+                    .token(jwt)
+                    .user(UserDto.fromUser(user))
+                    .expiresIn(tokenProvider.getJwtExpirationMs())
+                    .build();
+        });
+    }
+
+    /**
+     * Log out by revoking a token, so it no longer authenticates any request.
+     *
+     * @param token The JWT token to revoke
+     * @throws IllegalArgumentException if the token is invalid or expired
+     */
+    public void logout(String token) {
+        if (!principalCache.revoke(token)) {
+            throw new IllegalArgumentException("Invalid token");
+        }
     }
 
     /**
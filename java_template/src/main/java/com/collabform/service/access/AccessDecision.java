@@ -0,0 +1,27 @@
+package com.collabform.service.access;
+
+import com.collabform.repository.ResponseAccess;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Whether a user may work on a form, with the parts of the form that do not change over its
+ * lifetime: its owner and its response.
+ */
+@Getter
+@AllArgsConstructor
+public class AccessDecision {
+
+    private final Long formId;
+
+    private final Long adminId;
+
+    // Null if the form has no response
+    private final Long responseId;
+
+    private final boolean accessible;
+
+    public static AccessDecision from(ResponseAccess access) {
+        return new AccessDecision(access.getFormId(), access.getAdminId(), access.getResponseId(), access.isAccessible());
+    }
+}
@@ -0,0 +1,164 @@
+package com.collabform.service.access;
+
+import com.collabform.repository.FormRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches access decisions per (user, form), since ownership and shares change far less often
+ * than they are checked. Decisions expire after a TTL and the cache is bounded in size; when it
+ * is full, expired decisions are dropped first and then arbitrary ones.
+ * <p>
+ * Changes to access are announced with a {@link FormAccessChangedEvent}, which drops the affected
+ * decisions once the change has been committed. A decision read from the database while an
+ * invalidation runs is not kept, as it may predate the change.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AccessDecisionCache {
+
+    private final FormRepository formRepository;
+
+    @Value("${collabform.access-cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${collabform.access-cache.ttl-ms:300000}")
+    private long ttlMs;
+
+    // [userId, formId] -> decision
+    private final Map<List<Long>, CachedDecision> decisions = new ConcurrentHashMap<>();
+
+    // Incremented by every invalidation
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Get the access decision of a user for a form, reading it from the database on a miss.
+     *
+     * @param formId The ID of the form
+     * @param userId The ID of the user
+     * @return The decision, or empty if the form does not exist
+     */
+    public Optional<AccessDecision> get(Long formId, Long userId) {
+        List<Long> key = List.of(userId, formId);
+        long now = System.currentTimeMillis();
+        CachedDecision cached = decisions.get(key);
+        if (cached != null && cached.expiresAt > now) {
+            hits.increment();
+            return Optional.of(cached.decision);
+        }
+        misses.increment();
+
+        long observedGeneration = generation.get();
+        Optional<AccessDecision> decision = formRepository.findResponseAccess(formId, userId)
+                .map(AccessDecision::from);
+        decision.ifPresent(d -> put(key, new CachedDecision(d, now + ttlMs), observedGeneration));
+        return decision;
+    }
+
+    /**
+     * Drop the decisions affected by an access change, after the change has been committed.
+     *
+     * @param event The change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAccessChanged(FormAccessChangedEvent event) {
+        generation.incrementAndGet();
+        invalidations.increment();
+        if (event.getUserId() != null) {
+            decisions.remove(List.of(event.getUserId(), event.getFormId()));
+        } else {
+            decisions.keySet().removeIf(key -> key.get(1).equals(event.getFormId()));
+        }
+        log.debug("Invalidated access decisions: formId={}, userId={}", event.getFormId(), event.getUserId());
+    }
+
+    /**
+     * Drop expired decisions.
+     */
+    @Scheduled(fixedDelayString = "${collabform.access-cache.sweep-ms:60000}")
+    public void sweepExpired() {
+        int removed = removeExpired(System.currentTimeMillis());
+        if (removed > 0) {
+            log.debug("Dropped {} expired access decisions", removed);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    public int size() {
+        return decisions.size();
+    }
+
+    private void put(List<Long> key, CachedDecision cached, long observedGeneration) {
+        if (decisions.size() >= maxSize) {
+            makeRoom();
+        }
+        decisions.put(key, cached);
+        // An invalidation that started after the decision was read may have missed the new entry
+        if (generation.get() != observedGeneration) {
+            decisions.remove(key, cached);
+        }
+    }
+
+    private void makeRoom() {
+        evictions.add(removeExpired(System.currentTimeMillis()));
+        for (Iterator<CachedDecision> it = decisions.values().iterator(); it.hasNext() && decisions.size() >= maxSize; ) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private int removeExpired(long now) {
+        int removed = 0;
+        for (Iterator<CachedDecision> it = decisions.values().iterator(); it.hasNext(); ) {
+            if (it.next().expiresAt <= now) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private static class CachedDecision {
+        private final AccessDecision decision;
+        private final long expiresAt;
+
+        CachedDecision(AccessDecision decision, long expiresAt) {
+            this.decision = decision;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.collabform.service.access;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when who may access a form changes: it was shared with or revoked from a user,
+ * or the form was deleted.
+ */
+@Getter
+@AllArgsConstructor
+public class FormAccessChangedEvent {
+
+    private final Long formId;
+
+    // The user whose access changed, or null if it changed for everyone
+    private final Long userId;
+
+    public static FormAccessChangedEvent forUser(Long formId, Long userId) {
+        return new FormAccessChangedEvent(formId, userId);
+    }
+
+    public static FormAccessChangedEvent forForm(Long formId) {
+        return new FormAccessChangedEvent(formId, null);
+    }
+}
@@ -0,0 +1,130 @@
+package com.collabform.service.lock;
+
+import com.collabform.service.CollaborationService;
+import com.collabform.utils.HierarchicalTimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * Base class for lock stores that drives expiry notifications from a local timing wheel.
+ * Every lock acquired through this node gets a timer at its deadline; when the timer fires
+ * the store checks whether the lock is really due (it may have been refreshed, possibly by
+ * another node) and broadcasts LOCK_RELEASED only if this call is the one that removed it.
+ */
+@Slf4j
+public abstract class AbstractFieldLockStore implements FieldLockStore {
+
+    protected final CollaborationService collaborationService;
+
+    @Value("${collabform.locks.ttl-ms:30000}")
+    protected long lockTtlMs;
+
+    @Value("${collabform.locks.wheel.tick-ms:10}")
+    private long wheelTickMs;
+
+    @Value("${collabform.locks.wheel.size:64}")
+    private int wheelSize;
+
+    @Value("${collabform.locks.wheel.levels:4}")
+    private int wheelLevels;
+
+    private HierarchicalTimingWheel timingWheel;
+
+    protected AbstractFieldLockStore(CollaborationService collaborationService) {
+        this.collaborationService = collaborationService;
+    }
+
+    @PostConstruct
+    public void startExpiryTimer() {
+        this.timingWheel = new HierarchicalTimingWheel("field-lock-expiry", wheelTickMs, wheelSize, wheelLevels);
+    }
+
+    @PreDestroy
+    public void stopExpiryTimer() {
+        timingWheel.close();
+    }
+
+    /**
+     * Check a lock whose deadline has passed according to this node.
+     *
+     * @param lock The lock as known when its timer was armed
+     * @return What the store found
+     */
+    protected abstract ExpiryCheck checkExpiry(FieldLock lock);
+
+    /**
+     * Arm the expiry timer for a lock at its current deadline.
+     *
+     * @param lock The lock to watch
+     */
+    protected void scheduleExpiry(FieldLock lock) {
+        scheduleExpiry(lock, lock.getExpiresAt());
+    }
+
+    private void scheduleExpiry(FieldLock lock, long expiresAt) {
+        long delay = Math.max(0, expiresAt - System.currentTimeMillis());
+        timingWheel.schedule(() -> onDeadline(lock), delay);
+    }
+
+    private void onDeadline(FieldLock lock) {
+        ExpiryCheck check;
+        try {
+            check = checkExpiry(lock);
+        } catch (Exception ex) {
+            // Try again one lock lifetime later rather than losing the notification
+            log.warn("Could not check field lock expiry: responseId={}, fieldId={}",
+                    lock.getResponseId(), lock.getFieldId(), ex);
+            scheduleExpiry(lock, System.currentTimeMillis() + lockTtlMs);
+            return;
+        }
+
+        if (check.isReleased()) {
+            collaborationService.notifyFieldLockReleased(lock);
+            log.debug("Field lock expired: formId={}, fieldId={}, userId={}",
+                    lock.getFormId(), lock.getFieldId(), lock.getOwner().getId());
+        } else if (check.getExtendedTo() > 0) {
+            scheduleExpiry(lock, check.getExtendedTo());
+        }
+    }
+
+    /**
+     * Result of an expiry check.
+     */
+    protected static final class ExpiryCheck {
+        private static final ExpiryCheck RELEASED = new ExpiryCheck(true, 0);
+        private static final ExpiryCheck GONE = new ExpiryCheck(false, 0);
+
+        private final boolean released;
+        private final long extendedTo;
+
+        private ExpiryCheck(boolean released, long extendedTo) {
+            this.released = released;
+            this.extendedTo = extendedTo;
+        }
+
+        /** The lock was due and this check removed it. */
+        static ExpiryCheck released() {
+            return RELEASED;
+        }
+
+        /** The lock was already released or replaced; nothing to do. */
+        static ExpiryCheck gone() {
+            return GONE;
+        }
+
+        /** The lock is still held and now expires at the given epoch millisecond. */
+        static ExpiryCheck extendedTo(long expiresAt) {
+            return new ExpiryCheck(false, expiresAt);
+        }
+
+        boolean isReleased() {
+            return released;
+        }
+
+        long getExtendedTo() {
+            return extendedTo;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.collabform.service.lock;
+
+import com.collabform.model.EditLock;
+import com.collabform.repository.EditLockRepository;
+import com.collabform.repository.FieldValueRepository;
+import com.collabform.repository.FormFieldRepository;
+import com.collabform.repository.FormResponseRepository;
+import com.collabform.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous writer that mirrors in-memory lock changes into the edit_locks table.
+ * The table is only used for auditing and for recovering active locks after a restart,
+ * so lock operations never wait for it: entries are queued and applied in batches
+ * on a background thread, and dropped with a warning if the queue is full.
+ */
+@Component
+@ConditionalOnProperty(name = "collabform.locks.store", havingValue = "memory", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class EditLockJournal {
+
+    private final EditLockRepository lockRepository;
+    private final FormFieldRepository fieldRepository;
+    private final FormResponseRepository responseRepository;
+    private final UserRepository userRepository;
+    private final FieldValueRepository valueRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${collabform.locks.journal.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${collabform.locks.journal.batch-size:256}")
+    private int batchSize;
+
+    private BlockingQueue<Entry> queue;
+    private TransactionTemplate transactionTemplate;
+    private Thread worker;
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void init() {
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.worker = new Thread(this::run, "edit-lock-journal");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+        // Persist whatever was still queued so a clean restart recovers the latest state
+        List<Entry> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            apply(remaining);
+        }
+    }
+
+    /**
+     * Record that a lock was acquired (or replaced by a forced acquisition).
+     *
+     * @param lock The lock now in effect
+     */
+    public void recordAcquired(FieldLock lock) {
+        offer(new Entry(true, lock));
+    }
+
+    /**
+     * Record that a lock was released or expired.
+     *
+     * @param lock The lock that was removed
+     */
+    public void recordReleased(FieldLock lock) {
+        offer(new Entry(false, lock));
+    }
+
+    /**
+     * Load the locks that were still active when the application last stopped,
+     * removing the rows of locks that expired in the meantime.
+     *
+     * @return The recovered locks
+     */
+    public List<FieldLock> recoverActiveLocks() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            int removed = lockRepository.deleteExpired(now);
+            if (removed > 0) {
+                log.info("Removed {} expired lock rows during recovery", removed);
+            }
+
+            List<FieldLock> locks = new ArrayList<>();
+            for (EditLock lock : lockRepository.findByExpiresAtAfter(now)) {
+                locks.add(FieldLock.fromEntity(lock));
+            }
+            return locks;
+        });
+    }
+
+    /**
+     * Find the highest fencing token that was ever persisted, either with a lock or with a value
+     * written under one.
+     *
+     * @return The highest known token, or 0 if there is none
+     */
+    public long highestIssuedToken() {
+        return transactionTemplate.execute(status -> {
+            Long lockToken = lockRepository.findHighestFencingToken();
+            Long valueToken = valueRepository.findHighestFencingToken();
+            return Math.max(lockToken != null ? lockToken : 0L, valueToken != null ? valueToken : 0L);
+        });
+    }
+
+    private void offer(Entry entry) {
+        if (!queue.offer(entry)) {
+            log.warn("Edit lock journal is full, dropping entry: responseId={}, fieldId={}",
+                    entry.lock.getResponseId(), entry.lock.getFieldId());
+        }
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Entry first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                apply(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                log.error("Failed to write {} edit lock journal entries", batch.size(), ex);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void apply(List<Entry> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Entry entry : batch) {
+                FieldLock lock = entry.lock;
+                lockRepository.deleteByFieldIdAndResponseId(lock.getFieldId(), lock.getResponseId());
+                if (entry.acquired) {
+                    lockRepository.save(EditLock.builder()
+                            .field(fieldRepository.getReferenceById(lock.getFieldId()))
+                            .response(responseRepository.getReferenceById(lock.getResponseId()))
+                            .user(userRepository.getReferenceById(lock.getOwner().getId()))
+                            .lockTime(lock.getLockTimeDateTime())
+                            .expiresAt(lock.getExpiresAtDateTime())
+                            .fencingToken(lock.getFencingToken())
+                            .build());
+                }
+            }
+        });
+    }
+
+    /**
+     * A queued lock change.
+     */
+    private static class Entry {
+        private final boolean acquired;
+        private final FieldLock lock;
+
+        Entry(boolean acquired, FieldLock lock) {
+            this.acquired = acquired;
+            this.lock = lock;
+        }
+    }
+}
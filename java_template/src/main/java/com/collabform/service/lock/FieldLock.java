@@ -0,0 +1,117 @@
+package com.collabform.service.lock;
+
+import com.collabform.dto.UserDto;
+import com.collabform.model.EditLock;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * In-memory representation of an active lock on a form field.
+ * Everything needed to broadcast lock events is captured at acquisition time,
+ * so expiring or listing locks never has to touch the database.
+ */
+@Getter
+public class FieldLock {
+
+    // Strictly increasing per field; identifies this acquisition and fences writes made under older ones
+    private final long fencingToken;
+    private final Long formId;
+    private final Long responseId;
+    private final Long fieldId;
+    private final String fieldName;
+    private final UserDto owner;
+    private final long lockTime;
+
+    // Refreshing a lock only moves its deadline; the expiry timer re-checks it when it fires
+    private volatile long expiresAt;
+
+    public FieldLock(long fencingToken, Long formId, Long responseId, Long fieldId, String fieldName,
+                     UserDto owner, long lockTime, long expiresAt) {
+        this.fencingToken = fencingToken;
+        this.formId = formId;
+        this.responseId = responseId;
+        this.fieldId = fieldId;
+        this.fieldName = fieldName;
+        this.owner = owner;
+        this.lockTime = lockTime;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Convert an EditLock entity to a FieldLock.
+     *
+     * @param lock The edit lock entity
+     * @return A FieldLock
+     */
+    public static FieldLock fromEntity(EditLock lock) {
+        return new FieldLock(
+                lock.getFencingToken(),
+                lock.getResponse().getForm().getId(),
+                lock.getResponse().getId(),
+                lock.getField().getId(),
+                lock.getField().getFieldName(),
+                UserDto.fromUser(lock.getUser()),
+                toEpochMilli(lock.getLockTime()),
+                toEpochMilli(lock.getExpiresAt()));
+    }
+
+    /**
+     * Lowest fencing token a store may issue at this moment.
+     * Tokens are seeded from the wall clock at microsecond resolution, so they keep increasing
+     * across restarts and lost lock state as long as fewer than a thousand locks are taken per
+     * millisecond.
+     *
+     * @return The current time-based token floor
+     */
+    public static long tokenFloor() {
+        return System.currentTimeMillis() * 1000;
+    }
+
+    /**
+     * Checks if this lock is held by the given user.
+     * @param userId The user ID to check
+     * @return true if the user owns the lock, false otherwise
+     */
+    public boolean isOwnedBy(Long userId) {
+        return owner.getId().equals(userId);
+    }
+
+    /**
+     * Checks if this lock has expired.
+     * @return true if the lock has expired, false otherwise
+     */
+    public boolean isExpired() {
+        return System.currentTimeMillis() >= expiresAt;
+    }
+
+    /**
+     * Extends the lock expiry time.
+     * @param ttlMs Lock time-to-live in milliseconds, measured from now
+     */
+    void refresh(long ttlMs) {
+        this.expiresAt = System.currentTimeMillis() + ttlMs;
+    }
+
+    /**
+     * Get the expiry time as a local date-time, matching the EditLock entity columns.
+     * @return The expiry time
+     */
+    public LocalDateTime getExpiresAtDateTime() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(expiresAt), ZoneId.systemDefault());
+    }
+
+    /**
+     * Get the acquisition time as a local date-time, matching the EditLock entity columns.
+     * @return The acquisition time
+     */
+    public LocalDateTime getLockTimeDateTime() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(lockTime), ZoneId.systemDefault());
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,66 @@
+package com.collabform.service.lock;
+
+import com.collabform.dto.UserDto;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Storage backend for field locks.
+ * The backend is chosen with the {@code collabform.locks.store} property:
+ * {@code memory} (single node, default), {@code jpa} (shared database) or {@code redis} (shared Redis).
+ * Implementations broadcast LOCK_RELEASED themselves when a lock expires;
+ * all other lock notifications are sent by the caller.
+ */
+public interface FieldLockStore {
+
+    /**
+     * Try to acquire or refresh the lock on a field.
+     *
+     * @param formId The ID of the form
+     * @param responseId The ID of the form response
+     * @param fieldId The ID of the field
+     * @param fieldName The name of the field, kept for lock notifications
+     * @param user The user requesting the lock
+     * @param force Whether to replace a lock held by another user
+     * @return The outcome of the attempt
+     * @throws IllegalStateException if another node locked the field at the same moment and the
+     *                               attempt cannot be evaluated against its lock
+     */
+    LockAcquisition acquire(Long formId, Long responseId, Long fieldId, String fieldName, UserDto user, boolean force);
+
+    /**
+     * Get the active lock on a field, if any.
+     *
+     * @param responseId The ID of the form response
+     * @param fieldId The ID of the field
+     * @return The lock, or empty if the field is not locked
+     */
+    Optional<FieldLock> getActiveLock(Long responseId, Long fieldId);
+
+    /**
+     * Get all active locks on a form response.
+     *
+     * @param responseId The ID of the form response
+     * @return The active locks
+     */
+    List<FieldLock> getActiveLocks(Long responseId);
+
+    /**
+     * Release a specific lock, comparing on its lock ID so that a lock which has
+     * meanwhile been replaced by another acquisition is left untouched.
+     *
+     * @param lock The lock to release
+     * @return true if the lock was removed, false otherwise
+     */
+    boolean release(FieldLock lock);
+
+    /**
+     * Release every lock a user holds on a form response.
+     *
+     * @param responseId The ID of the form response
+     * @param userId The ID of the user
+     * @return The locks that were released
+     */
+    List<FieldLock> releaseAll(Long responseId, Long userId);
+}
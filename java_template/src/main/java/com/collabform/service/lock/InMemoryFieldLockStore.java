@@ -0,0 +1,196 @@
+package com.collabform.service.lock;
+
+import com.collabform.cluster.FormOwnershipChangedEvent;
+import com.collabform.dto.UserDto;
+import com.collabform.service.CollaborationService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock store that keeps active locks in memory, for a single node or for nodes that shard forms
+ * between them.
+ * Locks live in a concurrent map keyed by response ID and field ID, so acquiring, refreshing
+ * and releasing a lock never touches the database. Every change is mirrored to the
+ * edit_locks table asynchronously by the {@link EditLockJournal}.
+ */
+@Component
+@ConditionalOnProperty(name = "collabform.locks.store", havingValue = "memory", matchIfMissing = true)
+@Slf4j
+public class InMemoryFieldLockStore extends AbstractFieldLockStore {
+
+    private final EditLockJournal journal;
+
+    // responseId -> (fieldId -> lock)
+    private final Map<Long, Map<Long, FieldLock>> locksByResponse = new ConcurrentHashMap<>();
+
+    private final AtomicLong fencingTokens = new AtomicLong();
+
+    public InMemoryFieldLockStore(CollaborationService collaborationService, EditLockJournal journal) {
+        super(collaborationService);
+        this.journal = journal;
+    }
+
+    @PostConstruct
+    public void recoverLocks() {
+        // Tokens must keep increasing across restarts, even past rows the journal never wrote
+        fencingTokens.set(Math.max(journal.highestIssuedToken(), FieldLock.tokenFloor()));
+
+        List<FieldLock> recovered = journal.recoverActiveLocks();
+        for (FieldLock lock : recovered) {
+            locksFor(lock.getResponseId()).put(lock.getFieldId(), lock);
+            scheduleExpiry(lock);
+        }
+        if (!recovered.isEmpty()) {
+            log.info("Recovered {} active field locks", recovered.size());
+        }
+    }
+
+    /**
+     * Hand off the locks of forms another node serves now, and take over the locks of forms this
+     * node gained from the edit_locks table. Lock changes reach the table asynchronously, so a
+     * lock taken on the old owner just before the move may be missed; its holder takes it again.
+     */
+    @EventListener
+    public void onOwnershipChanged(FormOwnershipChangedEvent event) {
+        int handedOff = 0;
+        for (Map<Long, FieldLock> locks : locksByResponse.values()) {
+            for (FieldLock lock : locks.values()) {
+                if (event.isLost(lock.getFormId()) && locks.remove(lock.getFieldId(), lock)) {
+                    // Refreshes only move the deadline in memory, so record the current one
+                    journal.recordAcquired(lock);
+                    handedOff++;
+                }
+            }
+        }
+
+        fencingTokens.accumulateAndGet(journal.highestIssuedToken(), Math::max);
+        int takenOver = 0;
+        for (FieldLock lock : journal.recoverActiveLocks()) {
+            if (event.isGained(lock.getFormId())
+                    && locksFor(lock.getResponseId()).putIfAbsent(lock.getFieldId(), lock) == null) {
+                scheduleExpiry(lock);
+                takenOver++;
+            }
+        }
+        log.info("Form ownership changed: handed off {} field locks, took over {}", handedOff, takenOver);
+    }
+
+    @Override
+    public LockAcquisition acquire(Long formId, Long responseId, Long fieldId, String fieldName,
+                                   UserDto user, boolean force) {
+        Map<Long, FieldLock> locks = locksFor(responseId);
+        LockAcquisition[] result = new LockAcquisition[1];
+
+        locks.compute(fieldId, (id, existing) -> {
+            if (existing != null && !existing.isExpired()) {
+                if (existing.isOwnedBy(user.getId())) {
+                    existing.refresh(lockTtlMs);
+                    result[0] = new LockAcquisition(LockAcquisition.Outcome.REFRESHED, existing, null);
+                    return existing;
+                }
+                if (!force) {
+                    result[0] = new LockAcquisition(LockAcquisition.Outcome.DENIED, existing, null);
+                    return existing;
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            FieldLock lock = new FieldLock(fencingTokens.incrementAndGet(),
+                    formId, responseId, fieldId, fieldName, user, now, now + lockTtlMs);
+            boolean stolen = existing != null && !existing.isExpired();
+            result[0] = new LockAcquisition(
+                    stolen ? LockAcquisition.Outcome.STOLEN : LockAcquisition.Outcome.ACQUIRED,
+                    lock,
+                    stolen ? existing : null);
+            return lock;
+        });
+
+        LockAcquisition acquisition = result[0];
+        if (acquisition.getOutcome() == LockAcquisition.Outcome.ACQUIRED
+                || acquisition.getOutcome() == LockAcquisition.Outcome.STOLEN) {
+            scheduleExpiry(acquisition.getLock());
+            journal.recordAcquired(acquisition.getLock());
+        }
+        return acquisition;
+    }
+
+    @Override
+    public Optional<FieldLock> getActiveLock(Long responseId, Long fieldId) {
+        Map<Long, FieldLock> locks = locksByResponse.get(responseId);
+        if (locks == null) {
+            return Optional.empty();
+        }
+        FieldLock lock = locks.get(fieldId);
+        return lock == null || lock.isExpired() ? Optional.empty() : Optional.of(lock);
+    }
+
+    @Override
+    public List<FieldLock> getActiveLocks(Long responseId) {
+        Map<Long, FieldLock> locks = locksByResponse.get(responseId);
+        if (locks == null) {
+            return Collections.emptyList();
+        }
+        List<FieldLock> active = new ArrayList<>(locks.size());
+        for (FieldLock lock : locks.values()) {
+            if (!lock.isExpired()) {
+                active.add(lock);
+            }
+        }
+        return active;
+    }
+
+    @Override
+    public boolean release(FieldLock lock) {
+        Map<Long, FieldLock> locks = locksByResponse.get(lock.getResponseId());
+        if (locks == null) {
+            return false;
+        }
+        // Lock instances are canonical here, so identity is enough to detect a replaced lock
+        if (!locks.remove(lock.getFieldId(), lock)) {
+            return false;
+        }
+        journal.recordReleased(lock);
+        return true;
+    }
+
+    @Override
+    public List<FieldLock> releaseAll(Long responseId, Long userId) {
+        Map<Long, FieldLock> locks = locksByResponse.get(responseId);
+        if (locks == null) {
+            return Collections.emptyList();
+        }
+        List<FieldLock> released = new ArrayList<>();
+        for (FieldLock lock : locks.values()) {
+            if (lock.isOwnedBy(userId) && release(lock)) {
+                released.add(lock);
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Refreshes only move the deadline forward in memory, so a refreshed lock is simply re-armed.
+     */
+    @Override
+    protected ExpiryCheck checkExpiry(FieldLock lock) {
+        if (!lock.isExpired()) {
+            return ExpiryCheck.extendedTo(lock.getExpiresAt());
+        }
+        return release(lock) ? ExpiryCheck.released() : ExpiryCheck.gone();
+    }
+
+    private Map<Long, FieldLock> locksFor(Long responseId) {
+        return locksByResponse.computeIfAbsent(responseId, id -> new ConcurrentHashMap<>());
+    }
+}
@@ -0,0 +1,220 @@
+package com.collabform.service.lock;
+
+import com.collabform.dto.UserDto;
+import com.collabform.model.EditLock;
+import com.collabform.repository.EditLockRepository;
+import com.collabform.repository.FormFieldRepository;
+import com.collabform.repository.FormResponseRepository;
+import com.collabform.repository.UserRepository;
+import com.collabform.service.CollaborationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Lock store backed by the shared edit_locks table.
+ * Lock operations join the caller's transaction, so a request holds a single connection and its
+ * lock changes become visible to other nodes when it commits; operations made outside a
+ * transaction (expiry checks, the sweep) run in their own. A unique constraint on
+ * (field_id, response_id) arbitrates concurrent acquisitions.
+ * A field keeps its row for good: releasing only marks it released, and the next acquisition
+ * reuses it under a row lock with the next fencing token, so tokens never go backwards.
+ * Expiry is driven by the timing wheel on the node that took the lock, with a periodic sweep
+ * as a safety net for locks taken by nodes that have since stopped.
+ */
+@Component
+@ConditionalOnProperty(name = "collabform.locks.store", havingValue = "jpa")
+@Slf4j
+public class JpaFieldLockStore extends AbstractFieldLockStore {
+
+    private final EditLockRepository lockRepository;
+    private final FormFieldRepository fieldRepository;
+    private final FormResponseRepository responseRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public JpaFieldLockStore(CollaborationService collaborationService,
+                             EditLockRepository lockRepository,
+                             FormFieldRepository fieldRepository,
+                             FormResponseRepository responseRepository,
+                             UserRepository userRepository,
+                             PlatformTransactionManager transactionManager) {
+        super(collaborationService);
+        this.lockRepository = lockRepository;
+        this.fieldRepository = fieldRepository;
+        this.responseRepository = responseRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public LockAcquisition acquire(Long formId, Long responseId, Long fieldId, String fieldName,
+                                   UserDto user, boolean force) {
+        LockAcquisition acquisition;
+        try {
+            acquisition = transactionTemplate.execute(status ->
+                    doAcquire(formId, responseId, fieldId, fieldName, user, force));
+        } catch (DataIntegrityViolationException ex) {
+            // Another node inserted a lock for the same field first. The caller's transaction
+            // cannot go on after the failed insert, so its client tries again
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                throw new IllegalStateException("Field is being locked by another user, please try again");
+            }
+            // Evaluate against the other node's lock
+            acquisition = transactionTemplate.execute(status ->
+                    doAcquire(formId, responseId, fieldId, fieldName, user, force));
+        }
+
+        if (acquisition.getOutcome() == LockAcquisition.Outcome.ACQUIRED
+                || acquisition.getOutcome() == LockAcquisition.Outcome.STOLEN) {
+            scheduleExpiry(acquisition.getLock());
+        }
+        return acquisition;
+    }
+
+    @Override
+    public Optional<FieldLock> getActiveLock(Long responseId, Long fieldId) {
+        return transactionTemplate.execute(status ->
+                lockRepository.findByFieldIdAndResponseId(fieldId, responseId)
+                        .filter(EditLock::isActive)
+                        .map(FieldLock::fromEntity));
+    }
+
+    @Override
+    public List<FieldLock> getActiveLocks(Long responseId) {
+        return transactionTemplate.execute(status ->
+                lockRepository.findActiveByResponseId(responseId, LocalDateTime.now()).stream()
+                        .map(FieldLock::fromEntity)
+                        .collect(Collectors.toList()));
+    }
+
+    @Override
+    public boolean release(FieldLock lock) {
+        Integer released = transactionTemplate.execute(status ->
+                lockRepository.releaseLock(lock.getFieldId(), lock.getResponseId(),
+                        lock.getFencingToken(), LocalDateTime.now()));
+        return released != null && released > 0;
+    }
+
+    @Override
+    public List<FieldLock> releaseAll(Long responseId, Long userId) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<FieldLock> released = new ArrayList<>();
+            for (EditLock lock : lockRepository.findByUserIdAndResponseId(userId, responseId)) {
+                if (lock.isActive() && lockRepository.releaseLock(lock.getField().getId(), responseId,
+                        lock.getFencingToken(), now) > 0) {
+                    released.add(FieldLock.fromEntity(lock));
+                }
+            }
+            return released;
+        });
+    }
+
+    @Override
+    protected ExpiryCheck checkExpiry(FieldLock lock) {
+        return transactionTemplate.execute(status -> {
+            Optional<EditLock> current = lockRepository.findByFieldIdAndResponseId(
+                    lock.getFieldId(), lock.getResponseId());
+            if (current.isEmpty() || current.get().isReleased()
+                    || current.get().getFencingToken() != lock.getFencingToken()) {
+                return ExpiryCheck.gone();
+            }
+            if (!current.get().isExpired()) {
+                return ExpiryCheck.extendedTo(toEpochMilli(current.get().getExpiresAt()));
+            }
+            if (lockRepository.releaseLockIfExpired(lock.getFieldId(), lock.getResponseId(),
+                    lock.getFencingToken(), LocalDateTime.now()) > 0) {
+                return ExpiryCheck.released();
+            }
+            // Refreshed or replaced between the read and the update; look again shortly
+            return ExpiryCheck.extendedTo(System.currentTimeMillis());
+        });
+    }
+
+    /**
+     * Release expired locks whose expiry timer lived on a node that is no longer running.
+     */
+    @Scheduled(fixedRateString = "${collabform.locks.jpa.sweep-ms:10000}")
+    public void sweepExpiredLocks() {
+        List<FieldLock> expired = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<FieldLock> removed = new ArrayList<>();
+            for (EditLock lock : lockRepository.findByReleasedFalseAndExpiresAtBefore(now)) {
+                if (lockRepository.releaseLockIfExpired(lock.getField().getId(), lock.getResponse().getId(),
+                        lock.getFencingToken(), now) > 0) {
+                    removed.add(FieldLock.fromEntity(lock));
+                }
+            }
+            return removed;
+        });
+
+        for (FieldLock lock : expired) {
+            collaborationService.notifyFieldLockReleased(lock);
+        }
+        if (!expired.isEmpty()) {
+            log.info("Cleaned up {} expired locks", expired.size());
+        }
+    }
+
+    private LockAcquisition doAcquire(Long formId, Long responseId, Long fieldId, String fieldName,
+                                      UserDto user, boolean force) {
+        Optional<EditLock> existing = lockRepository.findForUpdate(fieldId, responseId);
+        FieldLock previous = null;
+        EditLock row;
+
+        if (existing.isPresent()) {
+            row = existing.get();
+            if (row.isActive()) {
+                if (row.getUser().getId().equals(user.getId())) {
+                    row.setExpiresAt(LocalDateTime.now().plus(lockTtlMs, ChronoUnit.MILLIS));
+                    return new LockAcquisition(LockAcquisition.Outcome.REFRESHED,
+                            FieldLock.fromEntity(lockRepository.save(row)), null);
+                }
+                if (!force) {
+                    return new LockAcquisition(LockAcquisition.Outcome.DENIED, FieldLock.fromEntity(row), null);
+                }
+                previous = FieldLock.fromEntity(row);
+            }
+            row.setFencingToken(Math.max(row.getFencingToken() + 1, FieldLock.tokenFloor()));
+        } else {
+            row = EditLock.builder()
+                    .field(fieldRepository.getReferenceById(fieldId))
+                    .response(responseRepository.getReferenceById(responseId))
+                    .fencingToken(FieldLock.tokenFloor())
+                    .build();
+        }
+
+        LocalDateTime lockTime = LocalDateTime.now();
+        LocalDateTime expiresAt = lockTime.plus(lockTtlMs, ChronoUnit.MILLIS);
+        row.setUser(userRepository.getReferenceById(user.getId()));
+        row.setLockTime(lockTime);
+        row.setExpiresAt(expiresAt);
+        row.setReleased(false);
+        lockRepository.saveAndFlush(row);
+
+        FieldLock lock = new FieldLock(row.getFencingToken(), formId, responseId, fieldId, fieldName,
+                user, toEpochMilli(lockTime), toEpochMilli(expiresAt));
+        return new LockAcquisition(
+                previous != null ? LockAcquisition.Outcome.STOLEN : LockAcquisition.Outcome.ACQUIRED,
+                lock,
+                previous);
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
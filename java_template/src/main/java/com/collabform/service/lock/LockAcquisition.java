@@ -0,0 +1,31 @@
+package com.collabform.service.lock;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of a lock acquisition attempt.
+ */
+@Getter
+@AllArgsConstructor
+public class LockAcquisition {
+
+    public enum Outcome {
+        ACQUIRED,   // The field was free and is now locked by the caller
+        REFRESHED,  // The caller already held the lock; its expiry was extended
+        STOLEN,     // Another user's lock was forcibly replaced by the caller's
+        DENIED      // Another user holds the lock and force was not requested
+    }
+
+    private final Outcome outcome;
+
+    // The lock now in effect (the caller's lock, or the blocking lock when denied)
+    private final FieldLock lock;
+
+    // The lock that was replaced when the outcome is STOLEN, null otherwise
+    private final FieldLock previous;
+
+    public boolean isGranted() {
+        return outcome != Outcome.DENIED;
+    }
+}
@@ -0,0 +1,303 @@
+package com.collabform.service.lock;
+
+import com.collabform.dto.UserDto;
+import com.collabform.service.CollaborationService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Lock store backed by Redis, for running several application nodes against the same forms.
+ * Each lock is a single key holding {@code ownerId|fencingToken|json}, and every compare-and-set
+ * (acquire, refresh, steal, release, expiry) is a Lua script, so each lock operation costs one
+ * round trip. Fencing tokens come from a per-field counter that outlives the lock key and is
+ * floored at the wall clock, so they keep increasing even if Redis loses the counter.
+ * A per-response set indexes the locked fields; reading all locks of a response lists the set and
+ * then reads the listed keys in one script, as scripts may only touch the keys they are passed.
+ * Keys carry the response ID as a hash tag, keeping a response's keys in one cluster slot.
+ * <p>
+ * Redis keys outlive the logical expiry by a grace period: the node that took a lock deletes
+ * the key when its timing wheel fires and broadcasts the release, so an explicit release is
+ * never announced twice. The grace period only cleans up after nodes that have stopped.
+ */
+@Component
+@ConditionalOnProperty(name = "collabform.locks.store", havingValue = "redis")
+@Slf4j
+public class RedisFieldLockStore extends AbstractFieldLockStore {
+
+    private static final String LOCK_KEY_PREFIX = "collabform:lock:";
+    private static final String INDEX_KEY_PREFIX = "collabform:locks:";
+    private static final String FENCE_KEY_PREFIX = "collabform:fence:";
+
+    // KEYS: lock, index, fence. ARGV: json, ttl + grace, fieldId, ownerId, force, grace, token floor
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ACQUIRE_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            local previous = ''
+            if current then
+                local remaining = redis.call('PTTL', KEYS[1]) - tonumber(ARGV[6])
+                if remaining > 0 then
+                    if string.match(current, '^(%d+)|') == ARGV[4] then
+                        redis.call('PEXPIRE', KEYS[1], ARGV[2])
+                        return {'REFRESHED', current, ''}
+                    end
+                    if ARGV[5] ~= '1' then
+                        return {'DENIED', current, tostring(remaining)}
+                    end
+                    previous = current
+                end
+            end
+            if redis.call('INCR', KEYS[3]) < tonumber(ARGV[7]) then
+                redis.call('SET', KEYS[3], ARGV[7])
+            end
+            -- Read back as a string, which keeps every digit of the token whatever the Lua number formatting
+            local value = ARGV[4] .. '|' .. redis.call('GET', KEYS[3]) .. '|' .. ARGV[1]
+            redis.call('SET', KEYS[1], value, 'PX', ARGV[2])
+            redis.call('SADD', KEYS[2], ARGV[3])
+            if previous ~= '' then
+                return {'STOLEN', value, previous}
+            end
+            return {'ACQUIRED', value, ''}
+            """, List.class);
+
+    // KEYS: lock, index. ARGV: fencing token, fieldId
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            if current and string.match(current, '^%d+|(%d+)|') == ARGV[1] then
+                redis.call('DEL', KEYS[1])
+                redis.call('SREM', KEYS[2], ARGV[2])
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    // KEYS: lock, index. ARGV: fencing token, fieldId, grace. Returns -1 gone, 0 released, or ms remaining
+    private static final RedisScript<Long> EXPIRE_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            if not current or string.match(current, '^%d+|(%d+)|') ~= ARGV[1] then
+                return -1
+            end
+            local remaining = redis.call('PTTL', KEYS[1]) - tonumber(ARGV[3])
+            if remaining > 0 then
+                return remaining
+            end
+            redis.call('DEL', KEYS[1])
+            redis.call('SREM', KEYS[2], ARGV[2])
+            return 0
+            """, Long.class);
+
+    // KEYS: lock. Returns value and PTTL
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ_SCRIPT = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[1])
+            if not current then
+                return {}
+            end
+            return {current, tostring(redis.call('PTTL', KEYS[1]))}
+            """, List.class);
+
+    // KEYS: index, then one lock per field. ARGV: the fields' IDs. Returns value/PTTL pairs, pruning stale index entries
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ_ALL_SCRIPT = new DefaultRedisScript<>("""
+            local result = {}
+            for i, fieldId in ipairs(ARGV) do
+                local key = KEYS[i + 1]
+                local current = redis.call('GET', key)
+                if current then
+                    table.insert(result, current)
+                    table.insert(result, tostring(redis.call('PTTL', key)))
+                else
+                    redis.call('SREM', KEYS[1], fieldId)
+                end
+            end
+            return result
+            """, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${collabform.locks.redis.expiry-grace-ms:5000}")
+    private long expiryGraceMs;
+
+    public RedisFieldLockStore(CollaborationService collaborationService,
+                               StringRedisTemplate redisTemplate,
+                               ObjectMapper objectMapper) {
+        super(collaborationService);
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public LockAcquisition acquire(Long formId, Long responseId, Long fieldId, String fieldName,
+                                   UserDto user, boolean force) {
+        StoredLock candidate = new StoredLock(formId, responseId, fieldId, fieldName, user,
+                System.currentTimeMillis());
+
+        List<String> reply = redisTemplate.execute(ACQUIRE_SCRIPT,
+                List.of(lockKey(responseId, fieldId), indexKey(responseId), fenceKey(responseId, fieldId)),
+                encode(candidate),
+                Long.toString(lockTtlMs + expiryGraceMs),
+                fieldId.toString(),
+                user.getId().toString(),
+                force ? "1" : "0",
+                Long.toString(expiryGraceMs),
+                Long.toString(FieldLock.tokenFloor()));
+
+        LockAcquisition.Outcome outcome = LockAcquisition.Outcome.valueOf(reply.get(0));
+        switch (outcome) {
+            case ACQUIRED: {
+                FieldLock lock = decode(reply.get(1), lockTtlMs);
+                scheduleExpiry(lock);
+                return new LockAcquisition(outcome, lock, null);
+            }
+            case STOLEN: {
+                FieldLock lock = decode(reply.get(1), lockTtlMs);
+                scheduleExpiry(lock);
+                return new LockAcquisition(outcome, lock, decode(reply.get(2), lockTtlMs));
+            }
+            case REFRESHED:
+                return new LockAcquisition(outcome, decode(reply.get(1), lockTtlMs), null);
+            default:
+                return new LockAcquisition(outcome, decode(reply.get(1), Long.parseLong(reply.get(2))), null);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<FieldLock> getActiveLock(Long responseId, Long fieldId) {
+        List<String> reply = redisTemplate.execute(READ_SCRIPT, List.of(lockKey(responseId, fieldId)));
+        if (reply == null || reply.isEmpty()) {
+            return Optional.empty();
+        }
+        long remaining = Long.parseLong(reply.get(1)) - expiryGraceMs;
+        return remaining > 0 ? Optional.of(decode(reply.get(0), remaining)) : Optional.empty();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<FieldLock> getActiveLocks(Long responseId) {
+        // Scripts only touch the keys they declare, so the locked fields are listed first
+        Set<String> fieldIds = redisTemplate.opsForSet().members(indexKey(responseId));
+        if (fieldIds == null || fieldIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> keys = new ArrayList<>(fieldIds.size() + 1);
+        keys.add(indexKey(responseId));
+        for (String fieldId : fieldIds) {
+            keys.add(lockKey(responseId, Long.valueOf(fieldId)));
+        }
+
+        List<String> reply = redisTemplate.execute(READ_ALL_SCRIPT, keys, fieldIds.toArray());
+        if (reply == null || reply.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<FieldLock> locks = new ArrayList<>(reply.size() / 2);
+        for (int i = 0; i + 1 < reply.size(); i += 2) {
+            long remaining = Long.parseLong(reply.get(i + 1)) - expiryGraceMs;
+            if (remaining > 0) {
+                locks.add(decode(reply.get(i), remaining));
+            }
+        }
+        return locks;
+    }
+
+    @Override
+    public boolean release(FieldLock lock) {
+        Long removed = redisTemplate.execute(RELEASE_SCRIPT,
+                List.of(lockKey(lock.getResponseId(), lock.getFieldId()), indexKey(lock.getResponseId())),
+                Long.toString(lock.getFencingToken()),
+                lock.getFieldId().toString());
+        return removed != null && removed > 0;
+    }
+
+    @Override
+    public List<FieldLock> releaseAll(Long responseId, Long userId) {
+        List<FieldLock> released = new ArrayList<>();
+        for (FieldLock lock : getActiveLocks(responseId)) {
+            if (lock.isOwnedBy(userId) && release(lock)) {
+                released.add(lock);
+            }
+        }
+        return released;
+    }
+
+    @Override
+    protected ExpiryCheck checkExpiry(FieldLock lock) {
+        Long result = redisTemplate.execute(EXPIRE_SCRIPT,
+                List.of(lockKey(lock.getResponseId(), lock.getFieldId()), indexKey(lock.getResponseId())),
+                Long.toString(lock.getFencingToken()),
+                lock.getFieldId().toString(),
+                Long.toString(expiryGraceMs));
+        if (result == null || result < 0) {
+            return ExpiryCheck.gone();
+        }
+        if (result == 0) {
+            return ExpiryCheck.released();
+        }
+        return ExpiryCheck.extendedTo(System.currentTimeMillis() + result);
+    }
+
+    private String encode(StoredLock stored) {
+        try {
+            return objectMapper.writeValueAsString(stored);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not encode field lock", ex);
+        }
+    }
+
+    private FieldLock decode(String value, long remainingMs) {
+        int ownerEnd = value.indexOf('|');
+        int tokenEnd = value.indexOf('|', ownerEnd + 1);
+        try {
+            StoredLock stored = objectMapper.readValue(value.substring(tokenEnd + 1), StoredLock.class);
+            return new FieldLock(Long.parseLong(value.substring(ownerEnd + 1, tokenEnd)), stored.getFormId(),
+                    stored.getResponseId(), stored.getFieldId(), stored.getFieldName(), stored.getOwner(),
+                    stored.getLockTime(), System.currentTimeMillis() + remainingMs);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not decode field lock", ex);
+        }
+    }
+
+    private static String lockKey(Long responseId, Long fieldId) {
+        return LOCK_KEY_PREFIX + "{" + responseId + "}:" + fieldId;
+    }
+
+    private static String fenceKey(Long responseId, Long fieldId) {
+        return FENCE_KEY_PREFIX + "{" + responseId + "}:" + fieldId;
+    }
+
+    private static String indexKey(Long responseId) {
+        return INDEX_KEY_PREFIX + "{" + responseId + "}";
+    }
+
+    /**
+     * JSON part of a stored lock value.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class StoredLock {
+        private Long formId;
+        private Long responseId;
+        private Long fieldId;
+        private String fieldName;
+        private UserDto owner;
+        private long lockTime;
+    }
+}
@@ -0,0 +1,272 @@
+package com.collabform.service.presence;
+
+import com.collabform.cluster.FormOwnershipChangedEvent;
+import com.collabform.dto.UserDto;
+import com.collabform.dto.websocket.RosterMessage;
+import com.collabform.model.User;
+import com.collabform.service.CollaborationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks who is collaborating on each form, indexed both by WebSocket session and by form, so a
+ * form's roster is available without scanning sessions or reading the database.
+ * A user with several tabs open on a form is one member; they join with the first subscription
+ * and leave with the last.
+ * <p>
+ * Joins and leaves are not broadcast one by one. A form whose roster changed is marked, and every
+ * batch interval each marked form gets one {@code PRESENCE} message with the difference between
+ * its roster and the one last announced, so a user who drops and reconnects within the interval
+ * is not announced at all. Every announcement takes a new version from a single counter; the
+ * roster a subscriber is sent carries the version it includes.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PresenceRegistry {
+
+    private final CollaborationService collaborationService;
+
+    // sessionId -> the session's form subscriptions
+    private final Map<String, SessionPresence> sessions = new ConcurrentHashMap<>();
+
+    // formId -> members of the form
+    private final Map<Long, Roster> rosters = new ConcurrentHashMap<>();
+
+    // Forms whose roster differs from the one last announced
+    private final Set<Long> changedForms = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong versions = new AtomicLong();
+
+    /**
+     * Add a form subscription of a user.
+     *
+     * @param sessionId The WebSocket session
+     * @param subscriptionId The ID of the subscription within the session
+     * @param formId The ID of the form
+     * @param user The subscribing user
+     * @return The form's roster, including the user
+     */
+    public RosterMessage join(String sessionId, String subscriptionId, Long formId, User user) {
+        SessionPresence session = sessions.computeIfAbsent(sessionId, id -> new SessionPresence(user.getId()));
+        synchronized (session) {
+            if (session.closed || session.subscriptions.putIfAbsent(subscriptionId, formId) != null) {
+                return roster(formId);
+            }
+            log.debug("User joined form collaboration: sessionId={}, userId={}, formId={}",
+                    sessionId, user.getId(), formId);
+            return addMember(formId, user);
+        }
+    }
+
+    /**
+     * Remove a subscription; nothing happens if it was not a form subscription.
+     *
+     * @param sessionId The WebSocket session
+     * @param subscriptionId The ID of the subscription within the session
+     */
+    public void leave(String sessionId, String subscriptionId) {
+        SessionPresence session = sessions.get(sessionId);
+        if (session == null) {
+            return;
+        }
+        synchronized (session) {
+            Long formId = session.subscriptions.remove(subscriptionId);
+            if (formId != null) {
+                removeMember(formId, session.userId, sessionId);
+            }
+        }
+    }
+
+    /**
+     * Remove every subscription of a closed session.
+     *
+     * @param sessionId The WebSocket session
+     */
+    public void sessionClosed(String sessionId) {
+        SessionPresence session = sessions.remove(sessionId);
+        if (session == null) {
+            return;
+        }
+        synchronized (session) {
+            session.closed = true;
+            session.subscriptions.values().forEach(formId -> removeMember(formId, session.userId, sessionId));
+            session.subscriptions.clear();
+        }
+    }
+
+    /**
+     * @param formId The ID of the form
+     * @return The users currently collaborating on the form
+     */
+    public RosterMessage roster(Long formId) {
+        Roster roster = rosters.get(formId);
+        if (roster == null) {
+            return RosterMessage.create(formId, versions.get(), List.of());
+        }
+        synchronized (roster) {
+            return roster.toMessage(formId);
+        }
+    }
+
+    /**
+     * Announce the roster changes of the last interval, one message per changed form.
+     */
+    @Scheduled(fixedDelayString = "${collabform.presence.batch-ms:200}")
+    public void announceChanges() {
+        for (Long formId : changedForms) {
+            changedForms.remove(formId);
+            Roster roster = rosters.get(formId);
+            if (roster == null) {
+                continue;
+            }
+
+            List<UserDto> joined = new ArrayList<>();
+            List<Long> left = new ArrayList<>();
+            long version;
+            synchronized (roster) {
+                if (roster.evicted) {
+                    continue;
+                }
+                roster.members.forEach((userId, member) -> {
+                    if (!roster.announced.contains(userId)) {
+                        joined.add(member.user);
+                    }
+                });
+                roster.announced.forEach(userId -> {
+                    if (!roster.members.containsKey(userId)) {
+                        left.add(userId);
+                    }
+                });
+                if (roster.members.isEmpty()) {
+                    roster.evicted = true;
+                    rosters.remove(formId, roster);
+                }
+                if (joined.isEmpty() && left.isEmpty()) {
+                    continue; // Changes cancelled out
+                }
+                roster.announced = new HashSet<>(roster.members.keySet());
+                version = versions.incrementAndGet();
+                roster.version = version;
+            }
+            collaborationService.notifyPresenceChanged(formId, version, joined, left);
+        }
+    }
+
+    /**
+     * Forget the forms served by another node now; their subscribers are redirected there.
+     */
+    @EventListener
+    public void onOwnershipChanged(FormOwnershipChangedEvent event) {
+        sessions.values().forEach(session -> session.subscriptions.values().removeIf(event::isLost));
+        rosters.forEach((formId, roster) -> {
+            if (event.isLost(formId)) {
+                synchronized (roster) {
+                    roster.evicted = true;
+                    rosters.remove(formId, roster);
+                }
+            }
+        });
+    }
+
+    public int getFormCount() {
+        return rosters.size();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    private RosterMessage addMember(Long formId, User user) {
+        while (true) {
+            Roster roster = rosters.computeIfAbsent(formId, id -> new Roster(versions.get()));
+            synchronized (roster) {
+                if (roster.evicted) {
+                    continue; // Lost a race with an eviction; create a new roster
+                }
+                Member member = roster.members.computeIfAbsent(user.getId(), id -> new Member(UserDto.fromUser(user)));
+                if (member.subscriptions++ == 0) {
+                    changedForms.add(formId);
+                }
+                return roster.toMessage(formId);
+            }
+        }
+    }
+
+    private void removeMember(Long formId, Long userId, String sessionId) {
+        Roster roster = rosters.get(formId);
+        if (roster == null) {
+            return;
+        }
+        synchronized (roster) {
+            Member member = roster.members.get(userId);
+            if (member == null) {
+                return;
+            }
+            if (--member.subscriptions == 0) {
+                roster.members.remove(userId);
+                changedForms.add(formId);
+            }
+            log.debug("User left form collaboration: sessionId={}, userId={}, formId={}",
+                    sessionId, userId, formId);
+        }
+    }
+
+    /**
+     * Form subscriptions of one session; joins and leaves of a session are made under its monitor.
+     */
+    private static final class SessionPresence {
+        private final Long userId;
+        // subscriptionId -> formId
+        private final Map<String, Long> subscriptions = new ConcurrentHashMap<>();
+        private boolean closed;
+
+        SessionPresence(Long userId) {
+            this.userId = userId;
+        }
+    }
+
+    /**
+     * Members of one form; guarded by its own monitor.
+     */
+    private static final class Roster {
+        // userId -> member, in join order
+        private final Map<Long, Member> members = new LinkedHashMap<>();
+        // userIds in the last announcement
+        private Set<Long> announced = new HashSet<>();
+        private long version;
+        private boolean evicted;
+
+        Roster(long version) {
+            this.version = version;
+        }
+
+        RosterMessage toMessage(Long formId) {
+            List<UserDto> users = new ArrayList<>(members.size());
+            members.values().forEach(member -> users.add(member.user));
+            return RosterMessage.create(formId, version, users);
+        }
+    }
+
+    private static final class Member {
+        private final UserDto user;
+        // Subscriptions (tabs) of the user on the form
+        private int subscriptions;
+
+        Member(UserDto user) {
+            this.user = user;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.collabform.service.schema;
+
+import lombok.Value;
+
+/**
+ * The serialized detail of a form at one schema version.
+ */
+@Value
+public class FormSchema {
+
+    Long formId;
+    long version;
+    // Strong entity tag, quoted
+    String etag;
+    // JSON of the form response
+    byte[] body;
+
+    public static FormSchema create(Long formId, long version, byte[] body) {
+        return new FormSchema(formId, version, "\"" + formId + "-" + version + "\"", body);
+    }
+}
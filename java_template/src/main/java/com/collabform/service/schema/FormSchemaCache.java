@@ -0,0 +1,140 @@
+package com.collabform.service.schema;
+
+import com.collabform.cluster.FormOwnershipChangedEvent;
+import com.collabform.dto.form.FormResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Caches the serialized detail of each form, with its fields, response status and collaborators,
+ * at the schema version it was read at. The version is part of the form's ETag, so a client that
+ * has the current version is answered with 304 from the cache alone, and one that does not is
+ * sent the stored bytes without the form being read or serialized again.
+ * <p>
+ * Every change to the detail increments the form's version and is announced with a
+ * {@link FormSchemaChangedEvent}, which drops the form's entry once the change has been committed.
+ * A detail read from the database while an invalidation runs is not kept, as it may predate the
+ * change. Requests about a form are served by the node that owns it, so the entries of forms that
+ * move to another node are dropped too. The cache is bounded in size; when it is full, arbitrary
+ * entries are dropped.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FormSchemaCache {
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${collabform.schema-cache.max-size:10000}")
+    private int maxSize;
+
+    // formId -> detail at the form's current version
+    private final Map<Long, FormSchema> schemas = new ConcurrentHashMap<>();
+
+    // Incremented by every invalidation
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Get the detail of a form, reading it with a loader on a miss.
+     *
+     * @param formId The ID of the form
+     * @param loader Reads the form from the database
+     * @return The serialized form at its current version
+     */
+    public FormSchema get(Long formId, Supplier<FormResponse> loader) {
+        FormSchema cached = schemas.get(formId);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        long observedGeneration = generation.get();
+        FormResponse form = loader.get();
+        FormSchema schema = FormSchema.create(formId, form.getSchemaVersion(), serialize(form));
+        put(formId, schema, observedGeneration);
+        return schema;
+    }
+
+    /**
+     * Drop the detail of a changed form, after the change has been committed.
+     *
+     * @param event The change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSchemaChanged(FormSchemaChangedEvent event) {
+        generation.incrementAndGet();
+        schemas.remove(event.getFormId());
+        log.debug("Invalidated form schema: formId={}", event.getFormId());
+    }
+
+    /**
+     * Forget the forms served by another node now; their changes are no longer seen here.
+     */
+    @EventListener
+    public void onOwnershipChanged(FormOwnershipChangedEvent event) {
+        generation.incrementAndGet();
+        schemas.keySet().removeIf(event::isLost);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return schemas.size();
+    }
+
+    private byte[] serialize(FormResponse form) {
+        try {
+            return objectMapper.writeValueAsBytes(form);
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void put(Long formId, FormSchema schema, long observedGeneration) {
+        if (schemas.size() >= maxSize) {
+            makeRoom();
+        }
+        schemas.put(formId, schema);
+        // An invalidation that started after the form was read may have missed the new entry
+        if (generation.get() != observedGeneration) {
+            schemas.remove(formId, schema);
+        }
+    }
+
+    private void makeRoom() {
+        for (Iterator<FormSchema> it = schemas.values().iterator(); it.hasNext() && schemas.size() >= maxSize; ) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.collabform.service.schema;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when the schema version of a form was incremented, or the form was deleted.
+ */
+@Getter
+@AllArgsConstructor
+public class FormSchemaChangedEvent {
+
+    private final Long formId;
+}
@@ -0,0 +1,14 @@
+package com.collabform.service.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when a form was created or its title, description, fields or status changed.
+ */
+@Getter
+@AllArgsConstructor
+public class FormChangedEvent {
+
+    private final Long formId;
+}
@@ -0,0 +1,599 @@
+package com.collabform.service.search;
+
+import com.collabform.model.User;
+import com.collabform.repository.FormAccessRepository;
+import com.collabform.repository.FormFieldRepository;
+import com.collabform.repository.FormRepository;
+import com.collabform.repository.FormSearchSource;
+import com.collabform.service.access.FormAccessChangedEvent;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory inverted index of form titles, descriptions and field names, so forms can be searched
+ * by the words they contain without scanning the forms table.
+ * Terms are kept sorted, so the terms starting with a query word are one range of the index;
+ * every word of a query must match a term of the form, exactly or as a prefix. Forms rank by the
+ * sum of their best match per word, a title counting more than a field name and a field name more
+ * than the description, and an exact match twice a prefix match; ties go to the most recently
+ * updated form.
+ * <p>
+ * A search scores the smallest set of forms that can contain its results: the forms the user can
+ * see, or those matching its rarest word. When that word matches a large share of all forms (short
+ * prefixes typed into a search box), the forms are scanned most recently updated first instead,
+ * stopping once the results found score as high as any form can, since later forms only tie.
+ * <p>
+ * The index is built when the application starts and kept up to date from
+ * {@link FormChangedEvent}s and {@link FormAccessChangedEvent}s: once a change has been committed,
+ * the form is read again and replaces its previous entry. Each node keeps its own index, so forms
+ * changed through another node sharing the database are only seen after a restart.
+ * Searches read the index without locking; changes are serialized. Forms are read from the
+ * database before the index is locked, so a read of a changed form is numbered and only applied
+ * if no later read of the form was applied before it.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FormSearchIndex {
+
+    private static final int TITLE_WEIGHT = 4;
+    private static final int FIELD_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    // A word matching more than this share of all forms is searched by scanning in update order
+    private static final int DENSE_DIVISOR = 16;
+
+    private static final Comparator<IndexedForm> MOST_RECENT_FIRST = Comparator
+            .comparingLong((IndexedForm form) -> form.recency).reversed()
+            .thenComparing(Comparator.comparingLong((IndexedForm form) -> form.id).reversed());
+
+    private final FormRepository formRepository;
+    private final FormFieldRepository formFieldRepository;
+    private final FormAccessRepository formAccessRepository;
+
+    @Value("${collabform.search.load-batch-size:1000}")
+    private int loadBatchSize;
+
+    // formId -> indexed form
+    private final Map<Long, IndexedForm> forms = new ConcurrentHashMap<>();
+
+    // Every indexed form
+    private final RecentForms recent = new RecentForms();
+
+    // term -> the forms containing it
+    private final ConcurrentSkipListMap<String, Posting> postings = new ConcurrentSkipListMap<>();
+
+    // userId -> the forms the user owns or that are shared with the user
+    private final Map<Long, RecentForms> formsByUser = new ConcurrentHashMap<>();
+
+    // Guards changes; not a monitor, which would pin a virtual thread to its carrier
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // Numbers the reads of changed forms
+    private final AtomicLong reads = new AtomicLong();
+
+    // formId -> number of the read last applied; kept for deleted forms, so an earlier read cannot restore them
+    private final Map<Long, Long> appliedReads = new ConcurrentHashMap<>();
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+
+    @PostConstruct
+    public void load() {
+        long started = System.nanoTime();
+        long afterId = 0;
+        while (true) {
+            List<FormSearchSource> batch = formRepository.findSearchSourcesAfter(afterId, PageRequest.ofSize(loadBatchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            index(batch, 0);
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+        log.info("Indexed {} forms for search in {}ms", forms.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Find the forms a user may see that match a query, best match first.
+     *
+     * @param query Words to look for; each must start a word of the form's title, description or field names
+     * @param user The searching user; sees their own forms, active forms shared with them, and every
+     *             form if they are an administrator
+     * @param offset The number of best matches to skip
+     * @param count The maximum number of matches to return
+     * @return The IDs of the matching forms
+     */
+    public List<Long> search(String query, User user, int offset, int count) {
+        List<String> words = new ArrayList<>(tokenize(query));
+        if (words.isEmpty() || count < 1) {
+            return List.of();
+        }
+        long started = System.nanoTime();
+        TopHits top = new TopHits((int) Math.min((long) offset + count, Integer.MAX_VALUE));
+
+        RecentForms own = user.isAdmin() ? null : formsByUser.getOrDefault(user.getId(), RecentForms.NONE);
+        long dense = Math.max(forms.size() / DENSE_DIVISOR, 1);
+        long smallest = own != null ? own.size : Long.MAX_VALUE;
+        Collection<Posting> rarest = null;
+        for (String word : words) {
+            Collection<Posting> matching = matching(word).values();
+            long size = 0;
+            for (Posting posting : matching) {
+                size += posting.forms.size();
+                if (size >= Math.min(smallest, dense)) {
+                    break;
+                }
+            }
+            if (size < smallest) {
+                smallest = size;
+                rarest = matching;
+            }
+        }
+
+        if (rarest == null) {
+            scanByRecency(own, words, user, top);
+        } else if (smallest >= dense) {
+            scanByRecency(recent, words, user, top);
+        } else if (rarest.size() == 1) {
+            score(rarest.iterator().next().forms.values(), words, user, top);
+        } else {
+            // A form containing several terms with the prefix is scored once
+            Map<Long, IndexedForm> union = new HashMap<>();
+            rarest.forEach(posting -> union.putAll(posting.forms));
+            score(union.values(), words, user, top);
+        }
+
+        List<Long> best = top.ranked(offset);
+        searches.increment();
+        searchNanos.add(System.nanoTime() - started);
+        return best;
+    }
+
+    /**
+     * Read a form again once a change to its content has been committed.
+     *
+     * @param event The change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFormChanged(FormChangedEvent event) {
+        reindex(event.getFormId());
+    }
+
+    /**
+     * Read a form again once a change to who may access it has been committed; a deleted form is
+     * dropped.
+     *
+     * @param event The change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAccessChanged(FormAccessChangedEvent event) {
+        reindex(event.getFormId());
+    }
+
+    public int getFormCount() {
+        return forms.size();
+    }
+
+    public long getSearchCount() {
+        return searches.sum();
+    }
+
+    public double getAverageMillis() {
+        long count = searches.sum();
+        return count == 0 ? 0 : searchNanos.sum() / 1_000_000.0 / count;
+    }
+
+    private void score(Collection<IndexedForm> candidates, List<String> words, User user, TopHits top) {
+        for (IndexedForm form : candidates) {
+            if (form.isVisibleTo(user)) {
+                int score = form.score(words);
+                if (score > 0) {
+                    top.offer(form, score);
+                }
+            }
+        }
+    }
+
+    // Forms matching a word exactly can outrank all others. When they are few (under a quarter of
+    // the forms to scan), they are scored first, so the scan can stop as soon as nothing left can
+    // beat its hits with prefix matches
+    private void scanByRecency(RecentForms candidates, List<String> words, User user, TopHits top) {
+        List<Posting> exact = new ArrayList<>();
+        long exactCount = 0;
+        for (String word : words) {
+            Posting posting = postings.get(word);
+            if (posting != null) {
+                exact.add(posting);
+                exactCount += posting.forms.size();
+            }
+        }
+        boolean exactFirst = !exact.isEmpty() && exactCount * 4 < candidates.size;
+        if (exactFirst) {
+            Map<Long, IndexedForm> union = new HashMap<>();
+            exact.forEach(posting -> union.putAll(posting.forms));
+            score(union.values(), words, user, top);
+        }
+
+        int highest = 0;
+        for (String word : words) {
+            highest += highestScore(word, exactFirst);
+        }
+        for (IndexedForm form : candidates.forms) {
+            if (top.isFull() && top.lowestScore() >= highest) {
+                break; // The remaining forms are older, so at best they tie and lose
+            }
+            if (exactFirst && form.containsAny(words)) {
+                continue; // Scored already
+            }
+            if (form.isVisibleTo(user)) {
+                int score = form.score(words);
+                if (score > 0) {
+                    top.offer(form, score);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The most a word can add to the score of a form, leaving out exact matches if they
+     *         were scored already
+     */
+    private int highestScore(String word, boolean exactScored) {
+        int highest = 0;
+        int ceiling = exactScored ? TITLE_WEIGHT : TITLE_WEIGHT * 2;
+        for (Map.Entry<String, Posting> term : matching(word).entrySet()) {
+            int weight = term.getValue().weight;
+            if (!term.getKey().equals(word)) {
+                highest = Math.max(highest, weight);
+            } else if (!exactScored) {
+                highest = Math.max(highest, weight * 2);
+            }
+            if (highest >= ceiling) {
+                break;
+            }
+        }
+        return highest;
+    }
+
+    private NavigableMap<String, Posting> matching(String word) {
+        return postings.subMap(word, word + Character.MAX_VALUE);
+    }
+
+    private void reindex(Long formId) {
+        // Numbered before reading, so a later number has seen at least every committed change
+        long read = reads.incrementAndGet();
+        Optional<FormSearchSource> source = formRepository.findSearchSourceById(formId);
+        if (source.isPresent()) {
+            index(List.of(source.get()), read);
+        } else {
+            writeLock.lock();
+            try {
+                if (claim(formId, read)) {
+                    remove(formId);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        log.debug("Reindexed form for search: formId={}", formId);
+    }
+
+    // The sources are in ID order, so their fields and shares are read as one range of form IDs.
+    // Read 0 is the initial load, which does not replace forms changed since it started
+    private void index(List<FormSearchSource> sources, long read) {
+        Long firstId = sources.get(0).getId();
+        Long lastId = sources.get(sources.size() - 1).getId();
+        Map<Long, List<String>> fieldNames = new HashMap<>();
+        formFieldRepository.findNamesByFormIdBetween(firstId, lastId).forEach(field ->
+                fieldNames.computeIfAbsent(field.getFormId(), id -> new ArrayList<>()).add(field.getFieldName()));
+        Map<Long, Set<Long>> sharedWith = new HashMap<>();
+        formAccessRepository.findGrantsByFormIdBetween(firstId, lastId).forEach(grant ->
+                sharedWith.computeIfAbsent(grant.getFormId(), id -> new HashSet<>()).add(grant.getUserId()));
+
+        writeLock.lock();
+        try {
+            for (FormSearchSource source : sources) {
+                if (claim(source.getId(), read)) {
+                    put(new IndexedForm(source, fieldNames.getOrDefault(source.getId(), List.of()),
+                            sharedWith.getOrDefault(source.getId(), Set.of())));
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Called with the write lock held; false if a later read of the form has been applied
+    private boolean claim(Long formId, long read) {
+        Long applied = appliedReads.get(formId);
+        if (applied != null && applied >= read) {
+            return false;
+        }
+        if (read > 0) {
+            appliedReads.put(formId, read);
+        }
+        return true;
+    }
+
+    // The new entry is linked before the previous one is unlinked, so a concurrent search finds
+    // the form through one of them
+    private void put(IndexedForm form) {
+        IndexedForm previous = forms.put(form.id, form);
+        boolean samePosition = previous != null && MOST_RECENT_FIRST.compare(previous, form) == 0;
+        if (samePosition) {
+            recent.remove(previous); // The sorted set would keep the previous entry
+        }
+        recent.add(form);
+        form.terms.forEach((term, weight) -> postings.computeIfAbsent(term, t -> new Posting()).add(form, weight));
+        for (Long userId : form.userIds()) {
+            RecentForms userForms = formsByUser.computeIfAbsent(userId, id -> new RecentForms());
+            if (samePosition) {
+                userForms.remove(previous);
+            }
+            userForms.add(form);
+        }
+        if (previous != null) {
+            unlink(previous, form);
+        }
+    }
+
+    private void remove(Long formId) {
+        IndexedForm previous = forms.remove(formId);
+        if (previous != null) {
+            unlink(previous, null);
+        }
+    }
+
+    private void unlink(IndexedForm previous, IndexedForm current) {
+        boolean samePosition = current != null && MOST_RECENT_FIRST.compare(previous, current) == 0;
+        if (!samePosition) {
+            recent.remove(previous);
+        }
+        for (String term : previous.terms.keySet()) {
+            if (current == null || !current.terms.containsKey(term)) {
+                Posting posting = postings.get(term);
+                posting.forms.remove(previous.id);
+                if (posting.forms.isEmpty()) {
+                    postings.remove(term, posting);
+                }
+            }
+        }
+        Set<Long> currentUserIds = samePosition ? current.userIds() : Set.of();
+        for (Long userId : previous.userIds()) {
+            if (currentUserIds.contains(userId)) {
+                continue; // Replaced by put
+            }
+            RecentForms userForms = formsByUser.get(userId);
+            userForms.remove(previous);
+            if (userForms.size == 0) {
+                formsByUser.remove(userId, userForms);
+            }
+        }
+    }
+
+    // Words are runs of letters and digits
+    private static Set<String> tokenize(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        if (text == null) {
+            return words;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean inWord = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                words.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * The indexed state of one form; replaced as a whole when the form changes.
+     */
+    private static final class IndexedForm {
+        private final long id;
+        private final long adminId;
+        private final boolean active;
+        // Time of the last update in nanoseconds, for ordering
+        private final long recency;
+        private final Set<Long> sharedWith;
+        // term -> weight of the most important place it occurs in
+        private final Map<String, Integer> terms = new HashMap<>();
+
+        IndexedForm(FormSearchSource source, List<String> fieldNames, Set<Long> sharedWith) {
+            LocalDateTime updatedAt = source.getUpdatedAt();
+            this.id = source.getId();
+            this.adminId = source.getAdminId();
+            this.active = source.isActive();
+            this.recency = updatedAt == null ? Long.MIN_VALUE :
+                    updatedAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + updatedAt.getNano();
+            this.sharedWith = sharedWith;
+            addTerms(source.getDescription(), DESCRIPTION_WEIGHT);
+            fieldNames.forEach(name -> addTerms(name, FIELD_WEIGHT));
+            addTerms(source.getTitle(), TITLE_WEIGHT);
+        }
+
+        private void addTerms(String text, int weight) {
+            tokenize(text).forEach(term -> terms.merge(term, weight, Math::max));
+        }
+
+        boolean containsAny(List<String> words) {
+            for (String word : words) {
+                if (terms.containsKey(word)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isVisibleTo(User user) {
+            return user.isAdmin() || adminId == user.getId() || (active && sharedWith.contains(user.getId()));
+        }
+
+        Set<Long> userIds() {
+            Set<Long> userIds = new HashSet<>(sharedWith);
+            userIds.add(adminId);
+            return userIds;
+        }
+
+        /**
+         * @return The sum of the best match of each word, or 0 if a word does not match
+         */
+        int score(List<String> words) {
+            int total = 0;
+            for (String word : words) {
+                Integer exact = terms.get(word);
+                int best = exact != null ? exact * 2 : 0;
+                if (best < TITLE_WEIGHT) {
+                    for (Map.Entry<String, Integer> term : terms.entrySet()) {
+                        if (term.getValue() > best && term.getKey().startsWith(word)) {
+                            best = term.getValue();
+                        }
+                    }
+                }
+                if (best == 0) {
+                    return 0;
+                }
+                total += best;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * The forms containing a term; changed only under the write lock.
+     */
+    private static final class Posting {
+        // formId -> form
+        private final Map<Long, IndexedForm> forms = new ConcurrentHashMap<>();
+        // The highest weight the term has had in a form; it never drops, so it bounds the current one
+        private volatile int weight;
+
+        void add(IndexedForm form, int weight) {
+            forms.put(form.id, form);
+            if (weight > this.weight) {
+                this.weight = weight;
+            }
+        }
+    }
+
+    /**
+     * Forms, most recently updated first, and their number; changed only under the write lock.
+     */
+    private static final class RecentForms {
+        private static final RecentForms NONE = new RecentForms();
+
+        private final ConcurrentSkipListSet<IndexedForm> forms = new ConcurrentSkipListSet<>(MOST_RECENT_FIRST);
+        private volatile int size;
+
+        void add(IndexedForm form) {
+            if (forms.add(form)) {
+                size++;
+            }
+        }
+
+        void remove(IndexedForm form) {
+            if (forms.remove(form)) {
+                size--;
+            }
+        }
+    }
+
+    /**
+     * The best hits of a search so far, in a heap whose head is the worst of them.
+     */
+    private static final class TopHits {
+        private final PriorityQueue<Hit> heap = new PriorityQueue<>();
+        private final int size;
+
+        TopHits(int size) {
+            this.size = size;
+        }
+
+        void offer(IndexedForm form, int score) {
+            Hit hit = new Hit(form, score);
+            if (heap.size() < size) {
+                heap.add(hit);
+            } else if (hit.compareTo(heap.peek()) > 0) {
+                heap.poll();
+                heap.add(hit);
+            }
+        }
+
+        boolean isFull() {
+            return heap.size() >= size;
+        }
+
+        int lowestScore() {
+            return heap.peek().score;
+        }
+
+        /**
+         * @return The IDs of the hits after the given number of best ones, best first
+         */
+        List<Long> ranked(int offset) {
+            List<Long> ranked = new ArrayList<>(heap.size());
+            while (!heap.isEmpty()) {
+                ranked.add(heap.poll().form.id);
+            }
+            List<Long> best = new ArrayList<>(Math.max(ranked.size() - offset, 0));
+            for (int i = ranked.size() - 1 - offset; i >= 0; i--) {
+                best.add(ranked.get(i));
+            }
+            return best;
+        }
+    }
+
+    private static final class Hit implements Comparable<Hit> {
+        private final IndexedForm form;
+        private final int score;
+
+        Hit(IndexedForm form, int score) {
+            this.form = form;
+            this.score = score;
+        }
+
+        // Better hits are greater
+        @Override
+        public int compareTo(Hit other) {
+            if (score != other.score) {
+                return Integer.compare(score, other.score);
+            }
+            if (form.recency != other.form.recency) {
+                return Long.compare(form.recency, other.form.recency);
+            }
+            return Long.compare(form.id, other.form.id);
+        }
+    }
+}
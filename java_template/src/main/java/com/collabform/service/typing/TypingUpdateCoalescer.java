@@ -0,0 +1,202 @@
+package com.collabform.service.typing;
+
+import com.collabform.dto.websocket.FieldUpdateMessage;
+import com.collabform.model.User;
+import com.collabform.service.CollaborationService;
+import com.collabform.utils.HierarchicalTimingWheel;
+import com.collabform.utils.TokenBucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Throttles the temporary field values broadcast while a user is typing.
+ * For each (form, field, user) the first update after a quiet interval goes out immediately;
+ * updates arriving within the interval only replace the pending value, which is sent once the
+ * interval has passed. Collaborators therefore see at most one typing update per field and user
+ * per interval, always the latest one, and never later than one interval after it was typed.
+ * Dropping the earlier updates is safe because each carries either the whole text or a patch
+ * against the saved revision, never against a previous typing update.
+ * <p>
+ * Each WebSocket session also has a token bucket; frames beyond its rate are dropped before
+ * they reach the coalescer. A dropped frame is only a preview, since the saved value is
+ * broadcast separately when the client writes it.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TypingUpdateCoalescer {
+
+    private final CollaborationService collaborationService;
+
+    @Value("${collabform.typing.interval-ms:50}")
+    private long intervalMs;
+
+    @Value("${collabform.typing.rate-limit.burst:40}")
+    private int rateLimitBurst;
+
+    @Value("${collabform.typing.rate-limit.per-second:20}")
+    private double rateLimitPerSecond;
+
+    // [formId, fieldId, userId] -> throttle state
+    private final Map<List<Long>, PendingUpdate> pendingUpdates = new ConcurrentHashMap<>();
+
+    private final Map<String, TokenBucket> bucketsBySession = new ConcurrentHashMap<>();
+
+    private HierarchicalTimingWheel timingWheel;
+
+    @PostConstruct
+    public void startTimer() {
+        this.timingWheel = new HierarchicalTimingWheel("typing-coalescer", 5, 64, 2);
+    }
+
+    @PreDestroy
+    public void stopTimer() {
+        timingWheel.close();
+    }
+
+    /**
+     * Accept a typing update from a client.
+     *
+     * @param sessionId The WebSocket session the update came from
+     * @param formId The ID of the form
+     * @param message The update sent by the client
+     * @param user The user who is typing
+     * @return false if the update was dropped by the session's rate limit
+     */
+    public boolean submit(String sessionId, Long formId, FieldUpdateMessage message, User user) {
+        if (message.getFieldId() == null) {
+            throw new IllegalArgumentException("Field ID is required");
+        }
+        if (sessionId != null && !bucketsBySession
+                .computeIfAbsent(sessionId, id -> new TokenBucket(rateLimitBurst, rateLimitPerSecond))
+                .tryAcquire()) {
+            log.debug("Dropped typing update over the session rate limit: sessionId={}, formId={}", sessionId, formId);
+            return false;
+        }
+        if (intervalMs <= 0) {
+            send(formId, message, user);
+            return true;
+        }
+
+        List<Long> key = List.of(formId, message.getFieldId(), user.getId());
+        while (true) {
+            PendingUpdate entry = pendingUpdates.computeIfAbsent(key, k -> new PendingUpdate());
+            synchronized (entry) {
+                if (entry.evicted) {
+                    continue; // Lost a race with the sweep; create a new entry
+                }
+                long now = System.currentTimeMillis();
+                long wait = entry.lastSent + intervalMs - now;
+                if (entry.timeout == null && wait <= 0) {
+                    entry.lastSent = now;
+                } else {
+                    entry.message = message;
+                    entry.user = user;
+                    if (entry.timeout == null) {
+                        entry.timeout = timingWheel.schedule(() -> sendPending(formId, entry), wait);
+                    }
+                    return true;
+                }
+            }
+            send(formId, message, user);
+            return true;
+        }
+    }
+
+    /**
+     * Drop the pending typing update of a user, so it cannot arrive after the value they saved.
+     *
+     * @param formId The ID of the form
+     * @param fieldId The ID of the field
+     * @param userId The ID of the user
+     */
+    public void discard(Long formId, Long fieldId, Long userId) {
+        PendingUpdate entry = pendingUpdates.get(List.of(formId, fieldId, userId));
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (entry.timeout != null) {
+                entry.timeout.cancel();
+                entry.timeout = null;
+            }
+            entry.message = null;
+            entry.user = null;
+        }
+    }
+
+    /**
+     * Forget the rate limit state of a closed session.
+     *
+     * @param sessionId The WebSocket session ID
+     */
+    public void sessionClosed(String sessionId) {
+        bucketsBySession.remove(sessionId);
+    }
+
+    /**
+     * Remove the throttle state of fields nobody has typed in for a while.
+     */
+    @Scheduled(fixedDelayString = "${collabform.typing.sweep-ms:10000}")
+    public void sweepIdle() {
+        long cutoff = System.currentTimeMillis() - intervalMs;
+        pendingUpdates.forEach((key, entry) -> {
+            synchronized (entry) {
+                if (entry.timeout != null || entry.lastSent >= cutoff) {
+                    return;
+                }
+                entry.evicted = true;
+            }
+            pendingUpdates.remove(key, entry);
+        });
+    }
+
+    private void sendPending(Long formId, PendingUpdate entry) {
+        FieldUpdateMessage message;
+        User user;
+        synchronized (entry) {
+            message = entry.message;
+            user = entry.user;
+            entry.message = null;
+            entry.user = null;
+            entry.timeout = null;
+            entry.lastSent = System.currentTimeMillis();
+        }
+        if (message != null) {
+            send(formId, message, user);
+        }
+    }
+
+    private void send(Long formId, FieldUpdateMessage message, User user) {
+        collaborationService.sendTemporaryFieldUpdate(
+                formId,
+                message.getFieldId(),
+                message.getFieldName(),
+                message.getFieldType(),
+                message.getValue(),
+                message.getBaseRevision(),
+                message.getEdits(),
+                user
+        );
+    }
+
+    /**
+     * Throttle state of one (form, field, user); guarded by its own monitor.
+     */
+    private static class PendingUpdate {
+        private FieldUpdateMessage message;
+        private User user;
+        private long lastSent;
+        private HierarchicalTimingWheel.Timeout timeout;
+        private boolean evicted;
+    }
+}
@@ -0,0 +1,181 @@
+package com.collabform.service.value;
+
+import com.collabform.dto.UserDto;
+import com.collabform.dto.response.FieldValueResponse;
+import com.collabform.model.FieldValue;
+import com.collabform.model.FormField;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The latest known value of one field of one response, held by the write-behind buffer.
+ * Callers hold the entry's lock; {@code version} counts accepted writes and
+ * {@code flushedVersion} the writes already in the database, so repeated writes between
+ * two flushes collapse into one row write.
+ */
+class BufferedFieldValue {
+
+    // Held across the journal append, so a lock rather than a monitor that would pin a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Long responseId;
+    private final Long formId;
+    private final Long fieldId;
+    private final Long id;
+    private String fieldName;
+    private String fieldType;
+    private String value;
+    private Long fencingToken;
+    private long revision;
+    private LocalDateTime lastUpdated;
+    private UserDto lastUpdatedBy;
+
+    private long version;
+    private long flushedVersion;
+    private long lastTouched;
+    private boolean evicted;
+
+    private BufferedFieldValue(Long responseId, FormField field, Long id) {
+        this.responseId = responseId;
+        this.formId = field.getForm().getId();
+        this.fieldId = field.getId();
+        this.fieldName = field.getFieldName();
+        this.fieldType = field.getFieldType().toString();
+        this.id = id;
+        this.lastTouched = System.currentTimeMillis();
+    }
+
+    void lock() {
+        lock.lock();
+    }
+
+    void unlock() {
+        lock.unlock();
+    }
+
+    /**
+     * Create a buffer entry from the stored row, or an empty one if the field has no value yet.
+     *
+     * @param responseId The ID of the response
+     * @param field The field
+     * @param stored The stored value, or null
+     * @return A clean buffer entry
+     */
+    static BufferedFieldValue load(Long responseId, FormField field, FieldValue stored) {
+        if (stored == null) {
+            return new BufferedFieldValue(responseId, field, null);
+        }
+        BufferedFieldValue entry = new BufferedFieldValue(responseId, field, stored.getId());
+        entry.value = stored.getValue();
+        entry.fencingToken = stored.getFencingToken();
+        entry.revision = stored.getRevision();
+        entry.lastUpdated = stored.getLastUpdated();
+        entry.lastUpdatedBy = stored.getLastUpdatedBy() != null ? UserDto.fromUser(stored.getLastUpdatedBy()) : null;
+        return entry;
+    }
+
+    boolean acceptsFencingToken(long token) {
+        return fencingToken == null || token >= fencingToken;
+    }
+
+    /**
+     * Apply an accepted write.
+     */
+    void apply(FormField field, FieldValueRecord record, UserDto user) {
+        this.fieldName = field.getFieldName();
+        this.fieldType = field.getFieldType().toString();
+        this.value = record.getValue();
+        this.fencingToken = record.getFencingToken();
+        this.revision = record.getRevision();
+        this.lastUpdated = record.getUpdatedAt();
+        this.lastUpdatedBy = user;
+        this.version++;
+        this.lastTouched = System.currentTimeMillis();
+    }
+
+    boolean isDirty() {
+        return version > flushedVersion;
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    Long getFencingToken() {
+        return fencingToken;
+    }
+
+    long getRevision() {
+        return revision;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Record that the write with the given version (and every earlier one) is in the database.
+     */
+    void markFlushed(long flushed) {
+        this.flushedVersion = Math.max(flushedVersion, flushed);
+    }
+
+    boolean isIdleSince(long cutoff) {
+        return lastTouched < cutoff;
+    }
+
+    boolean isEvicted() {
+        return evicted;
+    }
+
+    void evict() {
+        this.evicted = true;
+    }
+
+    Long getResponseId() {
+        return responseId;
+    }
+
+    Long getFormId() {
+        return formId;
+    }
+
+    Long getFieldId() {
+        return fieldId;
+    }
+
+    FieldValueRecord toRecord() {
+        return new FieldValueRecord(responseId, fieldId, value, fencingToken, revision,
+                lastUpdatedBy != null ? lastUpdatedBy.getId() : null, lastUpdated);
+    }
+
+    FieldValueResponse toResponse() {
+        return FieldValueResponse.builder()
+                .id(id)
+                .fieldId(fieldId)
+                .fieldName(fieldName)
+                .fieldType(fieldType)
+                .value(value)
+                .revision(revision)
+                .lastUpdated(lastUpdated)
+                .lastUpdatedBy(lastUpdatedBy)
+                .build();
+    }
+
+    /**
+     * The value as it will be once an accepted write has been applied.
+     */
+    FieldValueResponse toResponse(FormField field, FieldValueRecord record, UserDto user) {
+        return FieldValueResponse.builder()
+                .id(id)
+                .fieldId(fieldId)
+                .fieldName(field.getFieldName())
+                .fieldType(field.getFieldType().toString())
+                .value(record.getValue())
+                .revision(record.getRevision())
+                .lastUpdated(record.getUpdatedAt())
+                .lastUpdatedBy(user)
+                .build();
+    }
+}
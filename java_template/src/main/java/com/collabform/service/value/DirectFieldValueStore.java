@@ -0,0 +1,107 @@
+package com.collabform.service.value;
+
+import com.collabform.dto.TextEdit;
+import com.collabform.dto.response.FieldValueResponse;
+import com.collabform.model.FieldValue;
+import com.collabform.model.FormField;
+import com.collabform.model.FormResponse;
+import com.collabform.model.User;
+import com.collabform.repository.FieldValueRepository;
+import com.collabform.utils.TextPatches;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Value store that writes every update straight to the field_values table in the caller's
+ * transaction. The fencing check runs under a row lock, so it holds across nodes.
+ */
+@Component
+@ConditionalOnProperty(name = "collabform.values.store", havingValue = "direct")
+@RequiredArgsConstructor
+public class DirectFieldValueStore implements FieldValueStore {
+
+    private final FieldValueRepository fieldValueRepository;
+    private final TextMergeEngine mergeEngine;
+
+    @Override
+    public FieldValueChange write(FormResponse response, FormField field, User user, String value, long fencingToken) {
+        return write(response, field, user, fencingToken, null, value, null);
+    }
+
+    @Override
+    public FieldValueChange patch(FormResponse response, FormField field, User user, long baseRevision,
+                                  List<TextEdit> edits, Long fencingToken) {
+        return write(response, field, user, fencingToken, baseRevision, null, edits);
+    }
+
+    // Writes either a whole value or, when edits are given, a patch against baseRevision
+    private FieldValueChange write(FormResponse response, FormField field, User user, Long fencingToken,
+                                   Long baseRevision, String value, List<TextEdit> edits) {
+        // Get or create a field value, holding its row so the fencing check and the write are atomic
+        FieldValue fieldValue = fieldValueRepository.findForUpdate(response.getId(), field.getId())
+                .orElseGet(() -> FieldValue.builder()
+                        .response(response)
+                        .field(field)
+                        .build());
+
+        // Reject writes from a holder whose lock has since been stolen or expired and re-acquired
+        if (fencingToken != null && !fieldValue.acceptsFencingToken(fencingToken)) {
+            throw new IllegalStateException("Field has been updated under a newer lock");
+        }
+
+        String previous = fieldValue.getValue();
+        long previousRevision = fieldValue.getRevision();
+        List<TextEdit> applied = edits != null
+                ? mergeEngine.rebase(response.getId(), field.getId(), baseRevision, previousRevision, edits)
+                : null;
+        String next = applied != null ? TextPatches.apply(previous, applied) : value;
+        if (applied == null) {
+            applied = TextPatches.diff(previous, next);
+        }
+        if (!FieldValue.fitsColumn(next)) {
+            throw new IllegalArgumentException("Value must be at most " + FieldValue.MAX_VALUE_LENGTH + " characters");
+        }
+
+        fieldValue.setValue(next, user);
+        if (fencingToken != null) {
+            fieldValue.setFencingToken(fencingToken);
+        }
+        FieldValueResponse saved = FieldValueResponse.fromEntity(fieldValueRepository.save(fieldValue));
+        if (field.getFieldType().isText()) {
+            recordAfterCommit(response.getId(), field.getId(), saved.getRevision(), previous, applied);
+        }
+        return new FieldValueChange(saved, previousRevision, applied);
+    }
+
+    // A revision that is rolled back must not become the base of later merges
+    private void recordAfterCommit(Long responseId, Long fieldId, long revision, String previous, List<TextEdit> edits) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            mergeEngine.record(responseId, fieldId, revision, previous, edits);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                mergeEngine.record(responseId, fieldId, revision, previous, edits);
+            }
+        });
+    }
+
+    @Override
+    public List<FieldValueResponse> getValues(Long responseId) {
+        return fieldValueRepository.findWithFieldsByResponseId(responseId).stream()
+                .map(FieldValueResponse::fromEntity)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void flush(Long responseId) {
+        // Every write is already in the table
+    }
+}
@@ -0,0 +1,142 @@
+package com.collabform.service.value;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes batches of field value records to the field_values table with JDBC batching:
+ * one batched UPDATE for all records, then one batched INSERT for the values that had no row yet.
+ */
+@Component
+@DependsOn("idSequenceMigration")
+@ConditionalOnProperty(name = "collabform.values.store", havingValue = "write-behind", matchIfMissing = true)
+@Slf4j
+public class FieldValueBatchWriter {
+
+    private static final String UPDATE_SQL =
+            "UPDATE field_values SET \"value\" = ?, last_updated = ?, last_updated_by = ?, fencing_token = ?, revision = ? " +
+            "WHERE response_id = ? AND field_id = ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO field_values (\"value\", last_updated, last_updated_by, fencing_token, revision, response_id, field_id, id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, %s)";
+
+    private static final String ID_SEQUENCE = "field_values_seq";
+
+    private static final String TARGET_COUNT_SQL =
+            "SELECT (SELECT COUNT(*) FROM form_responses WHERE id = ?) + (SELECT COUNT(*) FROM form_fields WHERE id = ?)";
+
+    // Both statements take the same parameters in the same order
+    private static final ParameterizedPreparedStatementSetter<FieldValueRecord> RECORD_SETTER = (ps, record) -> {
+        ps.setString(1, record.getValue());
+        ps.setTimestamp(2, Timestamp.valueOf(record.getUpdatedAt()));
+        ps.setObject(3, record.getUpdatedBy(), Types.BIGINT);
+        ps.setObject(4, record.getFencingToken(), Types.BIGINT);
+        ps.setLong(5, record.getRevision() != null ? record.getRevision() : 0);
+        ps.setLong(6, record.getResponseId());
+        ps.setLong(7, record.getFieldId());
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String insertSql;
+
+    public FieldValueBatchWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                 EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Each row takes a whole sequence value, so it never collides with a block Hibernate has reserved
+        Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        this.insertSql = String.format(INSERT_SQL,
+                dialect.getSequenceSupport().getSelectSequenceNextValString(ID_SEQUENCE));
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Write records, at most one per (responseId, fieldId), in a single transaction.
+     * If the batch fails, each record is retried on its own; a record that violates a constraint
+     * is dropped only if its field or response has been deleted in the meantime, and otherwise
+     * stays unsettled like any other failed record.
+     *
+     * @param records The records to write
+     * @return The records that are now settled, written or dropped
+     */
+    public List<FieldValueRecord> write(List<FieldValueRecord> records) {
+        if (records.isEmpty()) {
+            return records;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeBatch(records));
+            return records;
+        } catch (DataAccessException ex) {
+            log.warn("Batched write of {} field values failed, retrying one by one", records.size(), ex);
+        }
+
+        List<FieldValueRecord> settled = new ArrayList<>(records.size());
+        for (FieldValueRecord record : records) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> writeBatch(List.of(record)));
+                settled.add(record);
+            } catch (DataIntegrityViolationException ex) {
+                if (isOrphaned(record)) {
+                    log.warn("Dropping field value for a deleted field or response: responseId={}, fieldId={}",
+                            record.getResponseId(), record.getFieldId());
+                    settled.add(record);
+                } else {
+                    log.error("Field value violates a constraint and is kept for retry: responseId={}, fieldId={}",
+                            record.getResponseId(), record.getFieldId(), ex);
+                }
+            } catch (DataAccessException ex) {
+                log.error("Could not write field value: responseId={}, fieldId={}",
+                        record.getResponseId(), record.getFieldId(), ex);
+            }
+        }
+        return settled;
+    }
+
+    // Whether the row the record belongs to can no longer exist
+    private boolean isOrphaned(FieldValueRecord record) {
+        try {
+            Integer targets = jdbcTemplate.queryForObject(TARGET_COUNT_SQL, Integer.class,
+                    record.getResponseId(), record.getFieldId());
+            return targets != null && targets < 2;
+        } catch (DataAccessException ex) {
+            log.warn("Could not check the field and response of a field value: responseId={}, fieldId={}",
+                    record.getResponseId(), record.getFieldId(), ex);
+            return false;
+        }
+    }
+
+    private void writeBatch(List<FieldValueRecord> records) {
+        // Relies on the driver reporting row counts for batched statements, as H2 and PostgreSQL do
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, records, records.size(), RECORD_SETTER)[0];
+
+        List<FieldValueRecord> inserts = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            if (updated[i] == 0) {
+                inserts.add(records.get(i));
+            }
+        }
+
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(insertSql, inserts, inserts.size(), RECORD_SETTER);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.collabform.service.value;
+
+import com.collabform.dto.TextEdit;
+import com.collabform.dto.response.FieldValueResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Result of a field value write: the value as now stored, and the patch that turns the
+ * previous revision into it, for broadcasting to collaborators.
+ */
+@Getter
+@AllArgsConstructor
+public class FieldValueChange {
+
+    private final FieldValueResponse value;
+
+    // The revision the patch applies to; value.revision is the one it produces
+    private final long baseRevision;
+
+    private final List<TextEdit> edits;
+}
@@ -0,0 +1,251 @@
+package com.collabform.service.value;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of accepted field value writes, so a write can be acknowledged before
+ * it reaches the database and still survive a crash.
+ * Records are JSON lines in numbered segment files. Concurrent appends share one fsync
+ * (group commit): whichever writer forces the file first covers everything appended so far.
+ * The buffer rotates to a new segment before each flush and deletes the older segments once
+ * everything in them has been written to the database.
+ */
+@Component
+@ConditionalOnProperty(name = "collabform.values.store", havingValue = "write-behind", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class FieldValueJournal {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${collabform.values.journal.dir:./data/field-value-journal}")
+    private String directory;
+
+    @Value("${collabform.values.journal.fsync:true}")
+    private boolean fsync;
+
+    // Lock order: syncLock before writeLock. Both are held across file I/O, so they are locks
+    // rather than monitors, which would pin a virtual thread to its carrier
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    private Path journalDir;
+    private FileChannel channel;
+    private long segment;
+    private long appended;
+    private long appendedAtRotation;
+    private volatile long synced;
+
+    /**
+     * Read the records left by the previous run and start a new segment.
+     * The old segments stay on disk until {@link #deleteSegmentsBefore(long)} is called.
+     *
+     * @return The recovered records in the order they were accepted
+     */
+    public List<FieldValueRecord> open() {
+        try {
+            journalDir = Paths.get(directory);
+            Files.createDirectories(journalDir);
+
+            List<FieldValueRecord> records = new ArrayList<>();
+            long lastSegment = 0;
+            for (Path file : listSegments()) {
+                lastSegment = Math.max(lastSegment, segmentNumber(file));
+                readSegment(file, records);
+            }
+
+            writeLock.lock();
+            try {
+                segment = lastSegment;
+                channel = openSegment(++segment);
+            } finally {
+                writeLock.unlock();
+            }
+            return records;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not open field value journal in " + directory, ex);
+        }
+    }
+
+    /**
+     * Append a record. When this returns the record is on disk (unless fsync is disabled).
+     *
+     * @param record The accepted write
+     */
+    public void append(FieldValueRecord record) {
+        ByteBuffer line;
+        try {
+            line = ByteBuffer.wrap((objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Could not encode field value record", ex);
+        }
+
+        long sequence;
+        try {
+            writeLock.lock();
+            try {
+                while (line.hasRemaining()) {
+                    channel.write(line);
+                }
+                sequence = ++appended;
+            } finally {
+                writeLock.unlock();
+            }
+            if (fsync && synced < sequence) {
+                syncLock.lock();
+                try {
+                    if (synced < sequence) {
+                        force();
+                    }
+                } finally {
+                    syncLock.unlock();
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not append to field value journal", ex);
+        }
+    }
+
+    /**
+     * Switch appends to a new segment, unless nothing was appended to the current one.
+     *
+     * @return The number of the current segment; every record appended before this call is in an older one
+     */
+    public long rotate() {
+        syncLock.lock();
+        try {
+            force();
+            writeLock.lock();
+            try {
+                if (appended == appendedAtRotation) {
+                    return segment;
+                }
+                appendedAtRotation = appended;
+                channel.close();
+                channel = openSegment(++segment);
+                return segment;
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not rotate field value journal", ex);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Delete the segments whose records have all been written to the database.
+     *
+     * @param firstKept The number of the oldest segment to keep
+     */
+    public void deleteSegmentsBefore(long firstKept) {
+        try {
+            for (Path file : listSegments()) {
+                if (segmentNumber(file) < firstKept) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Could not delete flushed field value journal segments", ex);
+        }
+    }
+
+    /**
+     * Force and close the current segment.
+     */
+    public void close() {
+        syncLock.lock();
+        try {
+            force();
+            writeLock.lock();
+            try {
+                channel.close();
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (IOException ex) {
+            log.warn("Could not close field value journal", ex);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    // Caller holds syncLock
+    private void force() throws IOException {
+        FileChannel current;
+        long upTo;
+        writeLock.lock();
+        try {
+            current = channel;
+            upTo = appended;
+        } finally {
+            writeLock.unlock();
+        }
+        current.force(false);
+        synced = upTo;
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(journalDir.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted((a, b) -> Long.compare(segmentNumber(a), segmentNumber(b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private void readSegment(Path file, List<FieldValueRecord> records) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    records.add(objectMapper.readValue(line, FieldValueRecord.class));
+                } catch (JsonProcessingException ex) {
+                    // Only the tail of a segment can be torn, by a crash in the middle of an append
+                    log.warn("Skipping unreadable field value journal record in {}", file.getFileName());
+                }
+            }
+        }
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
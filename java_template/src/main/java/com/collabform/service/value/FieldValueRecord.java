@@ -0,0 +1,23 @@
+package com.collabform.service.value;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A single accepted field value write, as appended to the journal and flushed to field_values.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FieldValueRecord {
+    private Long responseId;
+    private Long fieldId;
+    private String value;
+    private Long fencingToken;
+    private Long revision;
+    private Long updatedBy;
+    private LocalDateTime updatedAt;
+}
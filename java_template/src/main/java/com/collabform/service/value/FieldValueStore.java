@@ -0,0 +1,68 @@
+package com.collabform.service.value;
+
+import com.collabform.dto.TextEdit;
+import com.collabform.dto.response.FieldValueResponse;
+import com.collabform.model.FormField;
+import com.collabform.model.FormResponse;
+import com.collabform.model.User;
+
+import java.util.List;
+
+/**
+ * Storage for the field values of form responses.
+ * The implementation is selected with {@code collabform.values.store}: {@code write-behind}
+ * (default) acknowledges writes from memory and a local journal and flushes them in batches,
+ * which suits a single node; {@code direct} writes every update in its own transaction and
+ * must be used when several nodes share the database.
+ */
+public interface FieldValueStore {
+
+    /**
+     * Write a field value under a fencing token.
+     *
+     * @param response The response the value belongs to
+     * @param field The field being written
+     * @param user The user making the update
+     * @param value The new value
+     * @param fencingToken The fencing token of the lock the write is made under
+     * @return The value as now stored, with the patch from the previous revision
+     * @throws IllegalArgumentException if the value is longer than the column allows
+     * @throws IllegalStateException if the value was already written under a newer lock
+     */
+    FieldValueChange write(FormResponse response, FormField field, User user, String value, long fencingToken);
+
+    /**
+     * Apply a text patch to a field value. A patch made against an older revision is merged
+     * with the writes since through the {@link TextMergeEngine}.
+     *
+     * @param response The response the value belongs to
+     * @param field The field being written
+     * @param user The user making the update
+     * @param baseRevision The revision the patch was made against
+     * @param edits The edits, in order
+     * @param fencingToken The fencing token of the lock the write is made under, or null for
+     *                     a merged write without a lock
+     * @return The value as now stored, with the patch from the previous revision
+     * @throws IllegalArgumentException if the patch does not fit the value, or the patched value is
+     *                                  longer than the column allows
+     * @throws IllegalStateException if the value was already written under a newer lock, or
+     *                               the patch can no longer be merged
+     */
+    FieldValueChange patch(FormResponse response, FormField field, User user, long baseRevision,
+                           List<TextEdit> edits, Long fencingToken);
+
+    /**
+     * Get the current values of a response, including writes that have not been flushed yet.
+     *
+     * @param responseId The ID of the response
+     * @return The field values, without lock information
+     */
+    List<FieldValueResponse> getValues(Long responseId);
+
+    /**
+     * Make every acknowledged write of a response visible in the field_values table.
+     *
+     * @param responseId The ID of the response
+     */
+    void flush(Long responseId);
+}
@@ -0,0 +1,152 @@
+package com.collabform.service.value;
+
+import com.collabform.dto.TextEdit;
+import com.collabform.utils.TextOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Merges concurrent text edits with operational transformation, so several users can edit the
+ * same text field without holding its lock.
+ * For each text field written through this node the engine keeps the operations of the latest
+ * revisions. A patch made against an older revision is transformed against every operation
+ * since, and then applies to the current value. Only the merged value is stored, which serves
+ * as the compacted snapshot; when the history no longer reaches back to a patch's base revision
+ * (it was trimmed, or other nodes wrote in the meantime) the patch is refused and the client
+ * sends its full value instead.
+ * <p>
+ * Value stores call into the engine while they hold the field, so the revisions it sees for a
+ * field arrive in order.
+ */
+@Component
+@Slf4j
+public class TextMergeEngine {
+
+    @Value("${collabform.text.history-size:100}")
+    private int historySize;
+
+    @Value("${collabform.text.history-idle-ms:600000}")
+    private long historyIdleMs;
+
+    // [responseId, fieldId] -> recent operations
+    private final Map<List<Long>, History> histories = new ConcurrentHashMap<>();
+
+    /**
+     * Rewrite a patch made against an older revision so that it applies to the current value.
+     *
+     * @param responseId The ID of the response
+     * @param fieldId The ID of the field
+     * @param baseRevision The revision the patch was made against
+     * @param currentRevision The revision of the current value
+     * @param edits The patch
+     * @return The patch against the current revision
+     * @throws IllegalArgumentException if the base revision is unknown or the patch does not fit it
+     * @throws IllegalStateException if the history does not reach back to the base revision
+     */
+    public List<TextEdit> rebase(Long responseId, Long fieldId, long baseRevision, long currentRevision,
+                                 List<TextEdit> edits) {
+        if (baseRevision == currentRevision) {
+            return edits;
+        }
+        if (baseRevision > currentRevision || baseRevision < 0) {
+            throw new IllegalArgumentException("Unknown base revision");
+        }
+
+        List<TextOperation> since = null;
+        History history = histories.get(List.of(responseId, fieldId));
+        if (history != null) {
+            since = history.since(baseRevision, currentRevision);
+        }
+        if (since == null) {
+            throw new IllegalStateException("Field value has changed, send the full value");
+        }
+
+        TextOperation operation = TextOperation.fromEdits(since.get(0).getBaseLength(), edits);
+        for (TextOperation concurrent : since) {
+            operation = TextOperation.transform(concurrent, operation);
+        }
+        return operation.toEdits();
+    }
+
+    /**
+     * Record a write to a text field.
+     *
+     * @param responseId The ID of the response
+     * @param fieldId The ID of the field
+     * @param revision The revision the write produced
+     * @param previous The value before the write
+     * @param edits The patch from the previous value to the new one
+     */
+    public void record(Long responseId, Long fieldId, long revision, String previous, List<TextEdit> edits) {
+        TextOperation operation = TextOperation.fromEdits(previous != null ? previous.length() : 0, edits);
+        histories.computeIfAbsent(List.of(responseId, fieldId), key -> new History())
+                .add(revision, operation, historySize);
+    }
+
+    /**
+     * Drop the histories of fields nobody has written for a while.
+     */
+    @Scheduled(fixedDelayString = "${collabform.text.history-sweep-ms:60000}")
+    public void sweepIdle() {
+        long cutoff = System.currentTimeMillis() - historyIdleMs;
+        int removed = 0;
+        for (Iterator<History> it = histories.values().iterator(); it.hasNext(); ) {
+            if (it.next().isIdleSince(cutoff)) {
+                it.remove();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            log.debug("Dropped {} idle text histories", removed);
+        }
+    }
+
+    /**
+     * Operations of consecutive revisions of one field, oldest first.
+     */
+    private static class History {
+        private final Deque<TextOperation> operations = new ArrayDeque<>();
+        private long lastRevision;
+        private volatile long lastTouched = System.currentTimeMillis();
+
+        synchronized void add(long revision, TextOperation operation, int limit) {
+            if (revision != lastRevision + 1) {
+                operations.clear(); // A gap: revisions were written elsewhere
+            }
+            operations.addLast(operation);
+            lastRevision = revision;
+            while (operations.size() > limit) {
+                operations.removeFirst();
+            }
+            lastTouched = System.currentTimeMillis();
+        }
+
+        /**
+         * @return The operations that produced revisions baseRevision + 1 to currentRevision,
+         *         or null if they are not all known
+         */
+        synchronized List<TextOperation> since(long baseRevision, long currentRevision) {
+            long firstRevision = lastRevision - operations.size() + 1;
+            if (lastRevision != currentRevision || baseRevision + 1 < firstRevision) {
+                return null;
+            }
+            List<TextOperation> result = new ArrayList<>(operations);
+            lastTouched = System.currentTimeMillis();
+            return result.subList((int) (baseRevision + 1 - firstRevision), result.size());
+        }
+
+        boolean isIdleSince(long cutoff) {
+            return lastTouched < cutoff;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.collabform.service.value;
+
+import com.collabform.cluster.FormOwnership;
+import com.collabform.cluster.FormOwnershipChangedEvent;
+import com.collabform.dto.TextEdit;
+import com.collabform.dto.UserDto;
+import com.collabform.dto.response.FieldValueResponse;
+import com.collabform.model.FieldValue;
+import com.collabform.model.FormField;
+import com.collabform.model.FormResponse;
+import com.collabform.model.User;
+import com.collabform.repository.FieldValueRepository;
+import com.collabform.utils.TextPatches;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Single-node value store that acknowledges a write once it is applied in memory and appended
+ * to the {@link FieldValueJournal}, and writes to field_values in the background. A write made in
+ * a transaction is applied and appended when the transaction commits; until then the field is held,
+ * so writes of one field are applied in the order they were accepted.
+ * Writes to the same field between two flushes coalesce, so a field rewritten many times per
+ * second costs one row write per flush interval. Reads overlay the unflushed values on the table.
+ * <p>
+ * The buffer is the authority for fencing tokens of the fields it holds, which is only sound
+ * while this node is the sole writer of the form: deployments with several nodes either shard
+ * forms across nodes ({@link FormOwnership}) or use the direct store.
+ */
+@Component
+@ConditionalOnProperty(name = "collabform.values.store", havingValue = "write-behind", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class WriteBehindFieldValueStore implements FieldValueStore {
+
+    private final FieldValueRepository fieldValueRepository;
+    private final FieldValueJournal journal;
+    private final FieldValueBatchWriter batchWriter;
+    private final TextMergeEngine mergeEngine;
+
+    @Value("${collabform.values.write-behind.idle-ms:60000}")
+    private long idleMs;
+
+    // responseId -> (fieldId -> value)
+    private final Map<Long, Map<Long, BufferedFieldValue>> valuesByResponse = new ConcurrentHashMap<>();
+
+    // Serializes flushes, so a value is never written by two flushes at once
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @PostConstruct
+    public void recoverJournal() {
+        List<FieldValueRecord> recovered = journal.open();
+        if (recovered.isEmpty()) {
+            return;
+        }
+
+        // Replay in acceptance order; later records win unless they carry an older token
+        Map<List<Long>, FieldValueRecord> latest = new LinkedHashMap<>();
+        for (FieldValueRecord record : recovered) {
+            latest.merge(List.of(record.getResponseId(), record.getFieldId()), record, (current, next) ->
+                    current.getFencingToken() != null && next.getFencingToken() != null
+                            && next.getFencingToken() < current.getFencingToken() ? current : next);
+        }
+
+        List<FieldValueRecord> records = new ArrayList<>(latest.values());
+        if (batchWriter.write(records).size() < records.size()) {
+            // Keep the journal so the next start can try again
+            throw new IllegalStateException("Could not replay the field value journal");
+        }
+        journal.deleteSegmentsBefore(journal.rotate());
+        log.info("Replayed {} field values from the journal", records.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushAll();
+        journal.close();
+    }
+
+    @Override
+    public FieldValueChange write(FormResponse response, FormField field, User user, String value, long fencingToken) {
+        return write(response, field, user, fencingToken, null, value, null);
+    }
+
+    @Override
+    public FieldValueChange patch(FormResponse response, FormField field, User user, long baseRevision,
+                                  List<TextEdit> edits, Long fencingToken) {
+        return write(response, field, user, fencingToken, baseRevision, null, edits);
+    }
+
+    // Writes either a whole value or, when edits are given, a patch against baseRevision
+    private FieldValueChange write(FormResponse response, FormField field, User user, Long fencingToken,
+                                   Long baseRevision, String value, List<TextEdit> edits) {
+        Map<Long, BufferedFieldValue> values = valuesFor(response.getId());
+        UserDto userDto = UserDto.fromUser(user);
+
+        while (true) {
+            BufferedFieldValue entry = values.get(field.getId());
+            if (entry == null) {
+                // Read outside the map, so no map bin stays locked while the database is queried
+                BufferedFieldValue loaded = BufferedFieldValue.load(response.getId(), field,
+                        fieldValueRepository.findByResponseIdAndFieldId(response.getId(), field.getId()).orElse(null));
+                entry = values.putIfAbsent(field.getId(), loaded);
+                if (entry == null) {
+                    entry = loaded;
+                }
+            }
+
+            entry.lock();
+            boolean handedOver = false;
+            try {
+                if (entry.isEvicted()) {
+                    continue; // Lost a race with eviction; load again
+                }
+                // Reject writes from a holder whose lock has since been stolen or expired and re-acquired
+                if (fencingToken != null && !entry.acceptsFencingToken(fencingToken)) {
+                    throw new IllegalStateException("Field has been updated under a newer lock");
+                }
+
+                String previous = entry.getValue();
+                long previousRevision = entry.getRevision();
+                List<TextEdit> applied = edits != null
+                        ? mergeEngine.rebase(response.getId(), field.getId(), baseRevision, previousRevision, edits)
+                        : null;
+                String next = applied != null ? TextPatches.apply(previous, applied) : value;
+                if (applied == null) {
+                    applied = TextPatches.diff(previous, next);
+                }
+                // The flush could never write it, after the write was acknowledged
+                if (!FieldValue.fitsColumn(next)) {
+                    throw new IllegalArgumentException("Value must be at most " + FieldValue.MAX_VALUE_LENGTH + " characters");
+                }
+
+                FieldValueRecord record = new FieldValueRecord(response.getId(), field.getId(), next,
+                        fencingToken != null ? fencingToken : entry.getFencingToken(), previousRevision + 1,
+                        user.getId(), LocalDateTime.now());
+                List<TextEdit> patch = applied;
+                BufferedFieldValue accepted = entry;
+                Runnable accept = () -> {
+                    journal.append(record);
+                    accepted.apply(field, record, userDto);
+                    if (field.getFieldType().isText()) {
+                        mergeEngine.record(response.getId(), field.getId(), record.getRevision(), previous, patch);
+                    }
+                };
+
+                if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                    // Applied once the caller's transaction commits, and not at all if it rolls back.
+                    // The entry stays held until then, so the next write of the field builds on this one
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            accept.run();
+                        }
+
+                        @Override
+                        public void afterCompletion(int status) {
+                            accepted.unlock();
+                        }
+                    });
+                    handedOver = true;
+                } else {
+                    accept.run();
+                }
+                return new FieldValueChange(entry.toResponse(field, record, userDto), previousRevision, applied);
+            } finally {
+                if (!handedOver) {
+                    entry.unlock();
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<FieldValueResponse> getValues(Long responseId) {
+        Map<Long, FieldValueResponse> byField = fieldValueRepository.findWithFieldsByResponseId(responseId).stream()
+                .map(FieldValueResponse::fromEntity)
+                .collect(Collectors.toMap(FieldValueResponse::getFieldId, v -> v, (a, b) -> a, LinkedHashMap::new));
+
+        Map<Long, BufferedFieldValue> values = valuesByResponse.get(responseId);
+        if (values != null) {
+            for (BufferedFieldValue entry : values.values()) {
+                FieldValueResponse buffered;
+                entry.lock();
+                try {
+                    if (!entry.isDirty()) {
+                        continue;
+                    }
+                    buffered = entry.toResponse();
+                } finally {
+                    entry.unlock();
+                }
+                FieldValueResponse stored = byField.get(buffered.getFieldId());
+                if (stored != null) {
+                    stored.setValue(buffered.getValue());
+                    stored.setRevision(buffered.getRevision());
+                    stored.setLastUpdated(buffered.getLastUpdated());
+                    stored.setLastUpdatedBy(buffered.getLastUpdatedBy());
+                } else {
+                    byField.put(buffered.getFieldId(), buffered);
+                }
+            }
+        }
+        return new ArrayList<>(byField.values());
+    }
+
+    @Override
+    public void flush(Long responseId) {
+        Map<Long, BufferedFieldValue> values = valuesByResponse.get(responseId);
+        if (values == null) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            if (!writeDirty(values.values())) {
+                throw new IllegalStateException("Could not save all field values, please try again");
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Write every unflushed value to the table, then drop the journal segments that are
+     * fully written and the entries that have been idle for a while.
+     * The interval is the coalescing window.
+     */
+    @Scheduled(fixedDelayString = "${collabform.values.write-behind.flush-ms:250}")
+    public void flushAll() {
+        flushLock.lock();
+        try {
+            // Writers hold their entry from append to apply, so every record in an older
+            // segment is visible once the entry is read below
+            long firstKept = journal.rotate();
+            List<BufferedFieldValue> entries = new ArrayList<>();
+            for (Map<Long, BufferedFieldValue> values : valuesByResponse.values()) {
+                entries.addAll(values.values());
+            }
+
+            if (writeDirty(entries)) {
+                journal.deleteSegmentsBefore(firstKept);
+            }
+            evictIdle(entries);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Hand off the forms another node serves now: write their values and drop them from memory,
+     * so the new owner reads them from the table. Entries that could not be written stay and are
+     * retried by the next flush.
+     */
+    @EventListener
+    public void onOwnershipChanged(FormOwnershipChangedEvent event) {
+        flushLock.lock();
+        try {
+            List<BufferedFieldValue> lost = new ArrayList<>();
+            for (Map<Long, BufferedFieldValue> values : valuesByResponse.values()) {
+                for (BufferedFieldValue entry : values.values()) {
+                    if (event.isLost(entry.getFormId())) {
+                        lost.add(entry);
+                    }
+                }
+            }
+            if (!writeDirty(lost)) {
+                log.warn("Could not write all values of forms handed to other nodes");
+            }
+            evict(lost, entry -> true);
+            log.debug("Handed off {} buffered field values", lost.size());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Write the dirty entries among the given ones in one batch.
+     *
+     * @return true if every dirty entry is now clean
+     */
+    private boolean writeDirty(Collection<BufferedFieldValue> entries) {
+        // Records are matched back to their entries by identity
+        Map<FieldValueRecord, BufferedFieldValue> entriesByRecord = new IdentityHashMap<>();
+        Map<FieldValueRecord, Long> versions = new IdentityHashMap<>();
+        List<FieldValueRecord> records = new ArrayList<>();
+        for (BufferedFieldValue entry : entries) {
+            entry.lock();
+            try {
+                if (entry.isDirty()) {
+                    FieldValueRecord record = entry.toRecord();
+                    records.add(record);
+                    entriesByRecord.put(record, entry);
+                    versions.put(record, entry.getVersion());
+                }
+            } finally {
+                entry.unlock();
+            }
+        }
+        if (records.isEmpty()) {
+            return true;
+        }
+
+        List<FieldValueRecord> settled = batchWriter.write(records);
+        for (FieldValueRecord record : settled) {
+            BufferedFieldValue entry = entriesByRecord.get(record);
+            entry.lock();
+            try {
+                entry.markFlushed(versions.get(record));
+            } finally {
+                entry.unlock();
+            }
+        }
+        if (settled.size() < records.size()) {
+            log.warn("{} of {} field values could not be flushed and will be retried",
+                    records.size() - settled.size(), records.size());
+            return false;
+        }
+        log.debug("Flushed {} field values", records.size());
+        return true;
+    }
+
+    private void evictIdle(List<BufferedFieldValue> entries) {
+        long cutoff = System.currentTimeMillis() - idleMs;
+        evict(entries, entry -> entry.isIdleSince(cutoff));
+    }
+
+    // Drops the clean entries that match the condition
+    private void evict(List<BufferedFieldValue> entries, Predicate<BufferedFieldValue> condition) {
+        List<BufferedFieldValue> evicted = new ArrayList<>();
+        for (BufferedFieldValue entry : entries) {
+            entry.lock();
+            try {
+                if (!entry.isDirty() && condition.test(entry)) {
+                    entry.evict();
+                    evicted.add(entry);
+                }
+            } finally {
+                entry.unlock();
+            }
+        }
+        for (BufferedFieldValue entry : evicted) {
+            Map<Long, BufferedFieldValue> values = valuesByResponse.get(entry.getResponseId());
+            if (values != null) {
+                values.remove(entry.getFieldId(), entry);
+            }
+        }
+    }
+
+    private Map<Long, BufferedFieldValue> valuesFor(Long responseId) {
+        return valuesByResponse.computeIfAbsent(responseId, id -> new ConcurrentHashMap<>());
+    }
+}
@@ -0,0 +1,245 @@
+package com.collabform.utils;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hierarchical hashed timing wheel for scheduling large numbers of short-lived timeouts.
+ * Scheduling and cancelling are O(1); a single daemon thread advances the wheel once per tick,
+ * cascading timeouts from the coarser levels down into the finer ones as their deadlines approach.
+ * Timeouts fire at most one tick after their deadline.
+ */
+@Slf4j
+public class HierarchicalTimingWheel implements AutoCloseable {
+
+    private final long tickNanos;
+    private final int wheelBits;
+    private final int wheelMask;
+    private final int levels;
+    private final long maxTicks;
+    private final Bucket[][] wheels;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long startNanos;
+    private final Thread worker;
+
+    private long currentTick;
+    private volatile boolean running = true;
+
+    /**
+     * Create and start a timing wheel.
+     *
+     * @param name Name of the worker thread
+     * @param tickMs Duration of a single tick in milliseconds
+     * @param wheelSize Number of buckets per level (rounded up to a power of two)
+     * @param levels Number of levels in the hierarchy
+     */
+    public HierarchicalTimingWheel(String name, long tickMs, int wheelSize, int levels) {
+        if (tickMs <= 0 || wheelSize < 2 || levels < 1) {
+            throw new IllegalArgumentException("Invalid timing wheel configuration");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.wheelBits = 32 - Integer.numberOfLeadingZeros(wheelSize - 1);
+        this.wheelMask = (1 << wheelBits) - 1;
+        this.levels = levels;
+        this.maxTicks = wheelBits * levels >= 62 ? Long.MAX_VALUE : (1L << (wheelBits * levels)) - 1;
+        this.wheels = new Bucket[levels][1 << wheelBits];
+        for (Bucket[] wheel : wheels) {
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = new Bucket();
+            }
+        }
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Schedule a task to run after the given delay.
+     *
+     * @param task The task to run on the wheel's worker thread
+     * @param delayMs Delay in milliseconds
+     * @return A handle that can be used to cancel the task
+     */
+    public Timeout schedule(Runnable task, long delayMs) {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs));
+        // Round up so a timeout never fires before its deadline
+        long deadlineTick = (deadlineNanos - startNanos + tickNanos - 1) / tickNanos;
+        Timeout timeout = new Timeout(task, deadlineTick);
+
+        lock.lock();
+        try {
+            place(timeout);
+        } finally {
+            lock.unlock();
+        }
+        return timeout;
+    }
+
+    /**
+     * Stop the worker thread. Pending timeouts are discarded.
+     */
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        List<Timeout> expired = new ArrayList<>();
+        while (running) {
+            long targetTick = (System.nanoTime() - startNanos) / tickNanos;
+
+            lock.lock();
+            try {
+                while (currentTick < targetTick) {
+                    currentTick++;
+                    cascade();
+                    wheels[0][(int) (currentTick & wheelMask)].drainTo(expired);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            for (Timeout timeout : expired) {
+                try {
+                    timeout.task.run();
+                } catch (Exception ex) {
+                    log.error("Timing wheel task failed", ex);
+                }
+            }
+            expired.clear();
+
+            long sleepNanos = startNanos + (targetTick + 1) * tickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Move the timeouts of every coarser bucket whose span starts at the current tick down to the finer levels.
+     * Must be called with the lock held.
+     */
+    private void cascade() {
+        List<Timeout> moved = new ArrayList<>();
+        for (int level = levels - 1; level >= 1; level--) {
+            long lowBitsMask = (1L << (wheelBits * level)) - 1;
+            if ((currentTick & lowBitsMask) == 0) {
+                int slot = (int) ((currentTick >>> (wheelBits * level)) & wheelMask);
+                wheels[level][slot].drainTo(moved);
+            }
+        }
+        for (Timeout timeout : moved) {
+            place(timeout);
+        }
+    }
+
+    /**
+     * Place a timeout in the bucket matching its remaining delay.
+     * Must be called with the lock held.
+     */
+    private void place(Timeout timeout) {
+        long deadline = Math.max(timeout.deadlineTick, currentTick + 1);
+        long remaining = deadline - currentTick;
+        if (remaining > maxTicks) {
+            // Park in the coarsest level; it is re-placed when that bucket cascades
+            deadline = currentTick + maxTicks;
+            remaining = maxTicks;
+        }
+
+        int level = 0;
+        while (level < levels - 1 && remaining >= (1L << (wheelBits * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) ((deadline >>> (wheelBits * level)) & wheelMask);
+        wheels[level][slot].add(timeout);
+    }
+
+    /**
+     * Handle to a scheduled task.
+     */
+    public final class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Cancel the task if it has not fired yet.
+         *
+         * @return true if the task was cancelled, false if it already fired or was cancelled
+         */
+        public boolean cancel() {
+            lock.lock();
+            try {
+                if (bucket == null) {
+                    return false;
+                }
+                bucket.remove(this);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Intrusive doubly-linked list of timeouts sharing a slot.
+     */
+    private static final class Bucket {
+        private Timeout head;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        void drainTo(List<Timeout> target) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.bucket = null;
+                timeout.prev = null;
+                timeout.next = null;
+                target.add(timeout);
+                timeout = next;
+            }
+            head = null;
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.collabform.utils;
 
-import com.collabform.service.FormResponseService;
+import com.collabform.security.PasswordHashingExecutor;
+import com.collabform.service.access.AccessDecisionCache;
+import com.collabform.service.presence.PresenceRegistry;
+import com.collabform.service.schema.FormSchemaCache;
+import com.collabform.service.search.FormSearchIndex;
+import com.collabform.websocket.TopicBroadcaster;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Configuration;
@@ -9,6 +14,8 @@ import org.springframework.scheduling.annotation.Scheduled;
 
 /**
  * Scheduled tasks for maintenance operations.
+ * Expired field locks are released by the lock store's timing wheel,
+ * so no periodic lock cleanup is needed here.
  */
 @Configuration
 @EnableScheduling
@@ -16,20 +23,12 @@ import org.springframework.scheduling.annotation.Scheduled;
 @Slf4j
 public class ScheduledTasks {
 
-    private final FormResponseService formResponseService;
-
-    /**
-     * Clean up expired locks every 10 seconds.
-     * This helps ensure that abandoned locks do not prevent other users
-     * from editing fields indefinitely.
-     */
-    @Scheduled(fixedRate = 10000) // 10 seconds
-    public void cleanupExpiredLocks() {
-        int count = formResponseService.cleanupExpiredLocks();
-        if (count > 0) {
-            log.info("Cleaned up {} expired locks", count);
-        }
-    }
+    private final AccessDecisionCache accessDecisionCache;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final TopicBroadcaster topicBroadcaster;
+    private final PresenceRegistry presenceRegistry;
+    private final FormSearchIndex formSearchIndex;
+    private final FormSchemaCache formSchemaCache;
 
     /**
      * Log system status every hour.
@@ -38,6 +37,23 @@ public class ScheduledTasks {
     @Scheduled(fixedRate = 3600000) // 1 hour
     public void logSystemStatus() {
         log.info("Collaborative Form System running normally");
+        log.info("Access decision cache: size={}, hits={}, misses={}, evictions={}, invalidations={}",
+                accessDecisionCache.size(), accessDecisionCache.getHitCount(), accessDecisionCache.getMissCount(),
+                accessDecisionCache.getEvictionCount(), accessDecisionCache.getInvalidationCount());
+        log.info("Password hashing: queued={}, active={}, completed={}, rejected={}, avg={}ms, max={}ms",
+                passwordHashingExecutor.getQueueDepth(), passwordHashingExecutor.getActiveCount(),
+                passwordHashingExecutor.getCompletedCount(), passwordHashingExecutor.getRejectedCount(),
+                String.format("%.1f", passwordHashingExecutor.getAverageMillis()),
+                String.format("%.1f", passwordHashingExecutor.getMaxMillis()));
+        log.info("WebSocket outbound: sessions={}, queued={}, maxDepth={}, coalesced={}, dropped={}, disconnected={}",
+                topicBroadcaster.getSessionCount(), topicBroadcaster.getQueueDepths(),
+                topicBroadcaster.getMaxQueueDepth(), topicBroadcaster.getCoalescedCount(),
+                topicBroadcaster.getDroppedCount(), topicBroadcaster.getDisconnectedCount());
+        log.info("Presence: forms={}, sessions={}", presenceRegistry.getFormCount(), presenceRegistry.getSessionCount());
+        log.info("Form search: forms={}, searches={}, avg={}ms", formSearchIndex.getFormCount(),
+                formSearchIndex.getSearchCount(), String.format("%.2f", formSearchIndex.getAverageMillis()));
+        log.info("Form schema cache: size={}, hits={}, misses={}, evictions={}", formSchemaCache.size(),
+                formSchemaCache.getHitCount(), formSchemaCache.getMissCount(), formSchemaCache.getEvictionCount());
         // Additional health checks could be added here
     }
-}
\ No newline at end of file
+}
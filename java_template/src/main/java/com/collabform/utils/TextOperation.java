@@ -0,0 +1,265 @@
+package com.collabform.utils;
+
+import com.collabform.dto.TextEdit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Operation on a text for operational transformation. An operation walks the whole base text as a
+ * sequence of components: retain n characters, insert a string, or delete n characters. Components
+ * are stored as positive integers (retain), strings (insert) and negative integers (delete), and
+ * are kept canonical: no two adjacent components of the same kind, and an insert always precedes
+ * a delete at the same position.
+ */
+public final class TextOperation {
+
+    private final List<Object> components = new ArrayList<>();
+    private int baseLength;
+    private int targetLength;
+
+    /**
+     * Build the operation equivalent to a patch.
+     *
+     * @param baseLength Length of the text the patch applies to
+     * @param edits The edits, in order
+     * @return The operation
+     * @throws IllegalArgumentException if an edit falls outside the text
+     */
+    public static TextOperation fromEdits(int baseLength, List<TextEdit> edits) {
+        TextOperation result = new TextOperation().retain(baseLength);
+        for (TextEdit edit : edits) {
+            int length = result.targetLength;
+            int position = edit.getPosition();
+            int deleteCount = edit.getDeleteCount();
+            if (position < 0 || deleteCount < 0 || position > length - deleteCount) {
+                throw new IllegalArgumentException("Patch does not match the current value");
+            }
+            TextOperation step = new TextOperation()
+                    .retain(position)
+                    .insert(edit.getInsert())
+                    .delete(deleteCount)
+                    .retain(length - position - deleteCount);
+            result = compose(result, step);
+        }
+        return result;
+    }
+
+    /**
+     * Convert the operation to a patch of sequential splices.
+     *
+     * @return The edits, empty if the operation changes nothing
+     */
+    public List<TextEdit> toEdits() {
+        List<TextEdit> edits = new ArrayList<>();
+        int position = 0;
+        for (int i = 0; i < components.size(); i++) {
+            Object component = components.get(i);
+            if (isRetain(component)) {
+                position += (Integer) component;
+                continue;
+            }
+            String insert = "";
+            int deleteCount = 0;
+            if (component instanceof String) {
+                insert = (String) component;
+                if (i + 1 < components.size() && isDelete(components.get(i + 1))) {
+                    deleteCount = -(Integer) components.get(++i);
+                }
+            } else {
+                deleteCount = -(Integer) component;
+            }
+            edits.add(new TextEdit(position, deleteCount, insert));
+            position += insert.length();
+        }
+        return edits;
+    }
+
+    /**
+     * Combine two consecutive operations into one with the same effect.
+     *
+     * @param first The operation applied first
+     * @param second The operation applied to the result of the first
+     * @return The combined operation
+     */
+    public static TextOperation compose(TextOperation first, TextOperation second) {
+        if (first.targetLength != second.baseLength) {
+            throw new IllegalArgumentException("Operations cannot be composed");
+        }
+        TextOperation result = new TextOperation();
+        Cursor a = new Cursor(first);
+        Cursor b = new Cursor(second);
+        Object op1 = a.next();
+        Object op2 = b.next();
+        while (op1 != null || op2 != null) {
+            if (isDelete(op1)) {
+                result.delete(-(Integer) op1);
+                op1 = a.next();
+                continue;
+            }
+            if (op2 instanceof String) {
+                result.insert((String) op2);
+                op2 = b.next();
+                continue;
+            }
+            if (op1 == null || op2 == null) {
+                throw new IllegalStateException("Operations do not cover the same text");
+            }
+
+            if (isRetain(op1) && isRetain(op2)) {
+                int n1 = (Integer) op1;
+                int n2 = (Integer) op2;
+                result.retain(Math.min(n1, n2));
+                op1 = n1 > n2 ? (Object) (n1 - n2) : a.next();
+                op2 = n2 > n1 ? (Object) (n2 - n1) : b.next();
+            } else if (op1 instanceof String && isDelete(op2)) {
+                String s1 = (String) op1;
+                int n2 = -(Integer) op2;
+                op1 = s1.length() > n2 ? s1.substring(n2) : a.next();
+                op2 = n2 > s1.length() ? (Object) (s1.length() - n2) : b.next();
+            } else if (op1 instanceof String) {
+                String s1 = (String) op1;
+                int n2 = (Integer) op2;
+                result.insert(s1.length() > n2 ? s1.substring(0, n2) : s1);
+                op1 = s1.length() > n2 ? s1.substring(n2) : a.next();
+                op2 = n2 > s1.length() ? (Object) (n2 - s1.length()) : b.next();
+            } else {
+                // Retain in the first, delete in the second
+                int n1 = (Integer) op1;
+                int n2 = -(Integer) op2;
+                result.delete(Math.min(n1, n2));
+                op1 = n1 > n2 ? (Object) (n1 - n2) : a.next();
+                op2 = n2 > n1 ? (Object) (n1 - n2) : b.next();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Transform an operation against a concurrent one made on the same text, so that it can be
+     * applied after it. Where both insert at the same position, the earlier operation's text
+     * comes first.
+     *
+     * @param earlier The operation already applied
+     * @param later The concurrent operation to transform
+     * @return The later operation, rewritten to apply to the result of the earlier one
+     */
+    public static TextOperation transform(TextOperation earlier, TextOperation later) {
+        if (earlier.baseLength != later.baseLength) {
+            throw new IllegalArgumentException("Operations do not apply to the same text");
+        }
+        TextOperation result = new TextOperation();
+        Cursor a = new Cursor(earlier);
+        Cursor b = new Cursor(later);
+        Object op1 = a.next();
+        Object op2 = b.next();
+        while (op1 != null || op2 != null) {
+            if (op1 instanceof String) {
+                result.retain(((String) op1).length());
+                op1 = a.next();
+                continue;
+            }
+            if (op2 instanceof String) {
+                result.insert((String) op2);
+                op2 = b.next();
+                continue;
+            }
+            if (op1 == null || op2 == null) {
+                throw new IllegalStateException("Operations do not cover the same text");
+            }
+
+            int n1 = Math.abs((Integer) op1);
+            int n2 = Math.abs((Integer) op2);
+            int length = Math.min(n1, n2);
+            if (isRetain(op1) && isRetain(op2)) {
+                result.retain(length);
+            } else if (isRetain(op1)) {
+                // Only the later operation deletes this range
+                result.delete(length);
+            }
+            // Where the earlier operation deleted the range, there is nothing left to retain or delete
+            op1 = n1 > length ? (Object) (Integer.signum((Integer) op1) * (n1 - length)) : a.next();
+            op2 = n2 > length ? (Object) (Integer.signum((Integer) op2) * (n2 - length)) : b.next();
+        }
+        return result;
+    }
+
+    public int getBaseLength() {
+        return baseLength;
+    }
+
+    public int getTargetLength() {
+        return targetLength;
+    }
+
+    private TextOperation retain(int n) {
+        if (n <= 0) {
+            return this;
+        }
+        baseLength += n;
+        targetLength += n;
+        int last = components.size() - 1;
+        if (last >= 0 && isRetain(components.get(last))) {
+            components.set(last, (Integer) components.get(last) + n);
+        } else {
+            components.add(n);
+        }
+        return this;
+    }
+
+    private TextOperation insert(String text) {
+        if (text == null || text.isEmpty()) {
+            return this;
+        }
+        targetLength += text.length();
+        int last = components.size() - 1;
+        if (last >= 0 && components.get(last) instanceof String) {
+            components.set(last, components.get(last) + text);
+        } else if (last >= 0 && isDelete(components.get(last))) {
+            // Keep inserts ahead of deletes at the same position
+            if (last >= 1 && components.get(last - 1) instanceof String) {
+                components.set(last - 1, components.get(last - 1) + text);
+            } else {
+                components.add(last, text);
+            }
+        } else {
+            components.add(text);
+        }
+        return this;
+    }
+
+    private TextOperation delete(int n) {
+        if (n <= 0) {
+            return this;
+        }
+        baseLength += n;
+        int last = components.size() - 1;
+        if (last >= 0 && isDelete(components.get(last))) {
+            components.set(last, (Integer) components.get(last) - n);
+        } else {
+            components.add(-n);
+        }
+        return this;
+    }
+
+    private static boolean isRetain(Object component) {
+        return component instanceof Integer && (Integer) component > 0;
+    }
+
+    private static boolean isDelete(Object component) {
+        return component instanceof Integer && (Integer) component < 0;
+    }
+
+    private static final class Cursor {
+        private final List<Object> components;
+        private int index;
+
+        Cursor(TextOperation operation) {
+            this.components = operation.components;
+        }
+
+        Object next() {
+            return index < components.size() ? components.get(index++) : null;
+        }
+    }
+}
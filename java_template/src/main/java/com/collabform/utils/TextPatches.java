@@ -0,0 +1,91 @@
+package com.collabform.utils;
+
+import com.collabform.dto.TextEdit;
+
+import java.util.List;
+
+/**
+ * Helpers for applying and producing {@link TextEdit} patches of text field values.
+ */
+public final class TextPatches {
+
+    // Rough size of the JSON around one edit, {"position":..,"deleteCount":..,"insert":""}
+    private static final int EDIT_OVERHEAD = 48;
+
+    private TextPatches() {
+    }
+
+    /**
+     * Apply a patch to a text.
+     *
+     * @param base The text the patch was made against (null is treated as empty)
+     * @param edits The edits, in order
+     * @return The patched text
+     * @throws IllegalArgumentException if an edit falls outside the text
+     */
+    public static String apply(String base, List<TextEdit> edits) {
+        StringBuilder text = new StringBuilder(base != null ? base : "");
+        for (TextEdit edit : edits) {
+            int position = edit.getPosition();
+            int deleteCount = edit.getDeleteCount();
+            if (position < 0 || deleteCount < 0 || position > text.length() - deleteCount) {
+                throw new IllegalArgumentException("Patch does not match the current value");
+            }
+            text.replace(position, position + deleteCount, edit.getInsert() != null ? edit.getInsert() : "");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Describe the change from one text to another as a single splice, found by trimming
+     * their common prefix and suffix.
+     *
+     * @param from The old text (null is treated as empty)
+     * @param to The new text (null is treated as empty)
+     * @return The patch, empty if the texts are equal
+     */
+    public static List<TextEdit> diff(String from, String to) {
+        String a = from != null ? from : "";
+        String b = to != null ? to : "";
+
+        int limit = Math.min(a.length(), b.length());
+        int prefix = 0;
+        while (prefix < limit && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
+        }
+        // Never split a surrogate pair
+        if (prefix > 0 && Character.isHighSurrogate(a.charAt(prefix - 1))) {
+            prefix--;
+        }
+        if (prefix == a.length() && prefix == b.length()) {
+            return List.of();
+        }
+
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && a.charAt(a.length() - 1 - suffix) == b.charAt(b.length() - 1 - suffix)) {
+            suffix++;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(a.charAt(a.length() - suffix))) {
+            suffix--;
+        }
+
+        return List.of(new TextEdit(prefix, a.length() - prefix - suffix,
+                b.substring(prefix, b.length() - suffix)));
+    }
+
+    /**
+     * Check whether sending a patch is cheaper than sending the whole text.
+     *
+     * @param edits The patch
+     * @param text The text after the patch
+     * @return true if the patch is smaller
+     */
+    public static boolean isSmallerThan(List<TextEdit> edits, String text) {
+        long size = 0;
+        for (TextEdit edit : edits) {
+            size += EDIT_OVERHEAD + (edit.getInsert() != null ? edit.getInsert().length() : 0);
+        }
+        return size < (text != null ? text.length() : 0);
+    }
+}
@@ -0,0 +1,48 @@
+package com.collabform.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe token bucket: holds up to {@code capacity} tokens and refills continuously at
+ * {@code refillPerSecond}, so it admits bursts of up to the capacity and the refill rate on average.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * Create a full bucket.
+     *
+     * @param capacity Maximum number of tokens (the burst size)
+     * @param refillPerSecond Tokens added per second
+     */
+    public TokenBucket(double capacity, double refillPerSecond) {
+        if (capacity < 1 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid token bucket configuration");
+        }
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Take one token if one is available.
+     *
+     * @return true if a token was taken
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * refillPerNano);
+        lastRefillNanos = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+}
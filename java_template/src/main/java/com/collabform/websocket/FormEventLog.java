@@ -0,0 +1,176 @@
+package com.collabform.websocket;
+
+import com.collabform.dto.websocket.WebSocketMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Numbers the events broadcast to each form topic and keeps the most recent ones, so that a client
+ * that reconnects can be sent only the events it missed.
+ * Sequence numbers increase by one per event, though a slow subscriber may not receive every one:
+ * its outbound queue drops a field update that a later full value of the field replaces, so a gap
+ * does not mean an event was missed. A form's log starts from the clock (milliseconds x 1000),
+ * so numbers keep increasing across restarts and after an idle log has been dropped, and a client
+ * never mistakes events of an earlier log for new ones. In relay mode each node numbers only the
+ * events it publishes, so a topic carries the interleaved sequences of several nodes and resumed
+ * subscriptions are sent a snapshot instead of a replay.
+ * <p>
+ * Events are handed to the sender while the form's log is held, so subscribers receive them in
+ * sequence order and a replay cannot interleave with live events. Sending blocks on the network,
+ * so the log is guarded by a {@link ReentrantLock} rather than a monitor, which would pin a
+ * virtual thread to its carrier.
+ */
+@Component
+@Slf4j
+public class FormEventLog {
+
+    @Value("${collabform.events.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${collabform.events.idle-ms:600000}")
+    private long idleMs;
+
+    // formId -> recent events
+    private final Map<Long, FormLog> logs = new ConcurrentHashMap<>();
+
+    /**
+     * Assign a message the next sequence number of its form, keep it for replay and send it.
+     *
+     * @param formId The ID of the form
+     * @param message The message to log; its sequence is set here
+     * @param send Sends the message to the form's subscribers
+     */
+    public void publish(Long formId, WebSocketMessage message, Runnable send) {
+        while (true) {
+            FormLog formLog = logFor(formId);
+            formLog.lock.lock();
+            try {
+                if (formLog.evicted) {
+                    continue; // Lost a race with the sweep; start a new log
+                }
+                formLog.append(message);
+                send.run();
+                return;
+            } finally {
+                formLog.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Send the events of a form that follow a sequence number.
+     *
+     * @param formId The ID of the form
+     * @param after The last sequence number the client has seen
+     * @param send Sends one event to the client
+     * @return false if some of the events are no longer kept, so the client needs a snapshot
+     */
+    public boolean replay(Long formId, long after, Consumer<WebSocketMessage> send) {
+        FormLog formLog = logs.get(formId);
+        if (formLog == null) {
+            return false;
+        }
+        formLog.lock.lock();
+        try {
+            List<WebSocketMessage> missed = formLog.evicted ? null : formLog.since(after);
+            if (missed == null) {
+                return false;
+            }
+            missed.forEach(send);
+            return true;
+        } finally {
+            formLog.lock.unlock();
+        }
+    }
+
+    /**
+     * Get the sequence number of the latest event of a form.
+     *
+     * @param formId The ID of the form
+     * @return The sequence number; later events of the form are numbered above it
+     */
+    public long currentSequence(Long formId) {
+        while (true) {
+            FormLog formLog = logFor(formId);
+            formLog.lock.lock();
+            try {
+                if (!formLog.evicted) {
+                    return formLog.last;
+                }
+            } finally {
+                formLog.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Drop the logs of forms without events for a while.
+     */
+    @Scheduled(fixedDelayString = "${collabform.events.sweep-ms:60000}")
+    public void sweepIdle() {
+        long cutoff = System.currentTimeMillis() - idleMs;
+        logs.forEach((formId, formLog) -> {
+            formLog.lock.lock();
+            try {
+                if (formLog.lastAppended >= cutoff) {
+                    return;
+                }
+                formLog.evicted = true;
+            } finally {
+                formLog.lock.unlock();
+            }
+            logs.remove(formId, formLog);
+            log.debug("Dropped idle event log: formId={}", formId);
+        });
+    }
+
+    private FormLog logFor(Long formId) {
+        return logs.computeIfAbsent(formId, id -> new FormLog(bufferSize));
+    }
+
+    /**
+     * Ring buffer of the latest events of one form; guarded by its lock.
+     */
+    private static class FormLog {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final WebSocketMessage[] events;
+        private long last = System.currentTimeMillis() * 1000;
+        private int count;
+        private long lastAppended = System.currentTimeMillis();
+        private boolean evicted;
+
+        FormLog(int capacity) {
+            this.events = new WebSocketMessage[capacity];
+        }
+
+        void append(WebSocketMessage message) {
+            message.setSequence(++last);
+            events[(int) (last % events.length)] = message;
+            count = Math.min(count + 1, events.length);
+            lastAppended = System.currentTimeMillis();
+        }
+
+        /**
+         * @return The events numbered above {@code after}, or null if they are not all kept
+         */
+        List<WebSocketMessage> since(long after) {
+            if (after > last || after < last - count) {
+                return null;
+            }
+            List<WebSocketMessage> result = new ArrayList<>((int) (last - after));
+            for (long sequence = after + 1; sequence <= last; sequence++) {
+                result.add(events[(int) (sequence % events.length)]);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.collabform.websocket;
+
+import com.collabform.cluster.ClusterNode;
+import com.collabform.cluster.FormOwnership;
+import com.collabform.cluster.FormOwnershipChangedEvent;
+import com.collabform.dto.websocket.RedirectMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps form collaboration on the node that owns the form. A subscription to the topic of a form
+ * served by another node is not registered; the subscriber is sent a {@link RedirectMessage} with
+ * the owner's URL instead, and messages sent to such a form are dropped. When forms move to
+ * another node, their subscribers here are redirected the same way.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FormOwnerInterceptor implements ExecutorChannelInterceptor {
+
+    private static final Pattern FORM_TOPIC_PATTERN = Pattern.compile("/topic/form/(\\d+)");
+    private static final Pattern FORM_APP_PATTERN = Pattern.compile("/app/form/(\\d+)/.*");
+
+    private final FormOwnership formOwnership;
+    private final TopicBroadcaster topicBroadcaster;
+
+    // sessionId -> (subscriptionId -> formId) of the form topic subscriptions on this node
+    private final Map<String, Map<String, Long>> subscriptions = new ConcurrentHashMap<>();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null || !formOwnership.isEnabled()) {
+            return message;
+        }
+        String sessionId = accessor.getSessionId();
+
+        switch (accessor.getCommand()) {
+            case SUBSCRIBE:
+                Long formId = formIdOf(FORM_TOPIC_PATTERN, accessor.getDestination());
+                if (formId == null) {
+                    return message;
+                }
+                if (!formOwnership.isLocal(formId)) {
+                    redirect(sessionId, accessor.getSubscriptionId(), formId, formOwnership.ownerOf(formId));
+                    return null;
+                }
+                subscriptions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                        .put(accessor.getSubscriptionId(), formId);
+                return message;
+            case SEND:
+                Long target = formIdOf(FORM_APP_PATTERN, accessor.getDestination());
+                if (target != null && !formOwnership.isLocal(target)) {
+                    log.debug("Dropped message for a form served by another node: sessionId={}, formId={}",
+                            sessionId, target);
+                    return null;
+                }
+                return message;
+            case UNSUBSCRIBE:
+                Map<String, Long> forms = subscriptions.get(sessionId);
+                if (forms != null) {
+                    forms.remove(accessor.getSubscriptionId());
+                }
+                return message;
+            case DISCONNECT:
+                subscriptions.remove(sessionId);
+                return message;
+            default:
+                return message;
+        }
+    }
+
+    /**
+     * Redirect the subscribers of forms this node no longer serves.
+     */
+    @EventListener
+    public void onOwnershipChanged(FormOwnershipChangedEvent event) {
+        subscriptions.forEach((sessionId, forms) -> forms.forEach((subscriptionId, formId) -> {
+            if (event.isLost(formId) && forms.remove(subscriptionId, formId)) {
+                redirect(sessionId, subscriptionId, formId, event.ownerOf(formId));
+            }
+        }));
+    }
+
+    private void redirect(String sessionId, String subscriptionId, Long formId, ClusterNode owner) {
+        topicBroadcaster.sendToSession(sessionId, subscriptionId, "/topic/form/" + formId,
+                RedirectMessage.create(formId, owner.getId(), owner.getUrl()));
+        log.debug("Redirected form subscriber: sessionId={}, formId={}, owner={}", sessionId, formId, owner.getId());
+    }
+
+    private static Long formIdOf(Pattern pattern, String destination) {
+        if (destination == null) {
+            return null;
+        }
+        Matcher matcher = pattern.matcher(destination);
+        return matcher.matches() ? Long.valueOf(matcher.group(1)) : null;
+    }
+}
@@ -0,0 +1,75 @@
+package com.collabform.websocket;
+
+import com.collabform.dto.websocket.RosterMessage;
+import com.collabform.model.User;
+import com.collabform.service.access.AccessDecision;
+import com.collabform.service.access.AccessDecisionCache;
+import com.collabform.service.presence.PresenceRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Adds form topic subscribers to the {@link PresenceRegistry} and sends each of them the form's
+ * roster. This happens once the broker has registered the subscription, so the subscriber also
+ * receives every presence change announced after the roster was taken. Users without access to
+ * the form never join its roster.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PresenceInterceptor implements ExecutorChannelInterceptor {
+
+    private static final Pattern FORM_TOPIC_PATTERN = Pattern.compile("/topic/form/(\\d+)");
+
+    private final TopicBroadcaster topicBroadcaster;
+    private final AccessDecisionCache accessDecisionCache;
+    // Looked up lazily: the registry broadcasts through the messaging template, which is built from the WebSocket configuration
+    private final ObjectProvider<PresenceRegistry> presenceRegistry;
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception failure) {
+        if (failure != null || !(handler instanceof AbstractBrokerMessageHandler)) {
+            return;
+        }
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        if (accessor.getCommand() != StompCommand.SUBSCRIBE || accessor.getDestination() == null) {
+            return;
+        }
+        Matcher matcher = FORM_TOPIC_PATTERN.matcher(accessor.getDestination());
+        if (!matcher.matches() || !(accessor.getUser() instanceof Authentication)
+                || !(((Authentication) accessor.getUser()).getPrincipal() instanceof User)) {
+            return;
+        }
+
+        Long formId = Long.parseLong(matcher.group(1));
+        User user = (User) ((Authentication) accessor.getUser()).getPrincipal();
+        if (!hasAccess(user, formId)) {
+            log.debug("Not adding subscriber without access to presence: sessionId={}, formId={}",
+                    accessor.getSessionId(), formId);
+            return;
+        }
+        RosterMessage roster = presenceRegistry.getObject()
+                .join(accessor.getSessionId(), accessor.getSubscriptionId(), formId, user);
+        topicBroadcaster.sendToSession(accessor.getSessionId(), accessor.getSubscriptionId(),
+                accessor.getDestination(), roster);
+    }
+
+    private boolean hasAccess(User user, Long formId) {
+        return user.isAdmin() || accessDecisionCache.get(formId, user.getId())
+                .map(AccessDecision::isAccessible)
+                .orElse(false);
+    }
+}
@@ -0,0 +1,347 @@
+package com.collabform.websocket;
+
+import com.collabform.dto.websocket.FieldUpdateMessage;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded outbound queue of one WebSocket session. Senders only enqueue; frames are written by a
+ * single drain task at a time on the broadcaster's executor, so a client that reads slowly delays
+ * nobody but itself.
+ * <p>
+ * When frames pile up, those that no longer matter are discarded first:
+ * <ul>
+ *     <li>a typing preview replaces the pending preview of the same user and field, is discarded
+ *     when a committed update of the field by that user follows it, and is dropped if it waited
+ *     too long;</li>
+ *     <li>a committed field update carrying the full value replaces the pending updates of the same
+ *     field, patches included: they are contained in the full value, and a patch must not be sent
+ *     without the update it was based on. A patch never replaces anything. The sequence numbers
+ *     of replaced updates are never delivered, which clients must not take for missed events;</li>
+ *     <li>on overflow, pending previews are dropped.</li>
+ * </ul>
+ * Everything else (events, lock changes, the STOMP handler's own frames) is committed. Only when
+ * committed frames would have to be dropped, or a write has been stuck for longer than the send
+ * time limit while they wait, is the session closed; the client then resumes from its last sequence.
+ */
+@Slf4j
+class SessionOutbox extends WebSocketSessionDecorator {
+
+    private final Executor executor;
+    private final Limits limits;
+    private final Stats stats;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock
+    private final Deque<Entry> queue = new ArrayDeque<>();
+    // key -> the queued entries with that key, in queue order
+    private final Map<List<Object>, Deque<Entry>> pending = new HashMap<>();
+    private long queuedBytes;
+    private int maxDepth;
+    private boolean draining;
+    private boolean closed;
+
+    private volatile long writeStartedAt;
+
+    SessionOutbox(WebSocketSession delegate, Executor executor, Limits limits, Stats stats) {
+        super(delegate);
+        this.executor = executor;
+        this.limits = limits;
+        this.stats = stats;
+    }
+
+    /**
+     * Queue a frame written by the STOMP handler; such frames are always committed.
+     */
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        enqueue(new Entry(message, null, false, null, false));
+    }
+
+    /**
+     * Queue a frame of a form topic subscription.
+     *
+     * @param frame The encoded frame
+     * @param subscriptionId The subscription the frame is for
+     * @param payload The message in the frame, to decide whether it may be coalesced or dropped
+     */
+    void offer(WebSocketMessage<?> frame, String subscriptionId, Object payload) {
+        FieldUpdateMessage update = payload instanceof FieldUpdateMessage ? (FieldUpdateMessage) payload : null;
+        if (update == null || update.getFieldId() == null || update.getUserId() == null) {
+            enqueue(new Entry(frame, null, false, null, false));
+            return;
+        }
+        // Several users may type into a merged text field at once, so previews are kept per user
+        List<Object> previewKey = List.of(subscriptionId, update.getFieldId(), update.getUserId(), "typing");
+        if (update.isTemporary()) {
+            enqueue(new Entry(frame, previewKey, true, null, true));
+            return;
+        }
+        List<Object> valueKey = List.of(subscriptionId, update.getFieldId());
+        // Only an update carrying the full value makes the previous ones redundant
+        enqueue(new Entry(frame, valueKey, update.getEdits() == null, previewKey, false));
+    }
+
+    /**
+     * @return The number of frames waiting to be written
+     */
+    int getQueueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The largest number of frames that have waited at once
+     */
+    int getMaxQueueDepth() {
+        lock.lock();
+        try {
+            return maxDepth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close(CloseStatus status) throws IOException {
+        discard();
+        super.close(status);
+    }
+
+    /**
+     * Drop the queue once the connection is gone.
+     */
+    void discard() {
+        lock.lock();
+        try {
+            closed = true;
+            queue.clear();
+            pending.clear();
+            queuedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(Entry entry) {
+        boolean startDrain = false;
+        String closeReason = null;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (entry.key != null) {
+                if (entry.replaces) {
+                    supersede(entry.key);
+                }
+                pending.computeIfAbsent(entry.key, key -> new ArrayDeque<>()).addLast(entry);
+            }
+            if (entry.staleKey != null) {
+                // A committed update makes its author's preview of the field stale
+                supersede(entry.staleKey);
+            }
+            queue.addLast(entry);
+            queuedBytes += entry.size;
+
+            if (isOverLimit()) {
+                dropPreviews();
+            }
+            if (isOverLimit()) {
+                closeReason = "outbound queue full (" + queue.size() + " frames, " + queuedBytes + " bytes)";
+            } else if (!entry.preview && isWriteStalled()) {
+                closeReason = "write blocked for more than " + limits.getSendTimeLimitMs() + "ms";
+            } else {
+                maxDepth = Math.max(maxDepth, queue.size());
+                if (!draining) {
+                    draining = true;
+                    startDrain = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (closeReason != null) {
+            closeSlowSession(closeReason);
+        } else if (startDrain) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException ex) {
+                // Shutting down
+                discard();
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Entry entry;
+            lock.lock();
+            try {
+                entry = nextEntry();
+                if (entry == null) {
+                    draining = false;
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            writeStartedAt = System.currentTimeMillis();
+            try {
+                getDelegate().sendMessage(entry.message);
+            } catch (IOException | RuntimeException ex) {
+                log.debug("Could not write to WebSocket session: sessionId={}", getId(), ex);
+                discard();
+                return;
+            } finally {
+                writeStartedAt = 0;
+            }
+        }
+    }
+
+    private Entry nextEntry() {
+        long previewCutoff = System.currentTimeMillis() - limits.getTypingMaxAgeMs();
+        Entry entry;
+        while ((entry = queue.pollFirst()) != null) {
+            queuedBytes -= entry.size;
+            unlink(entry);
+            if (entry.preview && entry.queuedAt < previewCutoff) {
+                stats.dropped.increment();
+                continue;
+            }
+            return entry;
+        }
+        return null;
+    }
+
+    private void supersede(List<Object> key) {
+        Deque<Entry> previous = pending.remove(key);
+        if (previous == null) {
+            return;
+        }
+        for (Entry entry : previous) {
+            queue.remove(entry);
+            queuedBytes -= entry.size;
+            stats.coalesced.increment();
+        }
+    }
+
+    // Removes an entry that left the queue from the entries pending under its key
+    private void unlink(Entry entry) {
+        if (entry.key == null) {
+            return;
+        }
+        Deque<Entry> entries = pending.get(entry.key);
+        if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+            pending.remove(entry.key);
+        }
+    }
+
+    private void dropPreviews() {
+        for (Iterator<Entry> it = queue.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.preview) {
+                it.remove();
+                unlink(entry);
+                queuedBytes -= entry.size;
+                stats.dropped.increment();
+            }
+        }
+    }
+
+    private boolean isOverLimit() {
+        // A single frame is always accepted, however large
+        return queue.size() > 1
+                && (queue.size() > limits.getQueueCapacity() || queuedBytes > limits.getBufferSize());
+    }
+
+    private boolean isWriteStalled() {
+        long started = writeStartedAt;
+        return started != 0 && System.currentTimeMillis() - started > limits.getSendTimeLimitMs();
+    }
+
+    private void closeSlowSession(String reason) {
+        discard();
+        stats.disconnected.increment();
+        log.warn("Closing slow WebSocket session: sessionId={}, reason={}", getId(), reason);
+        // Closing writes a close frame, which may block on the same connection, so not on the sender's thread
+        try {
+            executor.execute(() -> {
+                try {
+                    getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+                } catch (IOException | RuntimeException ex) {
+                    log.debug("Could not close WebSocket session: sessionId={}", getId(), ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            log.debug("Could not close WebSocket session: sessionId={}", getId());
+        }
+    }
+
+    /**
+     * Bounds of a session's queue.
+     */
+    @Value
+    static class Limits {
+        int queueCapacity;
+        int bufferSize;
+        long sendTimeLimitMs;
+        long typingMaxAgeMs;
+    }
+
+    /**
+     * Counters shared by the queues of all sessions.
+     */
+    static class Stats {
+        final LongAdder coalesced = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final LongAdder disconnected = new LongAdder();
+    }
+
+    /**
+     * A queued frame. {@code key} groups the frames that replace each other, {@code replaces} tells
+     * whether this one replaces the frames pending under its key, and {@code staleKey} identifies
+     * the preview a committed update makes stale.
+     */
+    private static final class Entry {
+        private final WebSocketMessage<?> message;
+        private final List<Object> key;
+        private final boolean replaces;
+        private final List<Object> staleKey;
+        private final boolean preview;
+        private final int size;
+        private final long queuedAt = System.currentTimeMillis();
+
+        Entry(WebSocketMessage<?> message, List<Object> key, boolean replaces, List<Object> staleKey,
+              boolean preview) {
+            this.message = message;
+            this.key = key;
+            this.replaces = replaces;
+            this.staleKey = staleKey;
+            this.preview = preview;
+            this.size = message.getPayloadLength();
+        }
+    }
+}
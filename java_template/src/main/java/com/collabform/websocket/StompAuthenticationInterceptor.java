@@ -0,0 +1,78 @@
+package com.collabform.websocket;
+
+import com.collabform.model.User;
+import com.collabform.security.PrincipalCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+
+/**
+ * Authenticates STOMP sessions. The JWT is checked once, in the {@code Authorization} header of the
+ * CONNECT frame, and the user becomes the principal of the session; connections without a valid
+ * token are refused. Every later message of the session carries that principal, which is put in the
+ * security context while the message is handled, so handlers get the current user without parsing
+ * a token or loading the user again.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StompAuthenticationInterceptor implements ExecutorChannelInterceptor {
+
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final PrincipalCache principalCache;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT) {
+            return message;
+        }
+
+        String header = accessor.getFirstNativeHeader(AUTHORIZATION_HEADER);
+        User user = null;
+        if (header != null && header.startsWith(BEARER_PREFIX)) {
+            user = principalCache.resolve(header.substring(BEARER_PREFIX.length())).orElse(null);
+        }
+        if (user == null) {
+            log.debug("Refused unauthenticated WebSocket connection: sessionId={}", accessor.getSessionId());
+            throw new BadCredentialsException("A valid bearer token is required to connect");
+        }
+
+        // The session keeps the user of its CONNECT frame and adds it to all of its messages
+        accessor.setUser(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        // Not forwarded to an external broker in relay mode
+        accessor.removeNativeHeader(AUTHORIZATION_HEADER);
+        log.debug("Authenticated WebSocket connection: sessionId={}, userId={}", accessor.getSessionId(), user.getId());
+        return message;
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        Principal principal = SimpMessageHeaderAccessor.getUser(message.getHeaders());
+        if (principal instanceof Authentication) {
+            SecurityContextHolder.getContext().setAuthentication((Authentication) principal);
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        SecurityContextHolder.clearContext();
+    }
+}
@@ -0,0 +1,207 @@
+package com.collabform.websocket;
+
+import com.collabform.dto.response.FieldValueResponse;
+import com.collabform.dto.websocket.SnapshotMessage;
+import com.collabform.model.User;
+import com.collabform.service.FormResponseService;
+import com.collabform.service.access.AccessDecision;
+import com.collabform.service.access.AccessDecisionCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resumes form topic subscriptions. A client that reconnects subscribes with a {@code resume-from}
+ * header holding the last sequence number it saw; once the broker has registered the subscription
+ * it is sent the events it missed, or a {@link SnapshotMessage} of the form's values if those
+ * events are no longer kept. Every subscription to a form topic, resumed or not, is refused
+ * unless the user has access to the form, so its events and snapshots never reach anyone else.
+ * <p>
+ * In relay mode every node numbers the events it publishes itself, so a node's log does not hold
+ * the events other nodes sent to the topic, and a resumed subscription always gets a snapshot.
+ * The relay forwards the subscription to the broker asynchronously, so it is sent with a receipt
+ * request and the snapshot is read once the broker's RECEIPT arrives on the outbound channel,
+ * after which every later event reaches the subscriber. The interceptor is therefore registered
+ * on both client channels.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SubscriptionResumeInterceptor implements ExecutorChannelInterceptor {
+
+    public static final String RESUME_HEADER = "resume-from";
+
+    // Prefix of the receipts requested here rather than by the client, whose RECEIPT is not forwarded
+    private static final String RECEIPT_PREFIX = "resume-";
+
+    private static final Pattern FORM_TOPIC_PATTERN = Pattern.compile("/topic/form/(\\d+)");
+
+    private final FormEventLog eventLog;
+    private final TopicBroadcaster topicBroadcaster;
+    private final AccessDecisionCache accessDecisionCache;
+    // Looked up lazily: the service depends on the messaging template, which is built from the WebSocket configuration
+    private final ObjectProvider<FormResponseService> formResponseService;
+
+    // "simple" (in-process broker) or "relay" (external STOMP broker)
+    @Value("${collabform.broker.mode:simple}")
+    private String brokerMode;
+
+    // [sessionId, receiptId] -> subscription waiting for the broker to register it (relay mode)
+    private final Map<List<String>, PendingResume> pending = new ConcurrentHashMap<>();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
+        if (accessor.getCommand() == StompCommand.RECEIPT) {
+            return onReceipt(message, accessor);
+        }
+        if (accessor.getCommand() == StompCommand.DISCONNECT && accessor.getSessionId() != null) {
+            pending.keySet().removeIf(key -> key.get(0).equals(accessor.getSessionId()));
+            return message;
+        }
+        if (accessor.getCommand() != StompCommand.SUBSCRIBE || accessor.getDestination() == null) {
+            return message;
+        }
+        Matcher matcher = FORM_TOPIC_PATTERN.matcher(accessor.getDestination());
+        if (!matcher.matches()) {
+            return message;
+        }
+
+        Long formId = Long.parseLong(matcher.group(1));
+        if (!hasAccess(accessor, formId)) {
+            log.debug("Refused form subscription without access: sessionId={}, formId={}",
+                    accessor.getSessionId(), formId);
+            throw new AccessDeniedException("You do not have access to this form");
+        }
+        if (accessor.getFirstNativeHeader(RESUME_HEADER) == null || !isRelay()) {
+            return message;
+        }
+
+        // Wait for the broker to confirm the subscription, asking for a receipt unless the client did
+        String receipt = accessor.getReceipt();
+        boolean requested = receipt == null;
+        if (requested) {
+            receipt = RECEIPT_PREFIX + UUID.randomUUID();
+        }
+        pending.put(List.of(accessor.getSessionId(), receipt), new PendingResume(formId, accessor.getSessionId(),
+                accessor.getSubscriptionId(), accessor.getDestination(), requested));
+        if (!requested) {
+            return message;
+        }
+        StompHeaderAccessor withReceipt = StompHeaderAccessor.wrap(message);
+        withReceipt.setReceipt(receipt);
+        return MessageBuilder.createMessage(message.getPayload(), withReceipt.getMessageHeaders());
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception failure) {
+        // The relay only forwards the subscription; it is resumed when the broker's receipt arrives
+        if (failure != null || !(handler instanceof AbstractBrokerMessageHandler) || isRelay()) {
+            return;
+        }
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        String resumeFrom = accessor.getFirstNativeHeader(RESUME_HEADER);
+        if (accessor.getCommand() != StompCommand.SUBSCRIBE || resumeFrom == null || accessor.getDestination() == null) {
+            return;
+        }
+        Matcher matcher = FORM_TOPIC_PATTERN.matcher(accessor.getDestination());
+        if (!matcher.matches()) {
+            return;
+        }
+
+        long after;
+        try {
+            after = Long.parseLong(resumeFrom.trim());
+        } catch (NumberFormatException ex) {
+            log.debug("Ignoring invalid resume-from header: {}", resumeFrom);
+            return;
+        }
+
+        Long formId = Long.parseLong(matcher.group(1));
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        String destination = accessor.getDestination();
+
+        boolean replayed = eventLog.replay(formId, after,
+                event -> topicBroadcaster.sendToSession(sessionId, subscriptionId, destination, event));
+        if (replayed) {
+            log.debug("Resumed form subscription: sessionId={}, formId={}, after={}", sessionId, formId, after);
+            return;
+        }
+        sendSnapshot(formId, sessionId, subscriptionId, destination);
+    }
+
+    // A receipt from the relayed broker: a pending subscription is registered and gets its snapshot
+    private Message<?> onReceipt(Message<?> message, StompHeaderAccessor accessor) {
+        if (accessor.getSessionId() == null || accessor.getReceiptId() == null) {
+            return message;
+        }
+        PendingResume resume = pending.remove(List.of(accessor.getSessionId(), accessor.getReceiptId()));
+        if (resume == null) {
+            return message;
+        }
+        sendSnapshot(resume.getFormId(), resume.getSessionId(), resume.getSubscriptionId(), resume.getDestination());
+        // The client did not ask for this receipt
+        return resume.isReceiptRequested() ? null : message;
+    }
+
+    private void sendSnapshot(Long formId, String sessionId, String subscriptionId, String destination) {
+        // Read the sequence first, so the snapshot includes at least every event up to it
+        long sequence = eventLog.currentSequence(formId);
+        try {
+            List<FieldValueResponse> values = formResponseService.getObject().getFormSnapshot(formId);
+            topicBroadcaster.sendToSession(sessionId, subscriptionId, destination,
+                    SnapshotMessage.create(formId, sequence, values));
+            log.debug("Sent snapshot to resuming subscriber: sessionId={}, formId={}", sessionId, formId);
+        } catch (IllegalArgumentException ex) {
+            log.debug("Could not send snapshot: formId={}, reason={}", formId, ex.getMessage());
+        }
+    }
+
+    private boolean isRelay() {
+        return "relay".equalsIgnoreCase(brokerMode);
+    }
+
+    private boolean hasAccess(StompHeaderAccessor accessor, Long formId) {
+        if (!(accessor.getUser() instanceof Authentication)
+                || !(((Authentication) accessor.getUser()).getPrincipal() instanceof User)) {
+            return false;
+        }
+        User user = (User) ((Authentication) accessor.getUser()).getPrincipal();
+        return user.isAdmin() || accessDecisionCache.get(formId, user.getId())
+                .map(AccessDecision::isAccessible)
+                .orElse(false);
+    }
+
+    @lombok.Value
+    private static class PendingResume {
+        Long formId;
+        String sessionId;
+        String subscriptionId;
+        String destination;
+        boolean receiptRequested;
+    }
+}
@@ -0,0 +1,271 @@
+package com.collabform.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans broadcasts out to topic subscribers while encoding each message only once.
+ * The simple broker converts and STOMP-encodes a message separately for every subscriber;
+ * here the payload is serialized once and the MESSAGE frame is encoded once per distinct
+ * subscription ID (clients usually all use the same one), and the same immutable frame is
+ * written to every session.
+ * <p>
+ * Subscriptions are read from the simple broker's registry, so subscribe, unsubscribe and
+ * disconnect handling stay with the broker. Sessions are captured by a handler decorator that
+ * gives each one a bounded {@link SessionOutbox}, shared with the STOMP handler's own writes.
+ * Senders only enqueue, and each outbox is written by its own task, so a slow client never holds
+ * up a broadcast to the others. Typing previews and superseded field updates are coalesced or
+ * dropped for clients that fall behind; with encode-once broadcasting disabled the broker's frames
+ * cannot be told apart and are all treated as committed.
+ */
+@Component
+public class TopicBroadcaster {
+
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<SimpleBrokerMessageHandler> simpleBroker;
+    private final StompEncoder stompEncoder = new StompEncoder();
+    private final AtomicLong messageIds = new AtomicLong();
+
+    // sessionId -> session with its outbound queue
+    private final Map<String, SessionOutbox> sessions = new ConcurrentHashMap<>();
+    private final SessionOutbox.Stats outboundStats = new SessionOutbox.Stats();
+    private SessionOutbox.Limits outboundLimits;
+    private ExecutorService outboundExecutor;
+
+    @Value("${collabform.websocket.encode-once:true}")
+    private boolean encodeOnce;
+
+    @Value("${collabform.websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${collabform.websocket.send-buffer-size:524288}")
+    private int sendBufferSize;
+
+    @Value("${collabform.websocket.outbound.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${collabform.websocket.outbound.typing-max-age-ms:2000}")
+    private long typingMaxAgeMs;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    public TopicBroadcaster(ObjectMapper objectMapper, ObjectProvider<SimpleBrokerMessageHandler> simpleBroker) {
+        this.objectMapper = objectMapper;
+        this.simpleBroker = simpleBroker;
+    }
+
+    @PostConstruct
+    public void start() {
+        outboundLimits = new SessionOutbox.Limits(queueCapacity, sendBufferSize, sendTimeLimitMs, typingMaxAgeMs);
+        if (virtualThreads) {
+            outboundExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-outbound-", 0).factory());
+            return;
+        }
+        // At most one task per session, and a blocked write must not wait for another session's thread
+        AtomicInteger counter = new AtomicInteger();
+        outboundExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ws-outbound-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        outboundExecutor.shutdownNow();
+    }
+
+    /**
+     * Wrap the application's WebSocket handler so that sessions are tracked for broadcasting.
+     *
+     * @param handler The handler to decorate
+     * @return The decorated handler
+     */
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new SessionTrackingHandler(handler);
+    }
+
+    /**
+     * Send a message to every subscriber of a destination.
+     *
+     * @param destination The topic destination
+     * @param payload The message to serialize as JSON
+     * @return false if encode-once broadcasting is unavailable and the caller should go through the broker
+     */
+    public boolean broadcast(String destination, Object payload) {
+        SimpleBrokerMessageHandler broker = encodeOnce ? simpleBroker.getIfAvailable() : null;
+        if (broker == null || !broker.isRunning()) {
+            return false;
+        }
+
+        SimpMessageHeaderAccessor lookup = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        lookup.setDestination(destination);
+        Message<byte[]> lookupMessage = MessageBuilder.createMessage(new byte[0], lookup.getMessageHeaders());
+        MultiValueMap<String, String> subscriptions = broker.getSubscriptionRegistry().findSubscriptions(lookupMessage);
+        if (subscriptions.isEmpty()) {
+            return true;
+        }
+
+        byte[] body = toJson(payload);
+        String messageId = "b-" + messageIds.incrementAndGet();
+        Map<String, TextMessage> frames = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : subscriptions.entrySet()) {
+            SessionOutbox session = sessions.get(entry.getKey());
+            if (session == null) {
+                continue;
+            }
+            for (String subscriptionId : entry.getValue()) {
+                TextMessage frame = frames.computeIfAbsent(subscriptionId,
+                        id -> encodeFrame(destination, id, messageId, body));
+                session.offer(frame, subscriptionId, payload);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Send a message to one subscription of one session.
+     *
+     * @param sessionId The WebSocket session ID
+     * @param subscriptionId The ID of the session's subscription
+     * @param destination The destination the subscription is for
+     * @param payload The message to serialize as JSON
+     * @return false if the session is gone
+     */
+    public boolean sendToSession(String sessionId, String subscriptionId, String destination, Object payload) {
+        SessionOutbox session = sessions.get(sessionId);
+        if (session == null) {
+            return false;
+        }
+        session.offer(encodeFrame(destination, subscriptionId, "s-" + messageIds.incrementAndGet(), toJson(payload)),
+                subscriptionId, payload);
+        return true;
+    }
+
+    /**
+     * @return The number of frames waiting to be written, per session ID
+     */
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new HashMap<>();
+        sessions.forEach((sessionId, session) -> depths.put(sessionId, session.getQueueDepth()));
+        return depths;
+    }
+
+    /**
+     * @return The largest number of frames that have waited for any open session
+     */
+    public int getMaxQueueDepth() {
+        return sessions.values().stream().mapToInt(SessionOutbox::getMaxQueueDepth).max().orElse(0);
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public long getCoalescedCount() {
+        return outboundStats.coalesced.sum();
+    }
+
+    public long getDroppedCount() {
+        return outboundStats.dropped.sum();
+    }
+
+    public long getDisconnectedCount() {
+        return outboundStats.disconnected.sum();
+    }
+
+    private byte[] toJson(Object payload) {
+        try {
+            return objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Could not serialize message", ex);
+        }
+    }
+
+    private TextMessage encodeFrame(String destination, String subscriptionId, String messageId, byte[] body) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setMessageId(messageId);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return new TextMessage(stompEncoder.encode(accessor.getMessageHeaders(), body));
+    }
+
+    /**
+     * Hands every callback the same outbox of a session, so broadcast writes and the STOMP
+     * handler's writes go through one queue and never interleave on the underlying connection.
+     */
+    private class SessionTrackingHandler extends WebSocketHandlerDecorator {
+
+        SessionTrackingHandler(WebSocketHandler delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+            SessionOutbox outbox = new SessionOutbox(session, outboundExecutor, outboundLimits, outboundStats);
+            sessions.put(session.getId(), outbox);
+            super.afterConnectionEstablished(outbox);
+        }
+
+        @Override
+        public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+            super.handleMessage(outboxOf(session), message);
+        }
+
+        @Override
+        public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+            super.handleTransportError(outboxOf(session), exception);
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+            SessionOutbox outbox = sessions.remove(session.getId());
+            if (outbox != null) {
+                outbox.discard();
+            }
+            super.afterConnectionClosed(outbox != null ? outbox : session, closeStatus);
+        }
+
+        private WebSocketSession outboxOf(WebSocketSession session) {
+            SessionOutbox outbox = sessions.get(session.getId());
+            return outbox != null ? outbox : session;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.collabform.websocket.relay;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.BufferingStompDecoder;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Minimal STOMP broker for development and tests, standing in for an external broker (RabbitMQ,
+ * ActiveMQ) so that several application nodes can be run against one relay target without
+ * installing anything. It keeps topic subscriptions in memory and copies every SEND to the
+ * subscribers of its destination; there are no queues, acknowledgements, transactions or
+ * authentication. Not meant for production.
+ */
+@Component
+@ConditionalOnProperty(name = "collabform.broker.embedded.enabled", havingValue = "true")
+@Slf4j
+public class EmbeddedStompBroker {
+
+    private static final int MAX_FRAME_SIZE = 1024 * 1024;
+
+    @Value("${collabform.broker.embedded.port:61613}")
+    private int port;
+
+    private final StompEncoder encoder = new StompEncoder();
+    private final AtomicLong messageIds = new AtomicLong();
+
+    // destination -> subscriptions
+    private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+
+    /**
+     * Bound before the relay starts, so its first connection attempt succeeds.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "embedded-stomp-broker");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Embedded STOMP broker listening on port {}", serverSocket.getLocalPort());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        serverSocket.close();
+        clients.forEach(Client::close);
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Client client = new Client(socket);
+                clients.add(client);
+                Thread reader = new Thread(client::read, "embedded-stomp-client-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException ex) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Embedded STOMP broker could not accept a connection", ex);
+                }
+            }
+        }
+    }
+
+    private void handle(Client client, Message<byte[]> message) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        StompCommand command = accessor.getCommand();
+        if (command == null) {
+            return; // Heartbeat
+        }
+        switch (command) {
+            case CONNECT:
+            case STOMP:
+                StompHeaderAccessor connected = StompHeaderAccessor.create(StompCommand.CONNECTED);
+                connected.setVersion("1.2");
+                connected.setHeartbeat(0, 0);
+                client.send(connected, new byte[0]);
+                break;
+            case SUBSCRIBE:
+                subscriptions.computeIfAbsent(accessor.getDestination(), d -> ConcurrentHashMap.newKeySet())
+                        .add(new Subscription(client, accessor.getSubscriptionId()));
+                client.subscriptions.put(accessor.getSubscriptionId(), accessor.getDestination());
+                break;
+            case UNSUBSCRIBE:
+                unsubscribe(client, accessor.getSubscriptionId());
+                break;
+            case SEND:
+                publish(accessor, message.getPayload());
+                break;
+            case DISCONNECT:
+                sendReceipt(client, accessor);
+                client.close();
+                return;
+            default:
+                // Acknowledgements and transactions are not supported
+                break;
+        }
+        sendReceipt(client, accessor);
+    }
+
+    private void publish(StompHeaderAccessor send, byte[] payload) {
+        Set<Subscription> subscribers = subscriptions.get(send.getDestination());
+        if (subscribers == null) {
+            return;
+        }
+        String messageId = "e-" + messageIds.incrementAndGet();
+        for (Subscription subscription : subscribers) {
+            StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            send.toNativeHeaderMap().forEach((name, values) -> {
+                if (!StompHeaderAccessor.STOMP_RECEIPT_HEADER.equals(name)) {
+                    accessor.setNativeHeaderValues(name, values);
+                }
+            });
+            accessor.setDestination(send.getDestination());
+            accessor.setSubscriptionId(subscription.getId());
+            accessor.setMessageId(messageId);
+            subscription.getClient().send(accessor, payload);
+        }
+    }
+
+    private void unsubscribe(Client client, String subscriptionId) {
+        String destination = client.subscriptions.remove(subscriptionId);
+        if (destination == null) {
+            return;
+        }
+        Set<Subscription> subscribers = subscriptions.get(destination);
+        if (subscribers != null) {
+            subscribers.remove(new Subscription(client, subscriptionId));
+            if (subscribers.isEmpty()) {
+                subscriptions.remove(destination, subscribers);
+            }
+        }
+    }
+
+    private void sendReceipt(Client client, StompHeaderAccessor accessor) {
+        String receipt = accessor.getReceipt();
+        if (receipt != null) {
+            StompHeaderAccessor response = StompHeaderAccessor.create(StompCommand.RECEIPT);
+            response.setReceiptId(receipt);
+            client.send(response, new byte[0]);
+        }
+    }
+
+    @lombok.Value
+    private static class Subscription {
+        Client client;
+        String id;
+    }
+
+    /**
+     * A connected relay session, read on its own thread.
+     */
+    private class Client {
+        private final Socket socket;
+        private final ReentrantLock writeLock = new ReentrantLock();
+        // subscriptionId -> destination
+        private final Map<String, String> subscriptions = new ConcurrentHashMap<>();
+
+        Client(Socket socket) {
+            this.socket = socket;
+        }
+
+        void read() {
+            BufferingStompDecoder decoder = new BufferingStompDecoder(new StompDecoder(), MAX_FRAME_SIZE);
+            byte[] buffer = new byte[8192];
+            try {
+                InputStream in = socket.getInputStream();
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    List<Message<byte[]>> messages = decoder.decode(ByteBuffer.wrap(buffer, 0, count));
+                    for (Message<byte[]> message : messages) {
+                        handle(this, message);
+                    }
+                }
+            } catch (IOException | RuntimeException ex) {
+                log.debug("Embedded STOMP broker connection failed", ex);
+            } finally {
+                close();
+            }
+        }
+
+        void send(StompHeaderAccessor accessor, byte[] payload) {
+            byte[] frame = encoder.encode(accessor.getMessageHeaders(), payload);
+            writeLock.lock();
+            try {
+                OutputStream out = socket.getOutputStream();
+                out.write(frame);
+                out.flush();
+            } catch (IOException ex) {
+                log.debug("Embedded STOMP broker could not write to a client", ex);
+                close();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void close() {
+            if (!clients.remove(this)) {
+                return;
+            }
+            List.copyOf(subscriptions.keySet()).forEach(id -> unsubscribe(this, id));
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // Ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.collabform.cluster;
+
+import com.collabform.CollabFormApplication;
+import com.collabform.model.EditLock;
+import com.collabform.model.FieldValue;
+import com.collabform.repository.EditLockRepository;
+import com.collabform.repository.FieldValueRepository;
+import com.collabform.repository.FormResponseRepository;
+import com.collabform.service.lock.FieldLock;
+import com.collabform.service.lock.FieldLockStore;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs two sharding nodes in one JVM, sharing a database: a client that subscribes to a form on
+ * the node that does not serve it is redirected to the owner, and when a node leaves or joins,
+ * the buffered values and the locks of the forms that move are handed to their new owner.
+ * Values are only flushed on hand-off or shutdown here, never by the periodic flush.
+ */
+class FormOwnershipIntegrationTest {
+
+    private static final ParameterizedTypeReference<Map<String, Object>> JSON_OBJECT =
+            new ParameterizedTypeReference<>() {
+            };
+    private static final long TIMEOUT_MS = 15_000;
+
+    private static String database;
+    private static String nodes;
+    private static int portA;
+    private static int portB;
+    private static Path journalA;
+    private static Path journalB;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    private final RestTemplate rest = new RestTemplate();
+
+    @BeforeAll
+    static void startNodes() throws IOException {
+        database = "jdbc:h2:mem:cluster-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        // Node URLs are part of the configuration, so both ports are chosen up front
+        portA = freePort();
+        portB = freePort();
+        nodes = "a=http://localhost:" + portA + ",b=http://localhost:" + portB;
+        journalA = Files.createTempDirectory("cluster-journal-a");
+        journalB = Files.createTempDirectory("cluster-journal-b");
+        nodeA = startNode("a", portA, journalA);
+        nodeB = startNode("b", portB, journalB);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+    }
+
+    @BeforeEach
+    void bothNodesServeForms() {
+        if (nodeB == null) {
+            nodeB = startNode("b", portB, journalB);
+        }
+        await("node a sees node b", () -> ownership(nodeA).getLiveNodes().size() == 2);
+    }
+
+    @Test
+    void subscribingOnTheOtherNodeRedirectsToTheOwner() throws Exception {
+        String token = register("redirect" + System.nanoTime());
+        HttpHeaders headers = authorized(token);
+        Map<String, Object> form = createFormOwnedBy("b", headers);
+        Object formId = form.get("id");
+
+        BlockingQueue<Map<String, Object>> received = new LinkedBlockingQueue<>();
+        WebSocketStompClient stompClient = stompClient();
+        StompSession session = connect(stompClient, portA, token);
+        try {
+            subscribe(session, "/topic/form/" + formId, received);
+
+            Map<String, Object> redirect = awaitMessage(received, "REDIRECT");
+            assertThat(redirect).as("REDIRECT sent instead of subscribing").isNotNull();
+            assertThat(redirect.get("formId")).isEqualTo(formId);
+            assertThat(redirect.get("nodeId")).isEqualTo("b");
+            assertThat(redirect.get("url")).isEqualTo("http://localhost:" + portB);
+        } finally {
+            session.disconnect();
+            stompClient.stop();
+        }
+
+        // REST calls for the form are redirected the same way
+        ResponseEntity<String> response = rest.exchange("http://localhost:" + portA + "/api/forms/" + formId + "/values",
+                HttpMethod.PUT, new HttpEntity<>(Map.of("fieldId", firstFieldId(form), "value", "x"), headers), String.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TEMPORARY_REDIRECT);
+        assertThat(response.getHeaders().getLocation())
+                .hasToString("http://localhost:" + portB + "/api/forms/" + formId + "/values");
+    }
+
+    @Test
+    void aJoiningNodeGetsTheFlushedValuesAndLocksOfItsForms() throws Exception {
+        String token = register("join" + System.nanoTime());
+        HttpHeaders headers = authorized(token);
+        Map<String, Object> form = createFormOwnedBy("b", headers);
+        Long formId = ((Number) form.get("id")).longValue();
+        Long fieldId = ((Number) firstFieldId(form)).longValue();
+        Long responseId = responseId(formId);
+
+        stopNodeB();
+        await("node a serves the form of node b", () -> ownership(nodeA).ownerOf(formId).getId().equals("a"));
+
+        BlockingQueue<Map<String, Object>> received = new LinkedBlockingQueue<>();
+        WebSocketStompClient stompClient = stompClient();
+        StompSession session = connect(stompClient, portA, token);
+        try {
+            subscribe(session, "/topic/form/" + formId, received);
+            long fencingToken = lock(portA, headers, formId, fieldId);
+            write(portA, headers, formId, fieldId, "while b was away", fencingToken);
+            assertThat(storedValue(responseId, fieldId)).as("value buffered on node a").isEmpty();
+
+            // Locks reach the table asynchronously; node b recovers them from there when it starts
+            await("lock journal caught up", () -> storedLock(responseId, fieldId)
+                    .filter(lock -> lock.getFencingToken() == fencingToken)
+                    .isPresent());
+
+            nodeB = startNode("b", portB, journalB);
+            await("node a hands the form back", () -> ownership(nodeA).ownerOf(formId).getId().equals("b"));
+
+            Map<String, Object> redirect = awaitMessage(received, "REDIRECT");
+            assertThat(redirect).as("REDIRECT sent to the subscriber on node a").isNotNull();
+            assertThat(redirect.get("nodeId")).isEqualTo("b");
+
+            await("value flushed by node a", () -> storedValue(responseId, fieldId)
+                    .filter(value -> value.getValue().equals("while b was away"))
+                    .isPresent());
+            assertThat(activeLock(nodeB, responseId, fieldId)).get()
+                    .extracting(FieldLock::getFencingToken).isEqualTo(fencingToken);
+            assertThat(values(portB, headers, formId)).contains("while b was away");
+
+            // The holder keeps writing on the new owner under the same lock
+            write(portB, headers, formId, fieldId, "after b joined", fencingToken);
+            assertThat(values(portB, headers, formId)).contains("after b joined");
+        } finally {
+            session.disconnect();
+            stompClient.stop();
+        }
+    }
+
+    @Test
+    void theRemainingNodeTakesOverTheLocksOfANodeThatLeft() {
+        String token = register("leave" + System.nanoTime());
+        HttpHeaders headers = authorized(token);
+        Map<String, Object> form = createFormOwnedBy("b", headers);
+        Long formId = ((Number) form.get("id")).longValue();
+        Long fieldId = ((Number) firstFieldId(form)).longValue();
+        Long responseId = responseId(formId);
+
+        long fencingToken = lock(portB, headers, formId, fieldId);
+        write(portB, headers, formId, fieldId, "before b left", fencingToken);
+        await("lock journal caught up", () -> storedLock(responseId, fieldId).isPresent());
+        assertThat(activeLock(nodeA, responseId, fieldId)).as("lock only held by node b").isEmpty();
+
+        stopNodeB();
+        // The ring changes before the stores have handled it, so wait for the lock itself
+        await("lock taken over by node a", () -> activeLock(nodeA, responseId, fieldId)
+                .filter(lock -> lock.getFencingToken() == fencingToken)
+                .isPresent());
+        assertThat(ownership(nodeA).ownerOf(formId).getId()).isEqualTo("a");
+        assertThat(values(portA, headers, formId)).contains("before b left");
+
+        write(portA, headers, formId, fieldId, "after b left", fencingToken);
+        assertThat(values(portA, headers, formId)).contains("after b left");
+    }
+
+    private static ConfigurableApplicationContext startNode(String nodeId, int port, Path journal) {
+        // As command line arguments, which override application.properties
+        return new SpringApplicationBuilder(CollabFormApplication.class)
+                .run("--server.port=" + port,
+                        "--spring.datasource.url=" + database,
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.h2.console.enabled=false",
+                        "--jwt.secret=" + "cluster-integration-test-secret-".repeat(4),
+                        "--logging.level.com.collabform=INFO",
+                        "--collabform.cluster.node-id=" + nodeId,
+                        "--collabform.cluster.nodes=" + nodes,
+                        "--collabform.cluster.probe-ms=200",
+                        "--collabform.cluster.probe-timeout-ms=500",
+                        "--collabform.cluster.probe-failures=2",
+                        "--collabform.values.store=write-behind",
+                        "--collabform.values.write-behind.flush-ms=600000",
+                        "--collabform.values.journal.dir=" + journal);
+    }
+
+    private static void stopNodeB() {
+        nodeB.close();
+        nodeB = null;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static FormOwnership ownership(ConfigurableApplicationContext node) {
+        return node.getBean(FormOwnership.class);
+    }
+
+    private static Long responseId(Long formId) {
+        return nodeA.getBean(FormResponseRepository.class).findIdByFormId(formId).orElseThrow();
+    }
+
+    private static Optional<FieldValue> storedValue(Long responseId, Long fieldId) {
+        return nodeA.getBean(FieldValueRepository.class).findByResponseIdAndFieldId(responseId, fieldId);
+    }
+
+    private static Optional<EditLock> storedLock(Long responseId, Long fieldId) {
+        return nodeA.getBean(EditLockRepository.class).findByFieldIdAndResponseId(fieldId, responseId);
+    }
+
+    private static Optional<FieldLock> activeLock(ConfigurableApplicationContext node, Long responseId, Long fieldId) {
+        return node.getBean(FieldLockStore.class).getActiveLock(responseId, fieldId);
+    }
+
+    private static void await(String description, Supplier<Boolean> condition) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.get()) {
+            assertThat(System.currentTimeMillis()).as(description).isLessThan(deadline);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    private Map<String, Object> createFormOwnedBy(String nodeId, HttpHeaders headers) {
+        // Forms land on either node by the hash of their ID
+        while (true) {
+            Map<String, Object> form = exchange(portA, HttpMethod.POST, "/api/forms", headers,
+                    Map.of("title", "Cluster", "fields", List.of(Map.of("fieldName", "name", "fieldType", "TEXT"))));
+            Long formId = ((Number) form.get("id")).longValue();
+            if (ownership(nodeA).ownerOf(formId).getId().equals(nodeId)) {
+                return form;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object firstFieldId(Map<String, Object> form) {
+        return ((List<Map<String, Object>>) form.get("fields")).get(0).get("id");
+    }
+
+    private long lock(int port, HttpHeaders headers, Long formId, Long fieldId) {
+        Map<String, Object> result = exchange(port, HttpMethod.POST,
+                "/api/forms/" + formId + "/fields/" + fieldId + "/lock", headers, null);
+        assertThat(result.get("success")).isEqualTo(true);
+        return ((Number) result.get("fencingToken")).longValue();
+    }
+
+    private void write(int port, HttpHeaders headers, Long formId, Long fieldId, String value, long fencingToken) {
+        exchange(port, HttpMethod.PUT, "/api/forms/" + formId + "/values", headers,
+                Map.of("fieldId", fieldId, "value", value, "fencingToken", fencingToken));
+    }
+
+    private List<Object> values(int port, HttpHeaders headers, Long formId) {
+        return rest.exchange("http://localhost:" + port + "/api/forms/" + formId + "/values", HttpMethod.GET,
+                        new HttpEntity<>(headers), new ParameterizedTypeReference<List<Map<String, Object>>>() {
+                        })
+                .getBody().stream()
+                .map(value -> value.get("value"))
+                .toList();
+    }
+
+    private static WebSocketStompClient stompClient() {
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        return stompClient;
+    }
+
+    private static StompSession connect(WebSocketStompClient stompClient, int port, String token) throws Exception {
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        return stompClient.connectAsync("ws://localhost:" + port + "/ws/websocket",
+                        new WebSocketHttpHeaders(), connectHeaders, new StompSessionHandlerAdapter() {
+                        })
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    private static void subscribe(StompSession session, String destination,
+                                  BlockingQueue<Map<String, Object>> received) {
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders frameHeaders) {
+                return Map.class;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void handleFrame(StompHeaders frameHeaders, Object payload) {
+                received.add((Map<String, Object>) payload);
+            }
+        });
+    }
+
+    private static Map<String, Object> awaitMessage(BlockingQueue<Map<String, Object>> received, String type)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        Map<String, Object> message;
+        while ((message = received.poll(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) != null) {
+            if (type.equals(message.get("type"))) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    private String register(String username) {
+        Map<String, Object> auth = exchange(portA, HttpMethod.POST, "/api/auth/register", new HttpHeaders(),
+                Map.of("username", username, "email", username + "@example.com", "password", "secret1"));
+        return (String) auth.get("token");
+    }
+
+    private static HttpHeaders authorized(String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        return headers;
+    }
+
+    private Map<String, Object> exchange(int port, HttpMethod method, String path, HttpHeaders headers, Object body) {
+        return rest.exchange("http://localhost:" + port + path, method, new HttpEntity<>(body, headers), JSON_OBJECT)
+                .getBody();
+    }
+}
@@ -0,0 +1,178 @@
+package com.collabform.service.lock;
+
+import com.collabform.dto.UserDto;
+import com.collabform.service.CollaborationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fppt.jedismock.RedisServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs the Redis lock store's scripts against an in-process Redis stand-in.
+ */
+class RedisFieldLockStoreTest {
+
+    private static final long FORM_ID = 1L;
+
+    private static RedisServer server;
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    // Each test works on its own response, so keys never carry over
+    private static final AtomicLong responseIds = new AtomicLong();
+
+    private final UserDto alice = new UserDto(1L, "alice", "alice@example.com", "USER");
+    private final UserDto bob = new UserDto(2L, "bob", "bob@example.com", "USER");
+
+    private CollaborationService collaborationService;
+    private RedisFieldLockStore store;
+    private long responseId;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        server = RedisServer.newRedisServer();
+        server.start();
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(server.getHost(), server.getBindPort()));
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @BeforeEach
+    void createStore() {
+        collaborationService = mock(CollaborationService.class);
+        store = new RedisFieldLockStore(collaborationService, redisTemplate, new ObjectMapper());
+        ReflectionTestUtils.setField(store, "lockTtlMs", 30_000L);
+        ReflectionTestUtils.setField(store, "wheelTickMs", 10L);
+        ReflectionTestUtils.setField(store, "wheelSize", 64);
+        ReflectionTestUtils.setField(store, "wheelLevels", 4);
+        ReflectionTestUtils.setField(store, "expiryGraceMs", 5_000L);
+        store.startExpiryTimer();
+        responseId = responseIds.incrementAndGet();
+    }
+
+    @AfterEach
+    void stopStore() {
+        store.stopExpiryTimer();
+    }
+
+    @Test
+    void acquiresRefreshesDeniesAndSteals() {
+        LockAcquisition acquired = store.acquire(FORM_ID, responseId, 10L, "name", alice, false);
+        assertThat(acquired.getOutcome()).isEqualTo(LockAcquisition.Outcome.ACQUIRED);
+        assertThat(acquired.getLock().getOwner().getId()).isEqualTo(alice.getId());
+        assertThat(acquired.getLock().getFieldName()).isEqualTo("name");
+
+        LockAcquisition refreshed = store.acquire(FORM_ID, responseId, 10L, "name", alice, false);
+        assertThat(refreshed.getOutcome()).isEqualTo(LockAcquisition.Outcome.REFRESHED);
+        assertThat(refreshed.getLock().getFencingToken()).isEqualTo(acquired.getLock().getFencingToken());
+
+        LockAcquisition denied = store.acquire(FORM_ID, responseId, 10L, "name", bob, false);
+        assertThat(denied.getOutcome()).isEqualTo(LockAcquisition.Outcome.DENIED);
+        assertThat(denied.getLock().isOwnedBy(alice.getId())).isTrue();
+
+        LockAcquisition stolen = store.acquire(FORM_ID, responseId, 10L, "name", bob, true);
+        assertThat(stolen.getOutcome()).isEqualTo(LockAcquisition.Outcome.STOLEN);
+        assertThat(stolen.getLock().isOwnedBy(bob.getId())).isTrue();
+        assertThat(stolen.getPrevious().getFencingToken()).isEqualTo(acquired.getLock().getFencingToken());
+        assertThat(stolen.getLock().getFencingToken()).isGreaterThan(acquired.getLock().getFencingToken());
+    }
+
+    @Test
+    void releaseComparesTheFencingToken() {
+        FieldLock first = store.acquire(FORM_ID, responseId, 10L, "name", alice, false).getLock();
+        FieldLock second = store.acquire(FORM_ID, responseId, 10L, "name", bob, true).getLock();
+
+        assertThat(store.release(first)).isFalse();
+        assertThat(store.getActiveLock(responseId, 10L)).map(FieldLock::getFencingToken)
+                .contains(second.getFencingToken());
+
+        assertThat(store.release(second)).isTrue();
+        assertThat(store.getActiveLock(responseId, 10L)).isEmpty();
+        assertThat(store.release(second)).isFalse();
+    }
+
+    @Test
+    void fencingTokensKeepIncreasingWhenTheCounterIsLost() {
+        FieldLock first = store.acquire(FORM_ID, responseId, 10L, "name", alice, false).getLock();
+        assertThat(store.release(first)).isTrue();
+        redisTemplate.delete("collabform:fence:{" + responseId + "}:10");
+
+        FieldLock second = store.acquire(FORM_ID, responseId, 10L, "name", alice, false).getLock();
+        assertThat(second.getFencingToken()).isGreaterThan(first.getFencingToken());
+    }
+
+    @Test
+    void listsTheLocksOfAResponseAndPrunesStaleEntries() {
+        store.acquire(FORM_ID, responseId, 10L, "name", alice, false);
+        store.acquire(FORM_ID, responseId, 11L, "email", bob, false);
+        store.acquire(FORM_ID, responseId + 1000, 10L, "name", bob, false);
+        // A lock key that vanished without its index entry, as after a crash
+        store.acquire(FORM_ID, responseId, 12L, "phone", alice, false);
+        redisTemplate.delete("collabform:lock:{" + responseId + "}:12");
+
+        List<FieldLock> locks = store.getActiveLocks(responseId);
+
+        assertThat(locks).extracting(FieldLock::getFieldId).containsExactlyInAnyOrder(10L, 11L);
+        assertThat(redisTemplate.opsForSet().members("collabform:locks:{" + responseId + "}"))
+                .containsExactlyInAnyOrder("10", "11");
+    }
+
+    @Test
+    void releasesEveryLockOfAUser() {
+        store.acquire(FORM_ID, responseId, 10L, "name", alice, false);
+        store.acquire(FORM_ID, responseId, 11L, "email", alice, false);
+        store.acquire(FORM_ID, responseId, 12L, "phone", bob, false);
+
+        List<FieldLock> released = store.releaseAll(responseId, alice.getId());
+
+        assertThat(released).extracting(FieldLock::getFieldId).containsExactlyInAnyOrder(10L, 11L);
+        assertThat(store.getActiveLocks(responseId)).extracting(FieldLock::getFieldId).containsExactly(12L);
+    }
+
+    @Test
+    void announcesTheExpiryOfALock() {
+        ReflectionTestUtils.setField(store, "lockTtlMs", 200L);
+        FieldLock lock = store.acquire(FORM_ID, responseId, 10L, "name", alice, false).getLock();
+
+        verify(collaborationService, timeout(5_000))
+                .notifyFieldLockReleased(argThat(released -> released.getFencingToken() == lock.getFencingToken()));
+        assertThat(store.getActiveLock(responseId, 10L)).isEmpty();
+    }
+
+    @Test
+    void doesNotAnnounceAnExpiryAfterARelease() throws InterruptedException {
+        ReflectionTestUtils.setField(store, "lockTtlMs", 200L);
+        FieldLock lock = store.acquire(FORM_ID, responseId, 10L, "name", alice, false).getLock();
+        assertThat(store.release(lock)).isTrue();
+
+        Thread.sleep(600);
+        verify(collaborationService, never()).notifyFieldLockReleased(argThat(released -> true));
+        assertThat(store.getActiveLock(responseId, 10L)).isEqualTo(Optional.empty());
+    }
+}
@@ -0,0 +1,186 @@
+package com.collabform.service.schema;
+
+import com.collabform.CollabFormApplication;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs one node and reads form details over HTTP: an unchanged form is answered with 304 from
+ * the cache, every change that is part of the detail gives it a new ETag, and a user without
+ * access to the form is refused even though its detail is cached.
+ */
+class FormSchemaCacheIntegrationTest {
+
+    private static final ParameterizedTypeReference<Map<String, Object>> JSON_OBJECT =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private static ConfigurableApplicationContext node;
+
+    private final RestTemplate rest = new RestTemplate();
+
+    @BeforeAll
+    static void startNode() throws IOException {
+        Path journal = Files.createTempDirectory("schema-journal");
+        // As command line arguments, which override application.properties
+        node = new SpringApplicationBuilder(CollabFormApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:schema-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.h2.console.enabled=false",
+                        "--jwt.secret=" + "schema-integration-test-secret-".repeat(4),
+                        "--logging.level.com.collabform=INFO",
+                        "--collabform.values.journal.dir=" + journal);
+    }
+
+    @AfterAll
+    static void stopNode() {
+        if (node != null) {
+            node.close();
+        }
+    }
+
+    @Test
+    void anUnchangedFormIsNotModified() {
+        HttpHeaders owner = authorized(register("etag" + System.nanoTime()));
+        Object formId = createForm(owner).get("id");
+
+        ResponseEntity<String> first = getForm(owner, formId, null);
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        String etag = first.getHeaders().getETag();
+        assertThat(etag).isNotNull();
+        assertThat(first.getHeaders().getCacheControl()).contains("no-cache");
+
+        long hits = cache().getHitCount();
+        ResponseEntity<String> revalidated = getForm(owner, formId, etag);
+        assertThat(revalidated.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(revalidated.getBody()).isNull();
+        assertThat(revalidated.getHeaders().getETag()).isEqualTo(etag);
+        assertThat(cache().getHitCount()).isEqualTo(hits + 1);
+
+        // Without the tag, the cached detail is sent again
+        ResponseEntity<String> again = getForm(owner, formId, null);
+        assertThat(again.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(again.getHeaders().getETag()).isEqualTo(etag);
+        assertThat(again.getBody()).isEqualTo(first.getBody());
+    }
+
+    @Test
+    void updatingSharingAndSubmittingChangeTheEtag() {
+        HttpHeaders owner = authorized(register("owner" + System.nanoTime()));
+        String colleague = "colleague" + System.nanoTime();
+        HttpHeaders colleagueHeaders = authorized(register(colleague));
+        Object formId = createForm(owner).get("id");
+        String created = getForm(owner, formId, null).getHeaders().getETag();
+
+        exchange(HttpMethod.PUT, "/api/forms/" + formId, owner, Map.of("title", "Renamed"));
+        String updated = assertChanged(owner, formId, created);
+        assertThat(getForm(owner, formId, null).getBody()).contains("Renamed");
+
+        exchange(HttpMethod.POST, "/api/forms/" + formId + "/share", owner, Map.of("usernameOrEmail", colleague));
+        String shared = assertChanged(owner, formId, updated);
+        assertThat(getForm(owner, formId, null).getBody()).contains(colleague);
+
+        exchange(HttpMethod.POST, "/api/forms/" + formId + "/submit", colleagueHeaders, null);
+        String submitted = assertChanged(owner, formId, shared);
+        assertThat(getForm(owner, formId, null).getBody()).contains("SUBMITTED");
+
+        // Everyone with access is served the same version
+        assertThat(getForm(colleagueHeaders, formId, submitted).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    @Test
+    void aCachedFormIsNotServedToUsersWithoutAccess() {
+        HttpHeaders owner = authorized(register("private" + System.nanoTime()));
+        HttpHeaders stranger = authorized(register("stranger" + System.nanoTime()));
+        Object formId = createForm(owner).get("id");
+        String etag = getForm(owner, formId, null).getHeaders().getETag();
+        assertThat(cache().size()).isPositive();
+
+        assertThatThrownBy(() -> getForm(stranger, formId, null))
+                .isInstanceOfSatisfying(HttpClientErrorException.class, ex -> {
+                    assertThat(ex.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+                    assertThat(ex.getResponseHeaders().getETag()).isNull();
+                    assertThat(ex.getResponseBodyAsString()).doesNotContain("\"fields\"");
+                });
+        // Knowing the current tag does not confirm it either
+        assertThatThrownBy(() -> getForm(stranger, formId, etag))
+                .isInstanceOfSatisfying(HttpClientErrorException.class, ex ->
+                        assertThat(ex.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    /**
+     * Check that the form has a new ETag, and that the previous one is no longer confirmed.
+     *
+     * @return The new ETag
+     */
+    private String assertChanged(HttpHeaders headers, Object formId, String previous) {
+        ResponseEntity<String> stale = getForm(headers, formId, previous);
+        assertThat(stale.getStatusCode()).isEqualTo(HttpStatus.OK);
+        String current = stale.getHeaders().getETag();
+        assertThat(current).isNotNull().isNotEqualTo(previous);
+        assertThat(getForm(headers, formId, current).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        return current;
+    }
+
+    private static FormSchemaCache cache() {
+        return node.getBean(FormSchemaCache.class);
+    }
+
+    private ResponseEntity<String> getForm(HttpHeaders headers, Object formId, String ifNoneMatch) {
+        HttpHeaders request = new HttpHeaders();
+        request.putAll(headers);
+        if (ifNoneMatch != null) {
+            request.setIfNoneMatch(ifNoneMatch);
+        }
+        return rest.exchange(url("/api/forms/" + formId), HttpMethod.GET, new HttpEntity<>(request), String.class);
+    }
+
+    private Map<String, Object> createForm(HttpHeaders headers) {
+        return exchange(HttpMethod.POST, "/api/forms", headers,
+                Map.of("title", "Schema", "fields", List.of(Map.of("fieldName", "name", "fieldType", "TEXT"))));
+    }
+
+    private String register(String username) {
+        Map<String, Object> auth = exchange(HttpMethod.POST, "/api/auth/register", new HttpHeaders(),
+                Map.of("username", username, "email", username + "@example.com", "password", "secret1"));
+        return (String) auth.get("token");
+    }
+
+    private static HttpHeaders authorized(String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        return headers;
+    }
+
+    private Map<String, Object> exchange(HttpMethod method, String path, HttpHeaders headers, Object body) {
+        return rest.exchange(url(path), method, new HttpEntity<>(body, headers), JSON_OBJECT).getBody();
+    }
+
+    private static String url(String path) {
+        return "http://localhost:" + node.getEnvironment().getProperty("local.server.port") + path;
+    }
+}
@@ -0,0 +1,293 @@
+package com.collabform.service.search;
+
+import com.collabform.model.User;
+import com.collabform.model.UserRole;
+import com.collabform.repository.FormAccessRepository;
+import com.collabform.repository.FormFieldRepository;
+import com.collabform.repository.FormRepository;
+import com.collabform.repository.FormSearchSource;
+import com.collabform.service.access.FormAccessChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FormSearchIndexTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final User owner = user(1L, UserRole.USER);
+    private final User colleague = user(2L, UserRole.USER);
+    private final User stranger = user(3L, UserRole.USER);
+    private final User admin = user(4L, UserRole.ADMIN);
+
+    // What the repositories read, by form ID
+    private final Map<Long, FormSearchSource> sources = new ConcurrentSkipListMap<>();
+    private final Map<Long, List<String>> fieldNames = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> grants = new ConcurrentHashMap<>();
+
+    private FormRepository formRepository;
+    private FormSearchIndex index;
+
+    @BeforeEach
+    void createIndex() {
+        formRepository = mock(FormRepository.class);
+        FormFieldRepository formFieldRepository = mock(FormFieldRepository.class);
+        FormAccessRepository formAccessRepository = mock(FormAccessRepository.class);
+
+        when(formRepository.findSearchSourcesAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            Pageable page = invocation.getArgument(1);
+            return sources.values().stream()
+                    .filter(source -> source.getId() > afterId)
+                    .limit(page.getPageSize())
+                    .toList();
+        });
+        when(formRepository.findSearchSourceById(anyLong()))
+                .thenAnswer(invocation -> Optional.ofNullable(sources.get(invocation.<Long>getArgument(0))));
+        when(formFieldRepository.findNamesByFormIdBetween(anyLong(), anyLong())).thenAnswer(invocation -> {
+            List<FormFieldRepository.FieldName> names = new ArrayList<>();
+            between(fieldNames, invocation.getArgument(0), invocation.getArgument(1)).forEach((formId, fields) ->
+                    fields.forEach(name -> names.add(fieldName(formId, name))));
+            return names;
+        });
+        when(formAccessRepository.findGrantsByFormIdBetween(anyLong(), anyLong())).thenAnswer(invocation -> {
+            List<FormAccessRepository.Grant> rows = new ArrayList<>();
+            between(grants, invocation.getArgument(0), invocation.getArgument(1)).forEach((formId, userIds) ->
+                    userIds.forEach(userId -> rows.add(grant(formId, userId))));
+            return rows;
+        });
+
+        index = new FormSearchIndex(formRepository, formFieldRepository, formAccessRepository);
+        ReflectionTestUtils.setField(index, "loadBatchSize", 2);
+    }
+
+    @Test
+    void everyWordMustStartAWordOfTheForm() {
+        form(1L, "Customer feedback survey", "Quarterly results", true, 1, "Email address");
+        index.load();
+
+        assertThat(index.search("cust", owner, 0, 10)).containsExactly(1L);
+        assertThat(index.search("FEED surv", owner, 0, 10)).containsExactly(1L);
+        assertThat(index.search("quart", owner, 0, 10)).containsExactly(1L);
+        assertThat(index.search("e-mail addr", owner, 0, 10)).isEmpty();
+        assertThat(index.search("email addr", owner, 0, 10)).containsExactly(1L);
+        // Only the start of a word matches, and every word must match
+        assertThat(index.search("eedback", owner, 0, 10)).isEmpty();
+        assertThat(index.search("customer zebra", owner, 0, 10)).isEmpty();
+        assertThat(index.search(" ,. ", owner, 0, 10)).isEmpty();
+    }
+
+    @Test
+    void ranksByWhereAndHowWellTheWordsMatch() {
+        form(1L, "Holiday plans", "Which budget to use", true, 1);
+        form(2L, "Team offsite", null, true, 2, "Budget");
+        form(3L, "Budget review", null, true, 3);
+        form(4L, "Budgeting guide", null, true, 4);
+        form(5L, "Budget request", null, true, 5);
+        index.load();
+
+        // Exact title matches first, the most recent before the older; then a title prefix, which
+        // counts as much as an exact field name; then the description
+        assertThat(index.search("budget", owner, 0, 10)).containsExactly(5L, 3L, 4L, 2L, 1L);
+        assertThat(index.search("budget", owner, 1, 2)).containsExactly(3L, 4L);
+    }
+
+    @Test
+    void shortPrefixesMatchingMostFormsAreRankedLikeOthers() {
+        for (long id = 1; id <= 40; id++) {
+            form(id, (id % 4 == 0 ? "Feedback " : "Form ") + id, null, true, id);
+        }
+        index.load();
+
+        // "f" matches every form; the exact "feedback" word is not typed, so all are prefix matches
+        assertThat(index.search("f", owner, 0, 5)).containsExactly(40L, 39L, 38L, 37L, 36L);
+        assertThat(index.search("f", owner, 5, 3)).containsExactly(35L, 34L, 33L);
+        assertThat(index.search("form", owner, 0, 3)).containsExactly(39L, 38L, 37L);
+        assertThat(index.search("feedback", owner, 0, 3)).containsExactly(40L, 36L, 32L);
+    }
+
+    @Test
+    void usersOnlyFindFormsTheyMaySee() {
+        form(1L, "Shared survey", null, true, 1);
+        form(2L, "Closed survey", null, false, 2);
+        form(3L, "Private survey", null, true, 3);
+        grants.put(1L, Set.of(colleague.getId()));
+        grants.put(2L, Set.of(colleague.getId()));
+        index.load();
+
+        assertThat(index.search("survey", owner, 0, 10)).containsExactly(3L, 2L, 1L);
+        // Inactive forms are only found by their owner
+        assertThat(index.search("survey", colleague, 0, 10)).containsExactly(1L);
+        assertThat(index.search("survey", stranger, 0, 10)).isEmpty();
+        assertThat(index.search("s", stranger, 0, 10)).isEmpty();
+        assertThat(index.search("survey", admin, 0, 10)).containsExactly(3L, 2L, 1L);
+    }
+
+    @Test
+    void accessChangesAreSeenOnceReindexed() {
+        form(1L, "Shared survey", null, true, 1);
+        index.load();
+        assertThat(index.search("survey", colleague, 0, 10)).isEmpty();
+
+        grants.put(1L, Set.of(colleague.getId()));
+        index.onAccessChanged(FormAccessChangedEvent.forUser(1L, colleague.getId()));
+        assertThat(index.search("survey", colleague, 0, 10)).containsExactly(1L);
+
+        grants.remove(1L);
+        index.onAccessChanged(FormAccessChangedEvent.forUser(1L, colleague.getId()));
+        assertThat(index.search("survey", colleague, 0, 10)).isEmpty();
+        assertThat(index.search("survey", owner, 0, 10)).containsExactly(1L);
+
+        sources.remove(1L);
+        index.onAccessChanged(FormAccessChangedEvent.forForm(1L));
+        assertThat(index.search("survey", owner, 0, 10)).isEmpty();
+        assertThat(index.getFormCount()).isZero();
+    }
+
+    @Test
+    void changedFormsReplaceTheirPreviousTerms() {
+        form(1L, "Draft survey", null, true, 1, "Age");
+        index.load();
+
+        form(1L, "Final survey", null, true, 2, "Country");
+        index.onFormChanged(new FormChangedEvent(1L));
+
+        assertThat(index.search("final count", owner, 0, 10)).containsExactly(1L);
+        assertThat(index.search("draft", owner, 0, 10)).isEmpty();
+        assertThat(index.search("age", owner, 0, 10)).isEmpty();
+        assertThat(index.getFormCount()).isEqualTo(1);
+    }
+
+    @Test
+    void aReadOvertakenByALaterOneIsNotApplied() throws Exception {
+        form(1L, "Draft survey", null, true, 1);
+        index.load();
+
+        reindexOvertakenBy(1L, () -> {
+            form(1L, "Final survey", null, true, 2);
+            index.onFormChanged(new FormChangedEvent(1L));
+        });
+
+        assertThat(index.search("final", owner, 0, 10)).containsExactly(1L);
+        assertThat(index.search("draft", owner, 0, 10)).isEmpty();
+    }
+
+    @Test
+    void aStaleReadDoesNotRestoreADeletedForm() throws Exception {
+        form(1L, "Draft survey", null, true, 1);
+        index.load();
+
+        reindexOvertakenBy(1L, () -> {
+            sources.remove(1L);
+            index.onAccessChanged(FormAccessChangedEvent.forForm(1L));
+        });
+
+        assertThat(index.search("survey", owner, 0, 10)).isEmpty();
+        assertThat(index.getFormCount()).isZero();
+    }
+
+    @Test
+    void theInitialLoadDoesNotReplaceFormsReindexedMeanwhile() {
+        form(1L, "Final survey", null, true, 2);
+        index.onFormChanged(new FormChangedEvent(1L));
+
+        // The load read the form before it changed
+        FormSearchSource before = new FormSearchSource(1L, "Draft survey", null, owner.getId(), true, START.plusMinutes(1));
+        when(formRepository.findSearchSourcesAfter(anyLong(), any(Pageable.class)))
+                .thenReturn(List.of(before))
+                .thenReturn(List.of());
+        index.load();
+
+        assertThat(index.search("final", owner, 0, 10)).containsExactly(1L);
+        assertThat(index.search("draft", owner, 0, 10)).isEmpty();
+    }
+
+    /**
+     * Reindex a form on another thread, which reads the form as it is now and only applies the read
+     * once the given change has been made and reindexed.
+     */
+    private void reindexOvertakenBy(Long formId, Runnable change) throws Exception {
+        FormSearchSource current = sources.get(formId);
+        CountDownLatch read = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(formRepository.findSearchSourceById(formId))
+                .thenAnswer(invocation -> {
+                    read.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return Optional.of(current);
+                })
+                .thenAnswer(invocation -> Optional.ofNullable(sources.get(formId)));
+
+        CompletableFuture<Void> stale = CompletableFuture.runAsync(() -> index.onFormChanged(new FormChangedEvent(formId)));
+        assertThat(read.await(5, TimeUnit.SECONDS)).isTrue();
+        change.run();
+        release.countDown();
+        stale.get(5, TimeUnit.SECONDS);
+    }
+
+    private void form(Long id, String title, String description, boolean active, long minutes, String... fields) {
+        sources.put(id, new FormSearchSource(id, title, description, owner.getId(), active, START.plusMinutes(minutes)));
+        fieldNames.put(id, List.of(fields));
+    }
+
+    private static <T> Map<Long, T> between(Map<Long, T> byFormId, long firstId, long lastId) {
+        Map<Long, T> range = new ConcurrentSkipListMap<>();
+        byFormId.forEach((formId, value) -> {
+            if (formId >= firstId && formId <= lastId) {
+                range.put(formId, value);
+            }
+        });
+        return range;
+    }
+
+    private static FormFieldRepository.FieldName fieldName(Long formId, String name) {
+        return new FormFieldRepository.FieldName() {
+            @Override
+            public Long getFormId() {
+                return formId;
+            }
+
+            @Override
+            public String getFieldName() {
+                return name;
+            }
+        };
+    }
+
+    private static FormAccessRepository.Grant grant(Long formId, Long userId) {
+        return new FormAccessRepository.Grant() {
+            @Override
+            public Long getFormId() {
+                return formId;
+            }
+
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+        };
+    }
+
+    private static User user(Long id, UserRole role) {
+        return User.builder().id(id).username("user" + id).role(role).build();
+    }
+}
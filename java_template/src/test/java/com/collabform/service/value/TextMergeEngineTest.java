@@ -0,0 +1,158 @@
+package com.collabform.service.value;
+
+import com.collabform.dto.TextEdit;
+import com.collabform.utils.TextPatches;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TextMergeEngineTest {
+
+    private static final Long RESPONSE_ID = 1L;
+    private static final Long FIELD_ID = 10L;
+
+    private TextMergeEngine engine;
+
+    // The stored value and its revision, as a value store would keep them
+    private String value;
+    private long revision;
+
+    @BeforeEach
+    void createEngine() {
+        engine = new TextMergeEngine();
+        ReflectionTestUtils.setField(engine, "historySize", 3);
+        ReflectionTestUtils.setField(engine, "historyIdleMs", 600_000L);
+        value = "The quick brown fox";
+        revision = 0;
+    }
+
+    @Test
+    void aPatchAgainstTheCurrentRevisionIsKept() {
+        List<TextEdit> edits = List.of(new TextEdit(4, 5, "slow"));
+
+        assertThat(engine.rebase(RESPONSE_ID, FIELD_ID, 0, 0, edits)).isSameAs(edits);
+    }
+
+    @Test
+    void mergesConcurrentPatches() {
+        write(List.of(new TextEdit(4, 5, "slow")));
+        write(List.of(new TextEdit(0, 0, ">> ")));
+
+        // Made against revision 0, before both writes
+        write(engine.rebase(RESPONSE_ID, FIELD_ID, 0, revision, List.of(new TextEdit(16, 3, "cat"))));
+
+        assertThat(value).isEqualTo(">> The slow brown cat");
+    }
+
+    @Test
+    void mergingInEitherOrderGivesTheSameText() {
+        List<TextEdit> first = List.of(new TextEdit(4, 11, ""));
+        List<TextEdit> second = List.of(new TextEdit(10, 9, "cat"), new TextEdit(0, 0, "> "));
+
+        write(first);
+        write(engine.rebase(RESPONSE_ID, FIELD_ID, 0, revision, second));
+        String merged = value;
+
+        createEngine();
+        write(second);
+        write(engine.rebase(RESPONSE_ID, FIELD_ID, 0, revision, first));
+
+        assertThat(value).isEqualTo(merged).isEqualTo("> The cat");
+    }
+
+    @Test
+    void theFirstMergedInsertAtAPositionComesFirst() {
+        write(List.of(new TextEdit(4, 0, "very ")));
+        write(engine.rebase(RESPONSE_ID, FIELD_ID, 0, revision, List.of(new TextEdit(4, 0, "rather "))));
+
+        assertThat(value).isEqualTo("The very rather quick brown fox");
+    }
+
+    @Test
+    void aPatchBasedOnAnIntermediateRevisionIsOnlyTransformedAgainstLaterWrites() {
+        write(List.of(new TextEdit(4, 5, "slow")));
+        String seen = value;
+        write(List.of(new TextEdit(0, 0, ">> ")));
+
+        // Made against revision 1, which already contains "slow"
+        List<TextEdit> edits = List.of(new TextEdit(seen.length(), 0, "!"));
+        write(engine.rebase(RESPONSE_ID, FIELD_ID, 1, revision, edits));
+
+        assertThat(value).isEqualTo(">> The slow brown fox!");
+    }
+
+    @Test
+    void refusesAPatchOlderThanTheTrimmedHistory() {
+        for (int i = 0; i < 4; i++) {
+            write(List.of(new TextEdit(0, 0, String.valueOf(i))));
+        }
+
+        assertThatThrownBy(() -> engine.rebase(RESPONSE_ID, FIELD_ID, 0, revision, List.of(new TextEdit(0, 0, "x"))))
+                .isInstanceOf(IllegalStateException.class);
+        // The three latest operations are kept
+        List<TextEdit> rebased = engine.rebase(RESPONSE_ID, FIELD_ID, 1, revision, List.of(new TextEdit(1, 0, "x")));
+        assertThat(TextPatches.apply(value, rebased)).isEqualTo("3210xThe quick brown fox");
+    }
+
+    @Test
+    void refusesAPatchAcrossRevisionsWrittenElsewhere() {
+        write(List.of(new TextEdit(0, 0, "a")));
+        // Revision 2 was written through another node, revision 3 through this one
+        value = "b" + value;
+        revision++;
+        write(List.of(new TextEdit(0, 0, "c")));
+
+        assertThatThrownBy(() -> engine.rebase(RESPONSE_ID, FIELD_ID, 1, revision, List.of(new TextEdit(0, 0, "x"))))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(engine.rebase(RESPONSE_ID, FIELD_ID, 2, revision, List.of(new TextEdit(0, 0, "x"))))
+                .containsExactly(new TextEdit(1, 0, "x"));
+    }
+
+    @Test
+    void refusesAPatchWhenTheCurrentRevisionIsNotInTheHistory() {
+        write(List.of(new TextEdit(0, 0, "a")));
+
+        assertThatThrownBy(() -> engine.rebase(RESPONSE_ID, FIELD_ID, 0, revision + 1, List.of(new TextEdit(0, 0, "x"))))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> engine.rebase(RESPONSE_ID, 11L, 0, 1, List.of(new TextEdit(0, 0, "x"))))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void rejectsUnknownBaseRevisionsAndPatchesThatDoNotFit() {
+        write(List.of(new TextEdit(0, 0, "a")));
+
+        assertThatThrownBy(() -> engine.rebase(RESPONSE_ID, FIELD_ID, 2, 1, List.of(new TextEdit(0, 0, "x"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> engine.rebase(RESPONSE_ID, FIELD_ID, -1, 1, List.of(new TextEdit(0, 0, "x"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        // Revision 0 is 19 characters long
+        assertThatThrownBy(() -> engine.rebase(RESPONSE_ID, FIELD_ID, 0, 1, List.of(new TextEdit(20, 0, "x"))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void sweepDropsIdleHistories() {
+        write(List.of(new TextEdit(0, 0, "a")));
+        write(List.of(new TextEdit(0, 0, "b")));
+
+        engine.sweepIdle();
+        assertThat(engine.rebase(RESPONSE_ID, FIELD_ID, 1, revision, List.of(new TextEdit(0, 0, "x")))).isNotEmpty();
+
+        ReflectionTestUtils.setField(engine, "historyIdleMs", -1L);
+        engine.sweepIdle();
+        assertThatThrownBy(() -> engine.rebase(RESPONSE_ID, FIELD_ID, 1, revision, List.of(new TextEdit(0, 0, "x"))))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private void write(List<TextEdit> edits) {
+        String previous = value;
+        value = TextPatches.apply(previous, edits);
+        engine.record(RESPONSE_ID, FIELD_ID, ++revision, previous, edits);
+    }
+}
@@ -0,0 +1,183 @@
+package com.collabform.utils;
+
+import com.collabform.dto.TextEdit;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TextOperationTest {
+
+    private static final String BASE = "The quick brown fox";
+
+    @Test
+    void roundTripsAPatch() {
+        List<TextEdit> edits = List.of(
+                new TextEdit(4, 5, "slow"),
+                new TextEdit(0, 0, ">> "),
+                new TextEdit(21, 0, "!"));
+
+        TextOperation operation = TextOperation.fromEdits(BASE.length(), edits);
+
+        assertThat(operation.getBaseLength()).isEqualTo(BASE.length());
+        assertThat(operation.getTargetLength()).isEqualTo(TextPatches.apply(BASE, edits).length());
+        assertThat(TextPatches.apply(BASE, operation.toEdits())).isEqualTo(">> The slow brown fox!");
+    }
+
+    @Test
+    void aPatchThatChangesNothingHasNoEdits() {
+        TextOperation operation = TextOperation.fromEdits(BASE.length(), List.of(new TextEdit(3, 0, "")));
+
+        assertThat(operation.toEdits()).isEmpty();
+    }
+
+    @Test
+    void rejectsEditsOutsideTheText() {
+        assertThatThrownBy(() -> TextOperation.fromEdits(5, List.of(new TextEdit(4, 2, ""))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TextOperation.fromEdits(5, List.of(new TextEdit(6, 0, "x"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TextOperation.fromEdits(5, List.of(new TextEdit(-1, 0, "x"))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void composeHasTheEffectOfBothOperations() {
+        TextOperation first = operation(BASE, 4, 5, "slow");
+        String middle = TextPatches.apply(BASE, first.toEdits());
+        TextOperation second = TextOperation.fromEdits(middle.length(), List.of(
+                new TextEdit(8, 6, "ish red"),
+                new TextEdit(0, 4, "")));
+
+        TextOperation composed = TextOperation.compose(first, second);
+
+        assertThat(TextPatches.apply(BASE, composed.toEdits()))
+                .isEqualTo(TextPatches.apply(middle, second.toEdits()))
+                .isEqualTo("slowish red fox");
+    }
+
+    @Test
+    void composeDeletesWhatTheFirstInserted() {
+        TextOperation first = operation(BASE, 4, 0, "very ");
+        TextOperation second = operation(TextPatches.apply(BASE, first.toEdits()), 2, 10, "");
+
+        TextOperation composed = TextOperation.compose(first, second);
+
+        assertThat(TextPatches.apply(BASE, composed.toEdits())).isEqualTo("Thck brown fox");
+    }
+
+    @Test
+    void composeRejectsOperationsThatDoNotFollowEachOther() {
+        TextOperation first = operation(BASE, 0, 0, "A ");
+
+        assertThatThrownBy(() -> TextOperation.compose(first, operation(BASE, 0, 0, "B ")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void concurrentEditsConvergeInBothOrders() {
+        // Replace "quick" and "fox" concurrently
+        assertConverges(operation(BASE, 4, 5, "slow"), operation(BASE, 16, 3, "cat"), "The slow brown cat");
+        // Insert inside a range the other deletes
+        assertConverges(operation(BASE, 4, 6, ""), operation(BASE, 7, 0, "XX"), "The XXbrown fox");
+        // Insert right where the other's delete ends
+        assertConverges(operation(BASE, 4, 6, "a "), operation(BASE, 10, 0, "big "), "The a big brown fox");
+    }
+
+    @Test
+    void overlappingDeletesRemoveTheUnionOnce() {
+        // "quick brown" and "brown fox"
+        assertConverges(operation(BASE, 4, 11, ""), operation(BASE, 10, 9, ""), "The ");
+        // One delete inside the other
+        assertConverges(operation(BASE, 4, 15, ""), operation(BASE, 10, 5, ""), "The ");
+        // The same delete twice
+        assertConverges(operation(BASE, 4, 6, ""), operation(BASE, 4, 6, ""), "The brown fox");
+    }
+
+    @Test
+    void insertsAtTheSamePositionPutTheEarlierTextFirst() {
+        TextOperation earlier = operation(BASE, 4, 0, "very ");
+        TextOperation later = operation(BASE, 4, 0, "rather ");
+
+        String merged = TextPatches.apply(TextPatches.apply(BASE, earlier.toEdits()),
+                TextOperation.transform(earlier, later).toEdits());
+        String reversed = TextPatches.apply(TextPatches.apply(BASE, later.toEdits()),
+                TextOperation.transform(later, earlier).toEdits());
+
+        assertThat(merged).isEqualTo("The very rather quick brown fox");
+        assertThat(reversed).isEqualTo("The rather very quick brown fox");
+    }
+
+    @Test
+    void anInsertWhereTheEarlierOperationReplacedTextFollowsTheReplacement() {
+        TextOperation earlier = operation(BASE, 4, 5, "slow");
+        TextOperation later = operation(BASE, 4, 0, "very ");
+
+        String merged = TextPatches.apply(TextPatches.apply(BASE, earlier.toEdits()),
+                TextOperation.transform(earlier, later).toEdits());
+
+        assertThat(merged).isEqualTo("The slowvery  brown fox");
+    }
+
+    @Test
+    void transformRejectsOperationsOnDifferentTexts() {
+        assertThatThrownBy(() -> TextOperation.transform(operation(BASE, 0, 0, "A"), operation("abc", 0, 0, "B")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void randomConcurrentSplicesConverge() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2_000; i++) {
+            String base = randomText(random, random.nextInt(20));
+            TextOperation a = randomSplice(random, base);
+            TextOperation b = randomSplice(random, base);
+            List<TextEdit> aEdits = a.toEdits();
+            List<TextEdit> bEdits = b.toEdits();
+            if (!aEdits.isEmpty() && !bEdits.isEmpty() && insertsAtSamePosition(aEdits.get(0), bEdits.get(0))) {
+                // Ties are ordered by which operation came first, see the test above
+                continue;
+            }
+            String expected = TextPatches.apply(TextPatches.apply(base, aEdits),
+                    TextOperation.transform(a, b).toEdits());
+            assertConverges(a, b, base, expected);
+        }
+    }
+
+    private static void assertConverges(TextOperation a, TextOperation b, String expected) {
+        assertConverges(a, b, BASE, expected);
+    }
+
+    private static void assertConverges(TextOperation a, TextOperation b, String base, String expected) {
+        String aThenB = TextPatches.apply(TextPatches.apply(base, a.toEdits()), TextOperation.transform(a, b).toEdits());
+        String bThenA = TextPatches.apply(TextPatches.apply(base, b.toEdits()), TextOperation.transform(b, a).toEdits());
+
+        assertThat(aThenB).as("a then b on \"%s\"", base).isEqualTo(expected);
+        assertThat(bThenA).as("b then a on \"%s\"", base).isEqualTo(expected);
+    }
+
+    private static TextOperation operation(String base, int position, int deleteCount, String insert) {
+        return TextOperation.fromEdits(base.length(), List.of(new TextEdit(position, deleteCount, insert)));
+    }
+
+    private static boolean insertsAtSamePosition(TextEdit a, TextEdit b) {
+        return a.getPosition() == b.getPosition() && !a.getInsert().isEmpty() && !b.getInsert().isEmpty();
+    }
+
+    private static TextOperation randomSplice(Random random, String base) {
+        int position = random.nextInt(base.length() + 1);
+        int deleteCount = random.nextInt(base.length() - position + 1);
+        return operation(base, position, deleteCount, randomText(random, random.nextInt(4)));
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+}
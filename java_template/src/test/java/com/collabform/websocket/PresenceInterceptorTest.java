@@ -0,0 +1,106 @@
+package com.collabform.websocket;
+
+import com.collabform.dto.websocket.RosterMessage;
+import com.collabform.model.User;
+import com.collabform.model.UserRole;
+import com.collabform.service.access.AccessDecision;
+import com.collabform.service.access.AccessDecisionCache;
+import com.collabform.service.presence.PresenceRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class PresenceInterceptorTest {
+
+    private static final Long FORM_ID = 7L;
+
+    private final User alice = User.builder().id(1L).username("alice").role(UserRole.USER).build();
+
+    private TopicBroadcaster topicBroadcaster;
+    private AccessDecisionCache accessDecisionCache;
+    private PresenceRegistry presenceRegistry;
+    private PresenceInterceptor interceptor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void createInterceptor() {
+        topicBroadcaster = mock(TopicBroadcaster.class);
+        accessDecisionCache = mock(AccessDecisionCache.class);
+        presenceRegistry = mock(PresenceRegistry.class);
+        ObjectProvider<PresenceRegistry> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(presenceRegistry);
+        interceptor = new PresenceInterceptor(topicBroadcaster, accessDecisionCache, provider);
+    }
+
+    @Test
+    void joinsSubscribersWithAccessAndSendsTheRoster() {
+        RosterMessage roster = RosterMessage.create(FORM_ID, 1, List.of());
+        when(accessDecisionCache.get(FORM_ID, alice.getId())).thenReturn(Optional.of(decision(true)));
+        when(presenceRegistry.join("session-1", "sub-0", FORM_ID, alice)).thenReturn(roster);
+
+        interceptor.afterMessageHandled(subscribe(alice), null, mock(SimpleBrokerMessageHandler.class), null);
+
+        verify(topicBroadcaster).sendToSession("session-1", "sub-0", "/topic/form/" + FORM_ID, roster);
+    }
+
+    @Test
+    void doesNotJoinSubscribersWithoutAccess() {
+        when(accessDecisionCache.get(FORM_ID, alice.getId())).thenReturn(Optional.of(decision(false)));
+
+        interceptor.afterMessageHandled(subscribe(alice), null, mock(SimpleBrokerMessageHandler.class), null);
+
+        verify(presenceRegistry, never()).join(anyString(), anyString(), anyLong(), any());
+        verifyNoInteractions(topicBroadcaster);
+    }
+
+    @Test
+    void doesNotJoinSubscribersOfAMissingForm() {
+        when(accessDecisionCache.get(FORM_ID, alice.getId())).thenReturn(Optional.empty());
+
+        interceptor.afterMessageHandled(subscribe(alice), null, mock(SimpleBrokerMessageHandler.class), null);
+
+        verify(presenceRegistry, never()).join(anyString(), anyString(), anyLong(), any());
+    }
+
+    @Test
+    void joinsAdministratorsWithoutAnAccessDecision() {
+        User admin = User.builder().id(2L).username("admin").role(UserRole.ADMIN).build();
+
+        interceptor.afterMessageHandled(subscribe(admin), null, mock(SimpleBrokerMessageHandler.class), null);
+
+        verify(presenceRegistry).join(eq("session-1"), eq("sub-0"), eq(FORM_ID), eq(admin));
+        verifyNoInteractions(accessDecisionCache);
+    }
+
+    private Message<byte[]> subscribe(User user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId("session-1");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination("/topic/form/" + FORM_ID);
+        accessor.setUser(new UsernamePasswordAuthenticationToken(user, null, List.of()));
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static AccessDecision decision(boolean accessible) {
+        return new AccessDecision(FORM_ID, 3L, 5L, accessible);
+    }
+}
@@ -0,0 +1,134 @@
+package com.collabform.websocket;
+
+import com.collabform.dto.TextEdit;
+import com.collabform.dto.websocket.FieldUpdateMessage;
+import com.collabform.dto.websocket.LockReleasedMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionOutboxTest {
+
+    private static final String SUBSCRIPTION = "sub-0";
+    private static final Long NAME_FIELD = 10L;
+    private static final Long EMAIL_FIELD = 11L;
+    private static final Long ALICE = 1L;
+    private static final Long BOB = 2L;
+
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final SessionOutbox.Stats stats = new SessionOutbox.Stats();
+
+    private WebSocketSession delegate;
+    private SessionOutbox outbox;
+
+    @BeforeEach
+    void createOutbox() {
+        delegate = mock(WebSocketSession.class);
+        when(delegate.getId()).thenReturn("session-1");
+        // Drain tasks only run when the test says so, so frames pile up as for a slow client
+        outbox = new SessionOutbox(delegate, tasks::add, new SessionOutbox.Limits(100, 1_000_000, 10_000, 60_000), stats);
+    }
+
+    @Test
+    void aFullValueReplacesThePendingValueAndThePatchesBasedOnIt() throws Exception {
+        offer("v1", full(NAME_FIELD, ALICE));
+        offer("p1", patch(NAME_FIELD, ALICE));
+        offer("p2", patch(NAME_FIELD, BOB));
+        offer("v2", full(NAME_FIELD, BOB));
+
+        assertThat(drain()).containsExactly("v2");
+        assertThat(stats.coalesced.sum()).isEqualTo(3);
+    }
+
+    @Test
+    void patchesAreKeptInOrderBehindTheirBase() throws Exception {
+        offer("v1", full(NAME_FIELD, ALICE));
+        offer("p1", patch(NAME_FIELD, ALICE));
+        offer("p2", patch(NAME_FIELD, BOB));
+
+        assertThat(drain()).containsExactly("v1", "p1", "p2");
+        assertThat(stats.coalesced.sum()).isZero();
+    }
+
+    @Test
+    void aFullValueReplacesPatchesWhoseBaseWasAlreadySent() throws Exception {
+        offer("v1", full(NAME_FIELD, ALICE));
+        assertThat(drain()).containsExactly("v1");
+
+        offer("p1", patch(NAME_FIELD, ALICE));
+        offer("v2", full(NAME_FIELD, ALICE));
+        offer("p2", patch(NAME_FIELD, ALICE));
+
+        assertThat(drain()).containsExactly("v1", "v2", "p2");
+    }
+
+    @Test
+    void otherFieldsAndEventsAreNotReplaced() throws Exception {
+        offer("name v1", full(NAME_FIELD, ALICE));
+        offer("email p1", patch(EMAIL_FIELD, ALICE));
+        offer("unlocked", LockReleasedMessage.builder().type("LOCK_RELEASED").fieldId(NAME_FIELD).userId(ALICE).build());
+        offer("name v2", full(NAME_FIELD, ALICE));
+
+        assertThat(drain()).containsExactly("email p1", "unlocked", "name v2");
+    }
+
+    @Test
+    void previewsAreReplacedPerUserAndDiscardedByTheirAuthorsUpdate() throws Exception {
+        offer("alice typing 1", preview(NAME_FIELD, ALICE));
+        offer("bob typing", preview(NAME_FIELD, BOB));
+        offer("alice typing 2", preview(NAME_FIELD, ALICE));
+        assertThat(outbox.getQueueDepth()).isEqualTo(2);
+
+        offer("alice p1", patch(NAME_FIELD, ALICE));
+
+        assertThat(drain()).containsExactly("bob typing", "alice p1");
+    }
+
+    private void offer(String label, Object payload) {
+        outbox.offer(new TextMessage(label), SUBSCRIPTION, payload);
+    }
+
+    /**
+     * Run the pending drain tasks.
+     *
+     * @return The labels of every frame written so far, in order
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> drain() throws Exception {
+        List<Runnable> scheduled = new ArrayList<>(tasks);
+        tasks.clear();
+        scheduled.forEach(Runnable::run);
+
+        ArgumentCaptor<WebSocketMessage<?>> frames = ArgumentCaptor.forClass(WebSocketMessage.class);
+        verify(delegate, atLeast(0)).sendMessage(frames.capture());
+        return frames.getAllValues().stream()
+                .map(frame -> ((TextMessage) frame).getPayload())
+                .toList();
+    }
+
+    private static FieldUpdateMessage full(Long fieldId, Long userId) {
+        return FieldUpdateMessage.builder().type("FIELD_UPDATE").fieldId(fieldId).userId(userId).value("value").build();
+    }
+
+    private static FieldUpdateMessage patch(Long fieldId, Long userId) {
+        return FieldUpdateMessage.builder().type("FIELD_UPDATE").fieldId(fieldId).userId(userId)
+                .edits(List.of(new TextEdit(0, 0, "x"))).build();
+    }
+
+    private static FieldUpdateMessage preview(Long fieldId, Long userId) {
+        return FieldUpdateMessage.builder().type("FIELD_UPDATE").fieldId(fieldId).userId(userId).value("typing")
+                .isTemporary(true).build();
+    }
+}
@@ -0,0 +1,113 @@
+package com.collabform.websocket;
+
+import com.collabform.model.User;
+import com.collabform.model.UserRole;
+import com.collabform.service.FormResponseService;
+import com.collabform.service.access.AccessDecision;
+import com.collabform.service.access.AccessDecisionCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class SubscriptionResumeInterceptorTest {
+
+    private static final Long FORM_ID = 7L;
+
+    private final User alice = User.builder().id(1L).username("alice").role(UserRole.USER).build();
+
+    private AccessDecisionCache accessDecisionCache;
+    private SubscriptionResumeInterceptor interceptor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void createInterceptor() {
+        accessDecisionCache = mock(AccessDecisionCache.class);
+        interceptor = new SubscriptionResumeInterceptor(mock(FormEventLog.class), mock(TopicBroadcaster.class),
+                accessDecisionCache, mock(ObjectProvider.class));
+        ReflectionTestUtils.setField(interceptor, "brokerMode", "simple");
+    }
+
+    @Test
+    void refusesAFormSubscriptionWithoutAccess() {
+        when(accessDecisionCache.get(FORM_ID, alice.getId())).thenReturn(Optional.of(decision(false)));
+
+        assertThatThrownBy(() -> interceptor.preSend(subscribe("/topic/form/" + FORM_ID, alice, null), null))
+                .isInstanceOf(AccessDeniedException.class);
+        assertThatThrownBy(() -> interceptor.preSend(subscribe("/topic/form/" + FORM_ID, alice, "12"), null))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void refusesASubscriptionToAMissingForm() {
+        when(accessDecisionCache.get(FORM_ID, alice.getId())).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> interceptor.preSend(subscribe("/topic/form/" + FORM_ID, alice, null), null))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void refusesAFormSubscriptionWithoutAUser() {
+        assertThatThrownBy(() -> interceptor.preSend(subscribe("/topic/form/" + FORM_ID, null, null), null))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void letsSubscriptionsWithAccessThrough() {
+        when(accessDecisionCache.get(FORM_ID, alice.getId())).thenReturn(Optional.of(decision(true)));
+        Message<byte[]> message = subscribe("/topic/form/" + FORM_ID, alice, null);
+
+        assertThat(interceptor.preSend(message, null)).isSameAs(message);
+    }
+
+    @Test
+    void letsAdministratorsSubscribeWithoutAnAccessDecision() {
+        User admin = User.builder().id(2L).username("admin").role(UserRole.ADMIN).build();
+        Message<byte[]> message = subscribe("/topic/form/" + FORM_ID, admin, "3");
+
+        assertThat(interceptor.preSend(message, null)).isSameAs(message);
+        verifyNoInteractions(accessDecisionCache);
+    }
+
+    @Test
+    void doesNotCheckOtherDestinations() {
+        Message<byte[]> message = subscribe("/user/queue/errors", alice, null);
+
+        assertThat(interceptor.preSend(message, null)).isSameAs(message);
+        verifyNoInteractions(accessDecisionCache);
+    }
+
+    private Message<byte[]> subscribe(String destination, User user, String resumeFrom) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId("session-1");
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination(destination);
+        if (user != null) {
+            accessor.setUser(new UsernamePasswordAuthenticationToken(user, null, List.of()));
+        }
+        if (resumeFrom != null) {
+            accessor.setNativeHeader(SubscriptionResumeInterceptor.RESUME_HEADER, resumeFrom);
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static AccessDecision decision(boolean accessible) {
+        return new AccessDecision(FORM_ID, 3L, 5L, accessible);
+    }
+}
@@ -0,0 +1,301 @@
+package com.collabform.websocket;
+
+import com.collabform.dto.websocket.LockAcquiredMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the per-subscriber cost of a form topic broadcast through the simple broker, which
+ * converts and STOMP-encodes the message for every subscriber, with {@link TopicBroadcaster},
+ * which serializes it once and shares the encoded frame. Both paths write asynchronously, as
+ * they do in the application: the broker through a pooled client outbound channel, the
+ * broadcaster through the sessions' outboxes. Reported are the time the sending thread spends
+ * and the time until every frame has been written, each per subscriber and message.
+ * <p>
+ * Timings are printed rather than asserted, so a busy build machine cannot fail the build; run
+ * {@code mvn test -Dtest=TopicBroadcasterBenchmarkTest} to read them. Both paths are checked to
+ * deliver every frame.
+ */
+class TopicBroadcasterBenchmarkTest {
+
+    private static final String DESTINATION = "/topic/form/1";
+    private static final int[] SUBSCRIBERS = {10, 100, 1000};
+    private static final int MESSAGES = 100;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 5;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Object payload = LockAcquiredMessage.create(1L, 2L, "alice", 3L, "Full name",
+            System.currentTimeMillis() + 30_000, 1_700_000_000_000_000L);
+
+    private SimpleBrokerMessageHandler broker;
+    private ThreadPoolTaskExecutor outboundExecutor;
+    private TopicBroadcaster broadcaster;
+
+    @AfterEach
+    void stop() {
+        if (broadcaster != null) {
+            broadcaster.stop();
+        }
+        if (outboundExecutor != null) {
+            outboundExecutor.shutdown();
+        }
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    @Test
+    void encodingOnceLowersThePerSubscriberCost() throws Exception {
+        for (int subscribers : SUBSCRIBERS) {
+            Result before = measureBroker(subscribers);
+            Result after = measureBroadcaster(subscribers);
+            System.out.printf("TopicBroadcaster benchmark: %4d subscribers, sender %6.0f -> %6.0f ns/subscriber, "
+                            + "delivered %6.0f -> %6.0f ns/subscriber%n",
+                    subscribers, before.senderNanos, after.senderNanos, before.deliveredNanos, after.deliveredNanos);
+        }
+    }
+
+    /**
+     * The path before encode-once broadcasting: the messaging template converts the payload, and the
+     * broker hands a message per subscriber to the STOMP handler, which encodes and writes it.
+     */
+    private Result measureBroker(int subscribers) {
+        // Spring's default client outbound channel: a pool of twice as many threads as processors
+        outboundExecutor = new ThreadPoolTaskExecutor();
+        outboundExecutor.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+        outboundExecutor.setMaxPoolSize(Integer.MAX_VALUE);
+        outboundExecutor.setThreadNamePrefix("client-outbound-");
+        outboundExecutor.initialize();
+        ExecutorSubscribableChannel outboundChannel = new ExecutorSubscribableChannel(outboundExecutor);
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        startBroker(outboundChannel, brokerChannel);
+
+        Map<String, CountingSession> sessions = subscribe(subscribers);
+        StompSubProtocolHandler stompHandler = new StompSubProtocolHandler();
+        outboundChannel.subscribe(message ->
+                stompHandler.handleMessageToClient(sessions.get(SimpMessageHeaderAccessor.getSessionId(message.getHeaders())), message));
+
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        SimpMessagingTemplate template = new SimpMessagingTemplate(brokerChannel);
+        template.setMessageConverter(converter);
+
+        return measure(sessions, subscribers, () -> template.convertAndSend(DESTINATION, payload));
+    }
+
+    private Result measureBroadcaster(int subscribers) throws Exception {
+        startBroker(new ExecutorSubscribableChannel(), new ExecutorSubscribableChannel());
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("simpleBroker", broker);
+
+        broadcaster = new TopicBroadcaster(objectMapper, beanFactory.getBeanProvider(SimpleBrokerMessageHandler.class));
+        ReflectionTestUtils.setField(broadcaster, "encodeOnce", true);
+        ReflectionTestUtils.setField(broadcaster, "sendTimeLimitMs", 10_000);
+        ReflectionTestUtils.setField(broadcaster, "sendBufferSize", Integer.MAX_VALUE);
+        ReflectionTestUtils.setField(broadcaster, "queueCapacity", MESSAGES * 2);
+        ReflectionTestUtils.setField(broadcaster, "typingMaxAgeMs", 2_000L);
+        broadcaster.start();
+
+        Map<String, CountingSession> sessions = subscribe(subscribers);
+        WebSocketHandler handler = broadcaster.decorate(new TextWebSocketHandler());
+        for (CountingSession session : sessions.values()) {
+            handler.afterConnectionEstablished(session);
+        }
+
+        return measure(sessions, subscribers, () -> assertThat(broadcaster.broadcast(DESTINATION, payload)).isTrue());
+    }
+
+    private void startBroker(ExecutorSubscribableChannel outboundChannel, ExecutorSubscribableChannel brokerChannel) {
+        if (broker != null) {
+            broker.stop();
+        }
+        broker = new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(), outboundChannel, brokerChannel,
+                List.of("/topic"));
+        broker.start();
+    }
+
+    private Map<String, CountingSession> subscribe(int subscribers) {
+        Map<String, CountingSession> sessions = new HashMap<>();
+        for (int i = 0; i < subscribers; i++) {
+            String sessionId = "session-" + i;
+            sessions.put(sessionId, new CountingSession(sessionId));
+
+            // The broker only delivers to sessions it has seen connect
+            SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+            connect.setSessionId(sessionId);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            accessor.setSessionId(sessionId);
+            accessor.setSubscriptionId("sub-0");
+            accessor.setDestination(DESTINATION);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+        }
+        return sessions;
+    }
+
+    private Result measure(Map<String, CountingSession> sessions, int subscribers, Runnable send) {
+        long expected = 0;
+        long sending = 0;
+        long delivering = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < MESSAGES; i++) {
+                send.run();
+            }
+            long sent = System.nanoTime();
+            expected += (long) MESSAGES * subscribers;
+            awaitDelivered(sessions, expected);
+            if (round >= WARMUP_ROUNDS) {
+                sending += sent - start;
+                delivering += System.nanoTime() - start;
+            }
+        }
+        for (CountingSession session : sessions.values()) {
+            assertThat(session.frames.get()).isEqualTo((long) (WARMUP_ROUNDS + ROUNDS) * MESSAGES);
+        }
+        double frames = (double) ROUNDS * MESSAGES * subscribers;
+        return new Result(sending / frames, delivering / frames);
+    }
+
+    private void awaitDelivered(Map<String, CountingSession> sessions, long expected) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (sessions.values().stream().mapToLong(session -> session.frames.get()).sum() < expected) {
+            assertThat(System.nanoTime()).as("frames delivered in time").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Average nanoseconds per frame spent by the sending thread, and until the frame was written.
+     */
+    private record Result(double senderNanos, double deliveredNanos) {
+    }
+
+    /**
+     * A connection that accepts every frame at once and only counts them.
+     */
+    private static final class CountingSession implements WebSocketSession {
+
+        private final String id;
+        private final AtomicLong frames = new AtomicLong();
+        private final Map<String, Object> attributes = new HashMap<>();
+
+        CountingSession(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            frames.incrementAndGet();
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public URI getUri() {
+            return null;
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return "v12.stomp";
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+        }
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void close(CloseStatus status) {
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.collabform.websocket.relay;
+
+import com.collabform.CollabFormApplication;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs two nodes in one JVM in relay mode, sharing a database, with the first one hosting the
+ * embedded STOMP broker: a field written through one node must reach a subscriber of the other,
+ * and a subscriber that resumes on the other node gets a snapshot followed by live events.
+ */
+class BrokerRelayIntegrationTest {
+
+    private static final ParameterizedTypeReference<Map<String, Object>> JSON_OBJECT =
+            new ParameterizedTypeReference<>() {
+            };
+
+    private static ConfigurableApplicationContext brokerNode;
+    private static ConfigurableApplicationContext relayNode;
+
+    private final RestTemplate rest = new RestTemplate();
+
+    @BeforeAll
+    static void startNodes() throws IOException {
+        int brokerPort = freePort();
+        String database = "jdbc:h2:mem:relay-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        // The broker is bound while the first node starts, before the second one connects to it
+        brokerNode = startNode("a", database, brokerPort, true);
+        relayNode = startNode("b", database, brokerPort, false);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (relayNode != null) {
+            relayNode.close();
+        }
+        if (brokerNode != null) {
+            brokerNode.close();
+        }
+    }
+
+    @Test
+    void fieldWrittenOnOneNodeReachesSubscriberOnTheOther() throws Exception {
+        String token = register("relay" + System.nanoTime());
+        HttpHeaders headers = authorized(token);
+        Map<String, Object> form = createForm(headers);
+        Object formId = form.get("id");
+        Object fieldId = firstFieldId(form);
+
+        BlockingQueue<Map<String, Object>> received = new LinkedBlockingQueue<>();
+        WebSocketStompClient stompClient = stompClient();
+        StompSession session = connect(stompClient, relayNode, token);
+        try {
+            subscribe(session, "/topic/form/" + formId, null, received);
+            Object fencingToken = lock(headers, formId, fieldId);
+
+            // The subscription travels through the broker asynchronously, so write until it is seen
+            Map<String, Object> update = null;
+            long deadline = System.currentTimeMillis() + 15_000;
+            for (int attempt = 0; update == null && System.currentTimeMillis() < deadline; attempt++) {
+                write(headers, formId, fieldId, "from node a #" + attempt, fencingToken);
+                update = awaitMessage(received, "FIELD_UPDATE", 500);
+            }
+
+            assertThat(update).as("FIELD_UPDATE relayed to the other node").isNotNull();
+            assertThat(update.get("formId")).isEqualTo(formId);
+            assertThat(update.get("fieldId")).isEqualTo(fieldId);
+            assertThat((String) update.get("value")).startsWith("from node a #");
+        } finally {
+            session.disconnect();
+            stompClient.stop();
+        }
+    }
+
+    @Test
+    void resumedSubscriptionGetsSnapshotOnceTheBrokerHasRegisteredIt() throws Exception {
+        String token = register("resume" + System.nanoTime());
+        HttpHeaders headers = authorized(token);
+        Map<String, Object> form = createForm(headers);
+        Object formId = form.get("id");
+        Object fieldId = firstFieldId(form);
+        Object fencingToken = lock(headers, formId, fieldId);
+        write(headers, formId, fieldId, "before resuming", fencingToken);
+
+        BlockingQueue<Map<String, Object>> received = new LinkedBlockingQueue<>();
+        WebSocketStompClient stompClient = stompClient();
+        StompSession session = connect(stompClient, relayNode, token);
+        try {
+            // Sequences of node b say nothing about the events node a published, so there is no replay
+            subscribe(session, "/topic/form/" + formId, "0", received);
+
+            Map<String, Object> snapshot = awaitMessage(received, "SNAPSHOT", 10_000);
+            assertThat(snapshot).as("SNAPSHOT sent to the resuming subscriber").isNotNull();
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> values = (List<Map<String, Object>>) snapshot.get("values");
+            assertThat(values).extracting(value -> value.get("value")).contains("before resuming");
+
+            // The snapshot follows the broker's receipt, so the next event reaches the subscriber
+            write(headers, formId, fieldId, "after resuming", fencingToken);
+            Map<String, Object> update = awaitMessage(received, "FIELD_UPDATE", 10_000);
+            assertThat(update).as("FIELD_UPDATE after the snapshot").isNotNull();
+            assertThat(update.get("value")).isEqualTo("after resuming");
+        } finally {
+            session.disconnect();
+            stompClient.stop();
+        }
+    }
+
+    private static ConfigurableApplicationContext startNode(String nodeId, String database, int brokerPort,
+                                                            boolean embeddedBroker) throws IOException {
+        Path journal = Files.createTempDirectory("relay-journal-" + nodeId);
+        // As command line arguments, which override application.properties
+        return new SpringApplicationBuilder(CollabFormApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=" + database,
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.h2.console.enabled=false",
+                        "--jwt.secret=" + "relay-integration-test-secret-".repeat(4),
+                        "--logging.level.com.collabform=INFO",
+                        "--collabform.cluster.node-id=" + nodeId,
+                        // Both nodes write to the shared database
+                        "--collabform.values.store=direct",
+                        "--collabform.values.journal.dir=" + journal,
+                        "--collabform.broker.mode=relay",
+                        "--collabform.broker.relay.port=" + brokerPort,
+                        "--collabform.broker.embedded.enabled=" + embeddedBroker,
+                        "--collabform.broker.embedded.port=" + brokerPort);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static int port(ConfigurableApplicationContext node) {
+        return Integer.parseInt(node.getEnvironment().getProperty("local.server.port"));
+    }
+
+    private Map<String, Object> createForm(HttpHeaders headers) {
+        return exchange(brokerNode, HttpMethod.POST, "/api/forms", headers,
+                Map.of("title", "Relay", "fields", List.of(Map.of("fieldName", "name", "fieldType", "TEXT"))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object firstFieldId(Map<String, Object> form) {
+        return ((List<Map<String, Object>>) form.get("fields")).get(0).get("id");
+    }
+
+    private Object lock(HttpHeaders headers, Object formId, Object fieldId) {
+        return exchange(brokerNode, HttpMethod.POST, "/api/forms/" + formId + "/fields/" + fieldId + "/lock", headers, null)
+                .get("fencingToken");
+    }
+
+    private void write(HttpHeaders headers, Object formId, Object fieldId, String value, Object fencingToken) {
+        exchange(brokerNode, HttpMethod.PUT, "/api/forms/" + formId + "/values", headers,
+                Map.of("fieldId", fieldId, "value", value, "fencingToken", fencingToken));
+    }
+
+    private static WebSocketStompClient stompClient() {
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        return stompClient;
+    }
+
+    private static StompSession connect(WebSocketStompClient stompClient, ConfigurableApplicationContext node,
+                                        String token) throws Exception {
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        return stompClient.connectAsync("ws://localhost:" + port(node) + "/ws/websocket",
+                        new WebSocketHttpHeaders(), connectHeaders, new StompSessionHandlerAdapter() {
+                        })
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    private static void subscribe(StompSession session, String destination, String resumeFrom,
+                                  BlockingQueue<Map<String, Object>> received) {
+        StompHeaders subscribeHeaders = new StompHeaders();
+        subscribeHeaders.setDestination(destination);
+        if (resumeFrom != null) {
+            subscribeHeaders.add("resume-from", resumeFrom);
+        }
+        session.subscribe(subscribeHeaders, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders frameHeaders) {
+                return Map.class;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void handleFrame(StompHeaders frameHeaders, Object payload) {
+                received.add((Map<String, Object>) payload);
+            }
+        });
+    }
+
+    private static Map<String, Object> awaitMessage(BlockingQueue<Map<String, Object>> received, String type,
+                                                    long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        Map<String, Object> message;
+        while ((message = received.poll(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) != null) {
+            // Text updates may come as patches; only full values are looked for here
+            if (type.equals(message.get("type")) && (!"FIELD_UPDATE".equals(type) || message.get("value") != null)) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    private String register(String username) {
+        Map<String, Object> auth = exchange(brokerNode, HttpMethod.POST, "/api/auth/register", new HttpHeaders(),
+                Map.of("username", username, "email", username + "@example.com", "password", "secret1"));
+        return (String) auth.get("token");
+    }
+
+    private static HttpHeaders authorized(String token) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        return headers;
+    }
+
+    private Map<String, Object> exchange(ConfigurableApplicationContext node, HttpMethod method, String path,
+                                         HttpHeaders headers, Object body) {
+        return rest.exchange("http://localhost:" + port(node) + path, method, new HttpEntity<>(body, headers), JSON_OBJECT)
+                .getBody();
+    }
+}